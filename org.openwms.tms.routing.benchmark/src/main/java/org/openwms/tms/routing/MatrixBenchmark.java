@@ -0,0 +1,139 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.routing;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openwms.common.LocationGroupVO;
+import org.openwms.common.LocationVO;
+
+/**
+ * A MatrixBenchmark measures {@link Matrix#findBy(String, Route, LocationVO, LocationGroupVO)} of all Matrix implementations for
+ * different sizes of the routing matrix, stored in an embedded H2 database.
+ * <p>
+ * Run all: {@code java -jar target/benchmarks.jar MatrixBenchmark}, or a subset, e.g.: {@code java -jar target/benchmarks.jar
+ * MatrixBenchmark -p type=compiled -p size=1000000}.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MatrixBenchmark {
+
+    @Param({"100", "10000", "100000", "1000000"})
+    int size;
+    @Param({"jpa", "compiled", "chain"})
+    String type;
+
+    private RoutingFixture fixture;
+    private Matrix matrix;
+    private Route route, unknownRoute;
+    private LocationGroupVO nearGroup, leafGroup;
+    private LocationVO unmappedNear, unmappedLeaf;
+    private LocationVO[] explicit;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = new RoutingFixture(size);
+        matrix = fixture.matrix(type);
+        route = fixture.route();
+        unknownRoute = fixture.unknownRoute();
+        nearGroup = fixture.locationGroup(RoutingFixture.NEAR_GROUP);
+        leafGroup = fixture.locationGroup(RoutingFixture.LEAF_GROUP);
+        unmappedNear = location("UNMAPPED_NEAR", RoutingFixture.NEAR_GROUP);
+        unmappedLeaf = location("UNMAPPED_LEAF", RoutingFixture.LEAF_GROUP);
+        explicit = new LocationVO[1024];
+        for (int i = 0; i < explicit.length; i++) {
+            explicit[i] = location(RoutingFixture.locationKey(ThreadLocalRandom.current().nextInt(size - 2)), RoutingFixture.LEAF_GROUP);
+        }
+
+        // Warm the hierarchy cache, the REST calls are not subject of this benchmark
+        matrix.findBy(RoutingFixture.ACTION_TYPE, route, unmappedLeaf, leafGroup);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    private static LocationVO location(String coordinate, String locationGroupName) {
+        LocationVO location = new LocationVO(coordinate);
+        location.setLocationGroupName(locationGroupName);
+        return location;
+    }
+
+    /**
+     * An Action is explicitly defined for the Location, Locations are taken from a pre-built random sample.
+     */
+    @Benchmark
+    public Action explicitLocation() {
+        LocationVO location = explicit[cursor++ & (explicit.length - 1)];
+        return matrix.findBy(RoutingFixture.ACTION_TYPE, route, location, leafGroup);
+    }
+
+    /**
+     * No Action for the Location, but for its LocationGroup.
+     */
+    @Benchmark
+    public Action locationGroup() {
+        return matrix.findBy(RoutingFixture.ACTION_TYPE, route, unmappedNear, nearGroup);
+    }
+
+    /**
+     * Only the root of the hierarchy, {@link RoutingFixture#DEPTH} levels up, has an Action.
+     */
+    @Benchmark
+    public Action deepHierarchy() {
+        return matrix.findBy(RoutingFixture.ACTION_TYPE, route, unmappedLeaf, leafGroup);
+    }
+
+    /**
+     * No Action at all, the whole hierarchy is searched and the search ends in a {@link NoRouteException}.
+     */
+    @Benchmark
+    public Object miss() {
+        try {
+            return matrix.findBy(RoutingFixture.ACTION_TYPE, unknownRoute, unmappedLeaf, leafGroup);
+        } catch (NoRouteException nre) {
+            return nre;
+        }
+    }
+}
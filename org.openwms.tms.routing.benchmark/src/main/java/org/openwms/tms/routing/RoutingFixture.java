@@ -0,0 +1,211 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.routing;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openwms.common.LocationEO;
+import org.openwms.common.LocationGroupHierarchy;
+import org.openwms.common.LocationGroupVO;
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.boot.Banner;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.hateoas.Link;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * A RoutingFixture builds a routing matrix of a given size in an embedded H2 database, the {@link Matrix} implementations work on the
+ * real {@link ActionRepository}. The schema is generated from the entity mappings. Only the {@code LocationGroup} hierarchy of the
+ * common service is stubbed, because remote calls are not subject of the benchmarks.
+ * <p>
+ * Layout: All Actions belong to the Route {@link #ROUTE_ID}. {@code size - 2} Actions are explicitly defined for Locations {@code LOC-0
+ * ..}, one Action is defined for the LocationGroup {@link #NEAR_GROUP} and one for the root of the hierarchy {@link #ROOT_GROUP}. The
+ * LocationGroup {@link #LEAF_GROUP} is {@link #DEPTH} levels below the root. The Route {@link #UNKNOWN_ROUTE_ID} has no Actions.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+final class RoutingFixture implements AutoCloseable {
+
+    static final String ACTION_TYPE = "REQ_";
+    static final String ROUTE_ID = "R_BENCH";
+    static final String UNKNOWN_ROUTE_ID = "R_UNKNOWN";
+    static final String ROOT_GROUP = "ROOT";
+    static final String NEAR_GROUP = "NEAR";
+    static final int DEPTH = 10;
+    static final String LEAF_GROUP = "LEVEL_" + DEPTH;
+    private static final String HREF = "stub://locationgroups/";
+    private static final int CHUNK_SIZE = 5000;
+
+    private final Map<String, LocationGroupVO> groups = new HashMap<>();
+    private final ConfigurableApplicationContext context;
+    private final Route route, unknownRoute;
+
+    /**
+     * Only the persistence of the routing service.
+     */
+    @Configuration
+    @ImportAutoConfiguration({DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class})
+    @EntityScan(basePackageClasses = {Action.class, LocationEO.class})
+    @EnableJpaRepositories(basePackageClasses = ActionRepository.class)
+    static class Persistence {
+    }
+
+    RoutingFixture(int size) {
+        context = new SpringApplicationBuilder(Persistence.class)
+                .web(false)
+                .bannerMode(Banner.Mode.OFF)
+                .properties(
+                        "spring.cloud.bootstrap.enabled=false",
+                        "spring.datasource.url=jdbc:h2:mem:routing-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.jdbc.batch_size=" + CHUNK_SIZE,
+                        "spring.jpa.properties.hibernate.order_inserts=true")
+                .run();
+        RouteRepository routes = context.getBean(RouteRepository.class);
+        route = routes.save(new Route(ROUTE_ID));
+        unknownRoute = routes.save(new Route(UNKNOWN_ROUTE_ID));
+        insertActions(size);
+
+        group(ROOT_GROUP, null);
+        group(NEAR_GROUP, ROOT_GROUP);
+        String parent = ROOT_GROUP;
+        for (int i = 1; i <= DEPTH; i++) {
+            group("LEVEL_" + i, parent);
+            parent = "LEVEL_" + i;
+        }
+    }
+
+    private void insertActions(int size) {
+        EntityManager em = context.getBean(EntityManagerFactory.class).createEntityManager();
+        try {
+            em.getTransaction().begin();
+            Route managed = em.merge(route);
+            for (int i = 0; i < size - 2; i++) {
+                em.persist(new Action(managed, "LOC_" + i, locationKey(i), null, ACTION_TYPE, "prg_loc", "Explicit Action of " + locationKey(i)));
+                if ((i + 1) % CHUNK_SIZE == 0) {
+                    em.flush();
+                    em.clear();
+                    managed = em.merge(route);
+                }
+            }
+            em.persist(new Action(managed, "NEAR", null, NEAR_GROUP, ACTION_TYPE, "prg_near", "Action of " + NEAR_GROUP));
+            em.persist(new Action(managed, "ROOT", null, ROOT_GROUP, ACTION_TYPE, "prg_root", "Action of " + ROOT_GROUP));
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    static String locationKey(int i) {
+        return "LOC-" + i;
+    }
+
+    private void group(String name, String parent) {
+        LocationGroupVO lg = new LocationGroupVO(name);
+        lg.setParent(parent);
+        if (null != parent) {
+            lg.add(new Link(HREF + parent, "_parent"));
+        }
+        groups.put(name, lg);
+    }
+
+    LocationGroupVO locationGroup(String name) {
+        return groups.get(name);
+    }
+
+    Route route() {
+        return route;
+    }
+
+    Route unknownRoute() {
+        return unknownRoute;
+    }
+
+    /**
+     * Create the requested Matrix implementation wired with the repository and the stubbed hierarchy.
+     *
+     * @param type One of {@code jpa}, {@code compiled} or {@code chain}, like {@code owms.routing.matrix}
+     * @return The Matrix
+     */
+    Matrix matrix(String type) {
+        Matrix matrix;
+        switch (type) {
+            case "jpa":
+                matrix = new ActivitiMatrix();
+                break;
+            case "compiled":
+                matrix = new CompiledMatrix();
+                break;
+            case "chain":
+                matrix = new AncestorChainMatrix();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown Matrix type " + type);
+        }
+        DirectFieldAccessor accessor = new DirectFieldAccessor(matrix);
+        accessor.setPropertyValue("repository", context.getBean(ActionRepository.class));
+        accessor.setPropertyValue("hierarchy", hierarchy());
+        if (matrix instanceof CompiledMatrix) {
+            ((CompiledMatrix) matrix).reload();
+        }
+        return matrix;
+    }
+
+    /**
+     * A hierarchy that resolves parents from the stubbed LocationGroups instead of calling the common service.
+     */
+    private LocationGroupHierarchy hierarchy() {
+        RestTemplate commonService = new RestTemplate() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T getForObject(String url, Class<T> responseType, Object... uriVariables) {
+                return (T) groups.get(url.substring(HREF.length()));
+            }
+        };
+        LocationGroupHierarchy hierarchy = new LocationGroupHierarchy();
+        DirectFieldAccessor accessor = new DirectFieldAccessor(hierarchy);
+        accessor.setPropertyValue("restTemplate", commonService);
+        accessor.setPropertyValue("simpleRestTemplate", commonService);
+        accessor.setPropertyValue("ttl", 3600000L);
+        accessor.setPropertyValue("maxSize", 10000);
+        return hierarchy;
+    }
+
+    /**
+     * Shut down the database.
+     */
+    @Override
+    public void close() {
+        context.close();
+    }
+}
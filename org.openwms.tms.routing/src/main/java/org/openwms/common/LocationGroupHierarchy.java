@@ -0,0 +1,213 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.common;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.ameba.exception.NotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.hateoas.Link;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * A LocationGroupHierarchy caches the full ancestor chain of {@code LocationGroup}s, so that a walk up the hierarchy is resolved in memory
+ * instead of calling the common service for each level. Chains are filled lazily or by a bulk load, expire after a configurable time and
+ * are evicted least recently used when the cache exceeds its maximum size.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+@Component
+public class LocationGroupHierarchy {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocationGroupHierarchy.class);
+    private static final String PARENT_REL = "_parent";
+
+    @Autowired
+    private RestTemplate restTemplate;
+    @Autowired
+    @Qualifier("simpleRestTemplate")
+    private RestTemplate simpleRestTemplate;
+    @Value("${owms.routing.hierarchy.ttl:3600000}")
+    private long ttl;
+    @Value("${owms.routing.hierarchy.max-size:10000}")
+    private int maxSize;
+    @Value("${owms.routing.hierarchy.preload:false}")
+    private boolean preload;
+    private final Map<String, Entry> chains = new LinkedHashMap<>(64, 0.75f, true);
+
+    @PostConstruct
+    void init() {
+        if (preload) {
+            try {
+                loadAll();
+            } catch (Exception e) {
+                LOGGER.warn("Could not preload the LocationGroup hierarchy, falling back to lazy loading: [{}]", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Return the names of the given {@code locationGroup} and all its ancestors, beginning with the {@code locationGroup} itself and
+     * ending with the root of the hierarchy.
+     *
+     * @param locationGroup The LocationGroup to start with
+     * @return The ordered, unmodifiable chain of names
+     */
+    public List<String> ancestorsOf(LocationGroupVO locationGroup) {
+        List<String> cached = get(locationGroup.getName());
+        if (cached != null) {
+            return cached;
+        }
+        List<LocationGroupVO> path = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        List<String> tail = Collections.emptyList();
+        LocationGroupVO current = locationGroup;
+        while (current != null && visited.add(current.getName())) {
+            path.add(current);
+            LocationGroupVO parent = resolveParent(current);
+            if (parent == null) {
+                break;
+            }
+            tail = get(parent.getName());
+            if (tail != null) {
+                break;
+            }
+            tail = Collections.emptyList();
+            current = parent;
+        }
+        return store(path, tail);
+    }
+
+    /**
+     * Drop all cached chains and, if configured, load the complete hierarchy again.
+     */
+    public void refresh() {
+        synchronized (chains) {
+            chains.clear();
+        }
+        LOGGER.debug("LocationGroup hierarchy cache cleared");
+        if (preload) {
+            loadAll();
+        }
+    }
+
+    /**
+     * Load all {@code LocationGroup}s from the common service at once and compute their chains.
+     */
+    public void loadAll() {
+        ResponseEntity<List<LocationGroupVO>> exchange =
+                restTemplate.exchange(
+                        "http://common-service" + CommonConstants.API_LOCATIONGROUPS,
+                        HttpMethod.GET,
+                        null,
+                        new ParameterizedTypeReference<List<LocationGroupVO>>() {
+                        });
+        Map<String, String> parents = new HashMap<>();
+        for (LocationGroupVO lg : exchange.getBody()) {
+            parents.put(lg.getName(), lg.getParent());
+        }
+        for (String name : parents.keySet()) {
+            List<String> chain = new ArrayList<>();
+            String current = name;
+            while (current != null && !chain.contains(current)) {
+                chain.add(current);
+                current = parents.get(current);
+            }
+            put(name, Collections.unmodifiableList(chain));
+        }
+        LOGGER.debug("LocationGroup hierarchy loaded with [{}] LocationGroups", parents.size());
+    }
+
+    private LocationGroupVO resolveParent(LocationGroupVO locationGroup) {
+        if (locationGroup.hasLink(PARENT_REL)) {
+            Link parent = locationGroup.getLink(PARENT_REL);
+            LocationGroupVO lg = simpleRestTemplate.getForObject(parent.getHref(), LocationGroupVO.class);
+            if (lg == null) {
+                throw new NotFoundException(String.format("No LocationGroup found at [%s]", parent.getHref()));
+            }
+            return lg;
+        }
+        return null;
+    }
+
+    private List<String> store(List<LocationGroupVO> path, List<String> tail) {
+        List<String> result = tail;
+        for (int i = path.size() - 1; i >= 0; i--) {
+            List<String> chain = new ArrayList<>(result.size() + 1);
+            chain.add(path.get(i).getName());
+            chain.addAll(result);
+            result = Collections.unmodifiableList(chain);
+            put(path.get(i).getName(), result);
+        }
+        return result;
+    }
+
+    private List<String> get(String name) {
+        synchronized (chains) {
+            Entry entry = chains.get(name);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt < System.currentTimeMillis()) {
+                chains.remove(name);
+                return null;
+            }
+            return entry.chain;
+        }
+    }
+
+    private void put(String name, List<String> chain) {
+        synchronized (chains) {
+            chains.put(name, new Entry(chain, System.currentTimeMillis() + ttl));
+            if (chains.size() > maxSize) {
+                chains.remove(chains.keySet().iterator().next());
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final List<String> chain;
+        private final long expiresAt;
+
+        Entry(List<String> chain, long expiresAt) {
+            this.chain = chain;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
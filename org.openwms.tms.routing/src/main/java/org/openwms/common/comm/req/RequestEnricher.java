@@ -0,0 +1,251 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.common.comm.req;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.ameba.exception.NotFoundException;
+import org.openwms.common.FetchLocationByCoord;
+import org.openwms.common.FetchLocationGroupByName;
+import org.openwms.common.LocationGroupVO;
+import org.openwms.common.LocationVO;
+import org.openwms.tms.FetchStartedTransportOrder;
+import org.openwms.tms.routing.ExecutorBusyException;
+import org.openwms.tms.routing.Route;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * A RequestEnricher resolves the {@code Location}, the {@code LocationGroup} and the {@code Route} of a {@link RequestVO}. The
+ * {@code TransportOrder} lookup runs in parallel to the lookup of the Location and its LocationGroup. The LocationGroup is only
+ * fetched after the Location if it is not part of the request. All lookups of one call share one deadline of {@code
+ * owms.routing.lookup.timeout}, no matter how many requests are enriched. Within one call each distinct key is only looked up once.
+ * When the lookup pool is saturated, a lookup is not queued but fails with a {@link ExecutorBusyException}, lookups still running
+ * after the deadline are interrupted.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+@Component
+class RequestEnricher {
+
+    @Autowired
+    private FetchLocationGroupByName fetchLocationGroupByName;
+    @Autowired
+    private FetchLocationByCoord fetchLocationByCoord;
+    @Autowired
+    private FetchStartedTransportOrder fetchTransportOrder;
+    @Autowired
+    @Qualifier("lookupExecutorPool")
+    private ThreadPoolTaskExecutor pool;
+    @Value("${owms.routing.lookup.timeout:2000}")
+    private long timeout;
+
+    /**
+     * Resolve all data needed to find an {@code Action} for the request.
+     *
+     * @param req The request
+     * @return The resolved data
+     * @throws LookupTimeoutException if the lookups did not finish in time
+     * @throws ExecutorBusyException if the lookup pool is saturated
+     */
+    Enrichment enrich(RequestVO req) {
+        try {
+            return enrichAll(Collections.singletonList(req)).get(0).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Resolve all data for a batch of requests. Each distinct Location, LocationGroup and barcode is looked up only once per batch. A
+     * failed lookup only affects the requests depending on it.
+     *
+     * @param requests The requests
+     * @return In the order of {@code requests} the completed lookups, completed exceptionally if a lookup failed or did not finish in
+     * time
+     */
+    List<CompletableFuture<Enrichment>> enrichAll(List<RequestVO> requests) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        Lookups lookups = new Lookups();
+        try {
+            List<CompletableFuture<Enrichment>> result = requests.stream().map(lookups::enrich).collect(Collectors.toList());
+            for (int i = 0; i < requests.size(); i++) {
+                awaitUntil(deadline, result.get(i), requests.get(i));
+            }
+            return result;
+        } finally {
+            lookups.cancel();
+        }
+    }
+
+    /**
+     * Lookups holds the running lookups, each distinct key is only fetched once.
+     */
+    private class Lookups {
+
+        private final Map<String, CompletableFuture<Route>> routes = new ConcurrentHashMap<>();
+        private final Map<String, CompletableFuture<LocationVO>> locations = new ConcurrentHashMap<>();
+        private final Map<String, CompletableFuture<LocationGroupVO>> locationGroups = new ConcurrentHashMap<>();
+        private final Queue<Future<?>> tasks = new ConcurrentLinkedQueue<>();
+        private volatile boolean cancelled = false;
+
+        private CompletableFuture<Route> route(String barcode) {
+            return routes.computeIfAbsent(String.valueOf(barcode), k -> submit(() -> routeOf(barcode)));
+        }
+
+        private CompletableFuture<LocationVO> location(String coordinate) {
+            return locations.computeIfAbsent(String.valueOf(coordinate), k -> submit(() -> fetchLocationByCoord.apply(coordinate)));
+        }
+
+        private CompletableFuture<LocationGroupVO> locationGroup(String name) {
+            return locationGroups.computeIfAbsent(String.valueOf(name), k -> submit(() -> fetchLocationGroupByName.apply(name)));
+        }
+
+        /*
+         * The task is kept to interrupt it on cancel, cancelling the CompletableFuture alone does not interrupt the running lookup.
+         */
+        private <T> CompletableFuture<T> submit(Supplier<T> lookup) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            try {
+                Future<?> task = pool.submit(() -> {
+                    try {
+                        result.complete(lookup.get());
+                    } catch (RuntimeException e) {
+                        result.completeExceptionally(e);
+                    }
+                });
+                tasks.add(task);
+                if (cancelled) {
+
+                    // Submitted by a dependent lookup after the deadline
+                    task.cancel(true);
+                }
+            } catch (TaskRejectedException | RejectedExecutionException e) {
+                result.completeExceptionally(new ExecutorBusyException(String.format("Too many lookups in progress, pool size [%s]", pool.getMaxPoolSize())));
+            }
+            return result;
+        }
+
+        private CompletableFuture<LocationGroupVO> locationGroupOf(RequestVO req) {
+            return req.hasLocationGroupName()
+                    ? locationGroup(req.getLocationGroupName())
+                    : location(req.getActualLocation()).thenCompose(l -> locationGroup(l.getLocationGroupName()));
+        }
+
+        CompletableFuture<Enrichment> enrich(RequestVO req) {
+            CompletableFuture<Route> route = route(req.getBarcode());
+            CompletableFuture<LocationVO> location = location(req.getActualLocation());
+            CompletableFuture<LocationGroupVO> locationGroup = locationGroupOf(req);
+            CompletableFuture<Enrichment> result = CompletableFuture.allOf(route, location, locationGroup)
+                    .thenApply(v -> new Enrichment(location.join(), locationGroup.join(), route.join()));
+
+            // Fail fast, e.g. on a rejected lookup, instead of waiting for the other lookups
+            Stream.of(route, location, locationGroup).forEach(f -> f.whenComplete((v, ex) -> {
+                if (ex != null) {
+                    result.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+                }
+            }));
+            return result;
+        }
+
+        void cancel() {
+            cancelled = true;
+            for (Future<?> task = tasks.poll(); task != null; task = tasks.poll()) {
+                task.cancel(true);
+            }
+            routes.values().forEach(f -> f.cancel(true));
+            locations.values().forEach(f -> f.cancel(true));
+            locationGroups.values().forEach(f -> f.cancel(true));
+        }
+    }
+
+    private Route routeOf(String barcode) {
+        try {
+            return Route.of(fetchTransportOrder.apply(barcode).getRouteId());
+        } catch (NotFoundException nfe) {
+            return Route.NO_ROUTE;
+        }
+    }
+
+    private void awaitUntil(long deadline, CompletableFuture<Enrichment> future, RequestVO req) {
+        try {
+            future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.completeExceptionally(new LookupTimeoutException(String.format("Lookups of TransportUnit [%s] on Location [%s] did not finish within [%s] ms", req.getBarcode(), req.getActualLocation(), timeout)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(new LookupTimeoutException(String.format("Interrupted while waiting for the lookups of TransportUnit [%s]", req.getBarcode())));
+        } catch (ExecutionException e) {
+            // The future is completed with the cause already
+        }
+    }
+
+    /**
+     * A Enrichment holds the result of all lookups.
+     */
+    static final class Enrichment {
+
+        private final LocationVO location;
+        private final LocationGroupVO locationGroup;
+        private final Route route;
+
+        Enrichment(LocationVO location, LocationGroupVO locationGroup, Route route) {
+            this.location = location;
+            this.locationGroup = locationGroup;
+            this.route = route;
+        }
+
+        LocationVO getLocation() {
+            return location;
+        }
+
+        LocationGroupVO getLocationGroup() {
+            return locationGroup;
+        }
+
+        Route getRoute() {
+            return route;
+        }
+    }
+}
@@ -21,20 +21,20 @@
  */
 package org.openwms.common.comm.req;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
 
-import org.ameba.exception.NotFoundException;
-import org.openwms.common.FetchLocationByCoord;
-import org.openwms.common.FetchLocationGroupByName;
-import org.openwms.common.LocationGroupVO;
-import org.openwms.common.LocationVO;
-import org.openwms.tms.FetchStartedTransportOrder;
-import org.openwms.tms.TransportOrder;
+import org.openwms.tms.routing.Action;
+import org.openwms.tms.routing.AsyncProgramExecutor;
 import org.openwms.tms.routing.Matrix;
 import org.openwms.tms.routing.ProgramExecutor;
 import org.openwms.tms.routing.ProgramResult;
-import org.openwms.tms.routing.Route;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
@@ -48,21 +48,22 @@ import org.springframework.web.bind.annotation.RestController;
 class RequestMessageController {
 
     @Autowired
-    private FetchLocationGroupByName fetchLocationGroupByName;
-    @Autowired
-    private FetchLocationByCoord fetchLocationByCoord;
-    @Autowired
-    private FetchStartedTransportOrder fetchTransportOrder;
+    private RequestEnricher enricher;
     @Autowired
     private Matrix matrix;
     @Autowired
     private ProgramExecutor executor;
+    @Autowired
+    private AsyncProgramExecutor asyncExecutor;
+    @Value("${owms.routing.async:false}")
+    private boolean async;
 
     /**
-     * Takes the passed message, and hands over to the service.
+     * Takes the passed message, and hands over to the service. With {@code owms.routing.async=true} the program is started on a worker
+     * pool and the servlet thread is released before the program has finished.
      */
     @PostMapping("/v1/req")
-    public void handleREQ(@RequestBody RequestVO req) {
+    public CompletableFuture<Void> handleREQ(@RequestBody RequestVO req) {
 
         /*
 
@@ -75,16 +76,48 @@ class RequestMessageController {
          - type
 
          */
-        LocationVO location = fetchLocationByCoord.apply(req.getActualLocation());
-        LocationGroupVO locationGroup = req.hasLocationGroupName() ? fetchLocationGroupByName.apply(req.getLocationGroupName()) : fetchLocationGroupByName.apply(location.getLocationGroupName());
-        Route route;
-        try {
-            TransportOrder transportOrder = fetchTransportOrder.apply(req.getBarcode());
-            route = Route.of(transportOrder.getRouteId());
-        } catch (NotFoundException nfe) {
-            route = Route.NO_ROUTE;
+        RequestEnricher.Enrichment enrichment = enricher.enrich(req);
+        Action action = matrix.findBy("REQ_", enrichment.getRoute(), enrichment.getLocation(), enrichment.getLocationGroup());
+        if (async) {
+            return asyncExecutor.execute(action, new HashMap<>(0)).thenAccept(this::reply);
+        }
+        reply(executor.execute(action, new HashMap<>(0)));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Takes a batch of messages and routes each of them. Lookups are shared across the batch and all Actions are resolved against the
+     * same state of the routing matrix. A failure of one telegram does not affect the others.
+     *
+     * @param requests The telegrams in order of arrival
+     * @return One result per telegram, in the same order
+     */
+    @PostMapping("/v1/req/batch")
+    public CompletableFuture<List<ResultVO>> handleREQs(@RequestBody List<RequestVO> requests) {
+        List<CompletableFuture<RequestEnricher.Enrichment>> enrichments = enricher.enrichAll(requests);
+        Matrix current = matrix.snapshot();
+        List<CompletableFuture<ResultVO>> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            results.add(handle(requests.get(i), enrichments.get(i), current));
         }
-        ProgramResult result = executor.execute(matrix.findBy("REQ_", route, location, locationGroup), new HashMap<>(0));
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[results.size()]))
+                .thenApply(v -> results.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+    }
+
+    private CompletableFuture<ResultVO> handle(RequestVO req, CompletableFuture<RequestEnricher.Enrichment> enrichment, Matrix current) {
+        return enrichment.thenCompose(e -> {
+            Action action = current.findBy("REQ_", e.getRoute(), e.getLocation(), e.getLocationGroup());
+            CompletableFuture<ProgramResult> execution = async
+                    ? asyncExecutor.execute(action, new HashMap<>(0))
+                    : CompletableFuture.completedFuture(executor.execute(action, new HashMap<>(0)));
+            return execution.thenApply(result -> {
+                reply(result);
+                return ResultVO.executed(req, action.getName());
+            });
+        }).exceptionally(ex -> ResultVO.failed(req, ex instanceof CompletionException && null != ex.getCause() ? ex.getCause() : ex));
+    }
+
+    private void reply(ProgramResult result) {
         //return new ResponseMessage.Builder()
         // .withBarcode(result.getBarcode())
         // .withActualLocation(result.getActualLocation())
@@ -0,0 +1,65 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.common.comm.req;
+
+/**
+ * A ResultVO is the outcome of routing one telegram of a batch.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+class ResultVO {
+
+    private String barcode, actualLocation, action, error;
+
+    ResultVO(RequestVO req) {
+        this.barcode = req.getBarcode();
+        this.actualLocation = req.getActualLocation();
+    }
+
+    static ResultVO executed(RequestVO req, String action) {
+        ResultVO result = new ResultVO(req);
+        result.action = action;
+        return result;
+    }
+
+    static ResultVO failed(RequestVO req, Throwable error) {
+        ResultVO result = new ResultVO(req);
+        result.error = error.getMessage();
+        return result;
+    }
+
+    public String getBarcode() {
+        return barcode;
+    }
+
+    public String getActualLocation() {
+        return actualLocation;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.common.comm.sysu;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * A SystemUpdateCoalescer collapses identical system updates per {@code LocationGroup}. An update passes if its error code differs
+ * from the last one that passed for the same LocationGroup, or if the last one passed longer than the configured window ago. A window
+ * of {@literal 0} lets all updates pass. If processing an update fails, it is forgotten again, so that a retry is not suppressed.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+@Component
+class SystemUpdateCoalescer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SystemUpdateCoalescer.class);
+    @Value("${owms.routing.sysu.coalesce-window:1000}")
+    private long window;
+    private final Map<String, Passed> lastPassed = new ConcurrentHashMap<>();
+
+    /**
+     * Process the update unless it is a duplicate.
+     *
+     * @param locationGroupName The name of the LocationGroup the update belongs to
+     * @param errorCode The reported error code
+     * @param processing Processes the update
+     * @return {@literal true} if the update has been processed, {@literal false} if it is a duplicate
+     */
+    boolean process(String locationGroupName, String errorCode, Runnable processing) {
+        if (window <= 0 || null == locationGroupName) {
+            processing.run();
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        Passed[] passed = new Passed[1];
+        lastPassed.compute(locationGroupName, (k, last) -> {
+            if (null == last || !Objects.equals(last.errorCode, errorCode) || now - last.timestamp >= window) {
+                passed[0] = new Passed(errorCode, now);
+                return passed[0];
+            }
+            return last;
+        });
+        if (null == passed[0]) {
+            LOGGER.debug("Suppressed duplicate system update [{}] for LocationGroup [{}]", errorCode, locationGroupName);
+            return false;
+        }
+        try {
+            processing.run();
+            return true;
+        } catch (RuntimeException ex) {
+            lastPassed.remove(locationGroupName, passed[0]);
+            throw ex;
+        }
+    }
+
+    private static final class Passed {
+
+        private final String errorCode;
+        private final long timestamp;
+
+        Passed(String errorCode, long timestamp) {
+            this.errorCode = errorCode;
+            this.timestamp = timestamp;
+        }
+    }
+}
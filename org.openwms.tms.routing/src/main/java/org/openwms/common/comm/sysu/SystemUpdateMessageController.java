@@ -51,24 +51,39 @@ class SystemUpdateMessageController {
     private Matrix matrix;
     @Autowired
     private ProgramExecutor executor;
+    @Autowired
+    private SystemUpdateCoalescer coalescer;
 
     @PostMapping("/v1/sysu")
     public void handleSYSU(@RequestBody SystemUpdateVO sysu) {
 
-        LocationGroupVO locationGroup = fetchLocationGroupByName.apply(sysu.locationGroupName);
-        Route route;
-        Map<String, Object> runtimeVariables = new HashMap<>();
-        runtimeVariables.put("errorCode", sysu.errorCode);
-        executor.execute(matrix.findBy("SYSU", Route.DEF_ROUTE, null, locationGroup), runtimeVariables);
+        coalescer.process(sysu.locationGroupName, sysu.errorCode, () -> {
+            LocationGroupVO locationGroup = fetchLocationGroupByName.apply(sysu.locationGroupName);
+            Map<String, Object> runtimeVariables = new HashMap<>();
+            runtimeVariables.put("errorCode", sysu.errorCode);
+            executor.execute(matrix.findBy("SYSU", Route.DEF_ROUTE, null, locationGroup), runtimeVariables);
+        });
     }
 
     private static class SystemUpdateVO {
 
         String locationGroupName, errorCode;
 
+        /** Dear Jackson ... */
+        SystemUpdateVO() {
+        }
+
         public SystemUpdateVO(String locationGroupName, String errorCode) {
             this.locationGroupName = locationGroupName;
             this.errorCode = errorCode;
         }
+
+        public void setLocationGroupName(String locationGroupName) {
+            this.locationGroupName = locationGroupName;
+        }
+
+        public void setErrorCode(String errorCode) {
+            this.errorCode = errorCode;
+        }
     }
 }
@@ -33,7 +33,8 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
 /**
- * A FetchStartedTransportOrder.
+ * A FetchStartedTransportOrder looks up the started {@link TransportOrder} in the local {@link StartedTransportOrders} replica first
+ * and asks the transportation service only on a miss.
  *
  * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
  */
@@ -42,9 +43,15 @@ public class FetchStartedTransportOrder implements Function<String, TransportOrd
 
     @Autowired
     private RestTemplate restTemplate;
+    @Autowired
+    private StartedTransportOrders startedTransportOrders;
 
     @Override
     public TransportOrder apply(String barcode) {
+        return startedTransportOrders.findBy(barcode).orElseGet(() -> fetch(barcode));
+    }
+
+    private TransportOrder fetch(String barcode) {
         ResponseEntity<List<TransportOrder>> exchange =
                 restTemplate.exchange(
                         "http://tms-service/v1/transportorders?barcode=" + barcode + "&state=STARTED",
@@ -55,6 +62,8 @@ public class FetchStartedTransportOrder implements Function<String, TransportOrd
         if (exchange.getBody().size() == 0) {
             throw new NotFoundException(String.format("No started TransportOrders for TransportUnit [%s] found, no routing possible", barcode));
         }
-        return exchange.getBody().get(0);
+        TransportOrder transportOrder = exchange.getBody().get(0);
+        startedTransportOrders.put(transportOrder);
+        return transportOrder;
     }
 }
@@ -0,0 +1,203 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * A StartedTransportOrders is a local replica of all started {@link TransportOrder}s, keyed by the barcode of the {@code
+ * TransportUnit}. The transportation service pushes each change, a full resync is done at startup. Activated with {@code
+ * owms.routing.replica.enabled=true}, otherwise the replica stays empty.
+ * <p>
+ * A terminated TransportOrder leaves a tombstone, so that a lookup that has read the order before it was terminated can't put it back.
+ * Each entry expires after {@code owms.routing.replica.ttl} ms, to bound the damage of a lost update.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+@Component
+public class StartedTransportOrders {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartedTransportOrders.class);
+
+    @Autowired
+    private RestTemplate restTemplate;
+    @Value("${owms.routing.replica.enabled:false}")
+    private boolean enabled;
+    @Value("${owms.routing.replica.ttl:300000}")
+    private long ttl;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ReadWriteLock swap = new ReentrantReadWriteLock();
+    private volatile Map<String, Entry> replica = new ConcurrentHashMap<>();
+
+    /**
+     * Find the started TransportOrder of a TransportUnit.
+     *
+     * @param barcode The barcode of the TransportUnit
+     * @return The TransportOrder, if known locally
+     */
+    public Optional<TransportOrder> findBy(String barcode) {
+        if (null == barcode) {
+            return Optional.empty();
+        }
+        Map<String, Entry> current = replica;
+        Entry entry = current.get(barcode);
+        if (null == entry) {
+            return Optional.empty();
+        }
+        if (entry.isExpired()) {
+            current.remove(barcode, entry);
+            return Optional.empty();
+        }
+        return Optional.ofNullable(entry.transportOrder);
+    }
+
+    /**
+     * Remember a TransportOrder that has been fetched from the transportation service on a cache miss. Pushed changes win, the
+     * TransportOrder is not stored if the replica already knows another started order of the TransportUnit or knows that this order
+     * has been terminated.
+     *
+     * @param transportOrder The started TransportOrder
+     */
+    public void put(TransportOrder transportOrder) {
+        if (!enabled || null == transportOrder.getTransportUnitId()) {
+            return;
+        }
+        write(transportOrder.getTransportUnitId(), (k, existing) ->
+                null != existing && !existing.isExpired() && (null != existing.transportOrder || Objects.equals(existing.persistentKey, transportOrder.getId()))
+                        ? existing
+                        : started(transportOrder)
+        );
+    }
+
+    /**
+     * Apply a change pushed by the transportation service. Started orders are added, all others are replaced by a tombstone unless
+     * another order of the TransportUnit has been started meanwhile.
+     *
+     * @param vo The changed TransportOrder
+     */
+    void apply(TransportOrderVO vo) {
+        if (!enabled || null == vo.getTransportUnitBK()) {
+            return;
+        }
+        if (vo.isStarted()) {
+            write(vo.getTransportUnitBK(), (k, existing) -> started(vo.toTransportOrder()));
+        } else {
+            write(vo.getTransportUnitBK(), (k, existing) ->
+                    null != existing && null != existing.transportOrder && !existing.isExpired() && !Objects.equals(existing.persistentKey, vo.getPersistentKey())
+                            ? existing
+                            : new Entry(null, vo.getPersistentKey(), sequence.incrementAndGet(), System.currentTimeMillis() + ttl)
+            );
+        }
+    }
+
+    private Entry started(TransportOrder transportOrder) {
+        return new Entry(transportOrder, transportOrder.getId(), sequence.incrementAndGet(), System.currentTimeMillis() + ttl);
+    }
+
+    private void write(String barcode, BiFunction<String, Entry, Entry> change) {
+        swap.readLock().lock();
+        try {
+            replica.compute(barcode, change);
+        } finally {
+            swap.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replace the replica with all currently started TransportOrders of the transportation service. Changes applied while the
+     * TransportOrders are fetched are kept.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resync() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long mark = sequence.get();
+            List<TransportOrderVO> started = restTemplate.exchange(
+                    "http://tms-service/v1/transportorders?state=STARTED",
+                    HttpMethod.GET,
+                    null,
+                    new ParameterizedTypeReference<List<TransportOrderVO>>() {
+                    }).getBody();
+            Map<String, Entry> fresh = new ConcurrentHashMap<>();
+            started.stream()
+                    .filter(vo -> vo.isStarted() && null != vo.getTransportUnitBK())
+                    .forEach(vo -> fresh.put(vo.getTransportUnitBK(), started(vo.toTransportOrder())));
+            swap.writeLock().lock();
+            try {
+                replica.forEach((barcode, entry) -> {
+                    if (entry.sequence > mark && !entry.isExpired()) {
+                        fresh.put(barcode, entry);
+                    }
+                });
+                replica = fresh;
+            } finally {
+                swap.writeLock().unlock();
+            }
+            LOGGER.info("Replica of started TransportOrders synchronized with [{}] entries", fresh.size());
+        } catch (Exception e) {
+            LOGGER.warn("Could not synchronize the replica of started TransportOrders, falling back to remote lookups: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * An Entry is either a started TransportOrder or the tombstone of a terminated one.
+     */
+    private static final class Entry {
+
+        private final TransportOrder transportOrder;
+        private final String persistentKey;
+        private final long sequence;
+        private final long expiresAt;
+
+        Entry(TransportOrder transportOrder, String persistentKey, long sequence, long expiresAt) {
+            this.transportOrder = transportOrder;
+            this.persistentKey = persistentKey;
+            this.sequence = sequence;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return expiresAt < System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * A StartedTransportOrdersController accepts changes of {@code TransportOrder}s pushed by the transportation service.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+@RestController
+class StartedTransportOrdersController {
+
+    @Autowired
+    private StartedTransportOrders startedTransportOrders;
+
+    @PostMapping("/v1/transportorders/replica")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void update(@RequestBody TransportOrderVO vo) {
+        startedTransportOrders.apply(vo);
+    }
+
+    @PostMapping("/v1/transportorders/replica/resync")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void resync() {
+        startedTransportOrders.resync();
+    }
+}
@@ -21,6 +21,8 @@
  */
 package org.openwms.tms.routing;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -34,9 +36,15 @@ import org.springframework.data.repository.query.Param;
  */
 interface ActionRepository extends JpaRepository<Action, Long> {
 
-    @Query("select a from Action a where a.route = :route and a.locationKey is not null and a.locationKey = :locationKey and a.enabled = true")
-    Optional<Action> findByRouteAndLocationKey(@Param("route") Route route, @Param("locationKey") String locationKey);
+    @Query("select a from Action a where a.route = :route and a.actionType = :actionType and a.locationKey is not null and a.locationKey = :locationKey and a.enabled = true")
+    Optional<Action> findByRouteAndLocationKey(@Param("route") Route route, @Param("actionType") String actionType, @Param("locationKey") String locationKey);
 
-    @Query("select a from Action a where a.route = :route and a.locationGroupName is not null and a.locationGroupName = :locationGroupName and a.enabled = true")
-    Optional<Action> findByRouteAndLocationGroupName(@Param("route") Route route, @Param("locationGroupName") String locationGroupName);
+    @Query("select a from Action a where a.route = :route and a.actionType = :actionType and a.locationGroupName is not null and a.locationGroupName = :locationGroupName and a.enabled = true")
+    Optional<Action> findByRouteAndLocationGroupName(@Param("route") Route route, @Param("actionType") String actionType, @Param("locationGroupName") String locationGroupName);
+
+    @Query("select a from Action a where a.route = :route and a.actionType = :actionType and a.enabled = true and (a.locationKey = :locationKey or a.locationGroupName in :chain)")
+    List<Action> findByRouteAndLocationKeyOrChain(@Param("route") Route route, @Param("actionType") String actionType, @Param("locationKey") String locationKey, @Param("chain") Collection<String> chain);
+
+    @Query("select a from Action a join fetch a.route where a.enabled = true")
+    List<Action> findAllEnabled();
 }
@@ -0,0 +1,111 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.routing;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.openwms.common.LocationGroupHierarchy;
+import org.openwms.common.LocationGroupVO;
+import org.openwms.common.LocationVO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A ActionSearch defines the order in which a {@link Matrix} looks for an {@link Action}: first the one defined for the {@code Location},
+ * then the one for the {@code LocationGroup} of the Location and at last along the ancestors of the given {@code LocationGroup}. How an
+ * Action is looked up for a single key is left to the Matrix.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+final class ActionSearch {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ActionSearch.class);
+
+    private ActionSearch() {
+    }
+
+    /**
+     * Find the Action for the {@code route}.
+     *
+     * @param route The Route
+     * @param location The actual Location, may be {@literal null}
+     * @param locationGroup The corresponding actual LocationGroup, may be {@literal null}
+     * @param hierarchy To resolve the ancestors of the LocationGroup
+     * @param byLocation Looks up the Action defined for a Location key
+     * @param byLocationGroup Looks up the Action defined for a LocationGroup name
+     * @return The Action
+     * @throws NoRouteException in case no Action was found
+     */
+    static Action findBy(Route route, LocationVO location, LocationGroupVO locationGroup, LocationGroupHierarchy hierarchy,
+            Function<String, Optional<Action>> byLocation, Function<String, Optional<Action>> byLocationGroup) {
+        Optional<Action> prg = Optional.empty();
+        if (null != location) {
+
+            // First explicitly search for the Location and Route
+            prg = byLocation.apply(location.getCoordinate());
+            if (!prg.isPresent()) {
+
+                // When Location is set but no Action exists, check by LocationGroup
+                prg = byLocationGroup.apply(location.getLocationGroupName());
+                if (!prg.isPresent()) {
+
+                    // search the LocationGroup hierarchy the way up...
+                    prg = alongHierarchy(locationGroup, hierarchy, byLocationGroup);
+                    if (!prg.isPresent()) {
+                        String message = String.format("No Action found for Route [%s] on Location [%s] and LocationGroup [%s]", route.getRouteId(), location.getCoordinate(), location.getLocationGroupName());
+                        LOGGER.info(message);
+                        throw new NoRouteException(message);
+                    }
+                }
+            }
+        }
+
+        // search for locgroup...
+        if (!prg.isPresent()) {
+            if (null == locationGroup) {
+                String message = String.format("No Action found for Route [%s] and Location [%s] without LocationGroup", route.getRouteId(), location);
+                LOGGER.info(message);
+                throw new NoRouteException(message);
+            }
+            prg = alongHierarchy(locationGroup, hierarchy, byLocationGroup);
+        }
+        return prg.orElseThrow(() -> {
+            String message = String.format("No Action found for Route [%s], Location [%s], LocationGroup [%s]", route.getRouteId(), location, locationGroup);
+            LOGGER.info(message);
+            return new NoRouteException(message);
+        });
+    }
+
+    private static Optional<Action> alongHierarchy(LocationGroupVO locationGroup, LocationGroupHierarchy hierarchy, Function<String, Optional<Action>> byLocationGroup) {
+        if (null == locationGroup) {
+            return Optional.empty();
+        }
+        for (String locationGroupName : hierarchy.ancestorsOf(locationGroup)) {
+            Optional<Action> cp = byLocationGroup.apply(locationGroupName);
+            if (cp.isPresent()) {
+                return cp;
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -21,19 +21,37 @@
  */
 package org.openwms.tms.routing;
 
+import javax.annotation.PostConstruct;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.activiti.engine.ActivitiObjectNotFoundException;
 import org.activiti.engine.RepositoryService;
 import org.activiti.engine.RuntimeService;
 import org.activiti.engine.TaskService;
+import org.activiti.engine.delegate.event.ActivitiEntityEvent;
+import org.activiti.engine.delegate.event.ActivitiEvent;
+import org.activiti.engine.delegate.event.ActivitiEventListener;
+import org.activiti.engine.delegate.event.ActivitiEventType;
+import org.activiti.engine.impl.cfg.TransactionState;
+import org.activiti.engine.impl.context.Context;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.repository.Deployment;
+import org.activiti.engine.repository.ProcessDefinition;
+import org.ameba.exception.NotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
- * A ActivitiExecutor.
+ * A ActivitiExecutor starts the process definition referenced by an {@link Action}. Resolved process definition ids are cached per
+ * {@code programKey} and the cache is dropped as soon as the creation or deletion of a process definition or deployment has been
+ * committed. Each cached id is stamped with the cache generation that was current before it was looked up, so a lookup that raced with
+ * a deployment can't put an outdated id back into the cache.
  *
  * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
  */
@@ -47,14 +65,89 @@ class ActivitiExecutor implements ProgramExecutor {
     TaskService taskService;
     @Autowired
     RepositoryService repositoryService;
+    private final ConcurrentMap<String, Definition> definitionIds = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    @PostConstruct
+    void registerDeploymentListener() {
+        runtimeService.addEventListener(new DeploymentListener(), ActivitiEventType.ENTITY_CREATED, ActivitiEventType.ENTITY_DELETED);
+    }
 
     @Override
     public ProgramResult execute(Action program, Map<String, Object> runtimeVariables) {
         LOGGER.debug("Executing program : {}", program);
         Map<String, Object> variables = new HashMap<>();
         variables.put("barcode", "");
-        String id = repositoryService.createProcessDefinitionQuery().processDefinitionKey(program.getProgramKey()).singleResult().getId();
-        runtimeService.startProcessInstanceById(id, runtimeVariables);
+        String id = resolveDefinitionId(program.getProgramKey());
+        try {
+            runtimeService.startProcessInstanceById(id, runtimeVariables);
+        } catch (ActivitiObjectNotFoundException e) {
+
+            // The definition was removed without us being notified, resolve once more
+            definitionIds.remove(program.getProgramKey());
+            runtimeService.startProcessInstanceById(resolveDefinitionId(program.getProgramKey()), runtimeVariables);
+        }
         return null;
     }
+
+    private String resolveDefinitionId(String programKey) {
+        long current = generation.get();
+        Definition cached = definitionIds.get(programKey);
+        if (null != cached && cached.generation == current) {
+            return cached.id;
+        }
+        ProcessDefinition definition = repositoryService.createProcessDefinitionQuery().processDefinitionKey(programKey).latestVersion().singleResult();
+        if (null == definition) {
+            throw new NotFoundException(String.format("No process definition with key [%s] deployed", programKey));
+        }
+        definitionIds.put(programKey, new Definition(definition.getId(), current));
+        return definition.getId();
+    }
+
+    /**
+     * Invalidate all cached definition ids.
+     */
+    void evict() {
+        generation.incrementAndGet();
+        LOGGER.debug("Process definitions changed, clearing the cache of [{}] definition ids", definitionIds.size());
+        definitionIds.clear();
+    }
+
+    private static final class Definition {
+
+        private final String id;
+        private final long generation;
+
+        Definition(String id, long generation) {
+            this.id = id;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Drops all cached definition ids after a new version has been deployed or an existing one has been deleted. The events are fired
+     * before the deployment is committed, so the eviction is deferred until the commit.
+     */
+    private class DeploymentListener implements ActivitiEventListener {
+
+        @Override
+        public void onEvent(ActivitiEvent event) {
+            if (event instanceof ActivitiEntityEvent) {
+                Object entity = ((ActivitiEntityEvent) event).getEntity();
+                if (entity instanceof ProcessDefinition || entity instanceof Deployment) {
+                    CommandContext commandContext = Context.getCommandContext();
+                    if (null == commandContext) {
+                        evict();
+                    } else {
+                        commandContext.getTransactionContext().addTransactionListener(TransactionState.COMMITTED, cc -> evict());
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean isFailOnException() {
+            return false;
+        }
+    }
 }
@@ -0,0 +1,129 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.routing;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.openwms.common.LocationGroupHierarchy;
+import org.openwms.common.LocationGroupVO;
+import org.openwms.common.LocationVO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * A AncestorChainMatrix resolves {@link Action}s with one single query per request. The ancestor chain of the {@code LocationGroup}
+ * is taken from the {@link LocationGroupHierarchy} and passed to the database as a whole, the nearest match is picked afterwards.
+ * Activated with {@code owms.routing.matrix=chain}.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+@Component
+@ConditionalOnProperty(name = "owms.routing.matrix", havingValue = "chain")
+class AncestorChainMatrix implements Matrix {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AncestorChainMatrix.class);
+
+    @Autowired
+    private ActionRepository repository;
+    @Autowired
+    private LocationGroupHierarchy hierarchy;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Action findBy(@NotNull String actionType, @NotNull Route route, LocationVO location, LocationGroupVO locationGroup) {
+        if (null == location && null == locationGroup) {
+            String message = String.format("No Action found for Route [%s] and Location [%s] without LocationGroup", route.getRouteId(), location);
+            LOGGER.info(message);
+            throw new NoRouteException(message);
+        }
+        List<String> chain = chainOf(location, locationGroup);
+        String locationKey = null == location ? null : location.getCoordinate();
+        // An empty IN list is not portable, the Location key is passed as harmless placeholder then
+        List<Action> candidates = chain.isEmpty() && null == locationKey
+                ? Collections.emptyList()
+                : repository.findByRouteAndLocationKeyOrChain(route, actionType, locationKey, chain.isEmpty() ? Collections.singletonList(locationKey) : chain);
+        return nearest(candidates, locationKey, chain).orElseThrow(() -> {
+            String message = null == location
+                    ? String.format("No Action found for Route [%s], Location [%s], LocationGroup [%s]", route.getRouteId(), location, locationGroup)
+                    : String.format("No Action found for Route [%s] on Location [%s] and LocationGroup [%s]", route.getRouteId(), location.getCoordinate(), location.getLocationGroupName());
+            LOGGER.info(message);
+            return new NoRouteException(message);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The snapshot is an in-memory {@link DecisionTable} of all enabled Actions, resolved in the same way as the chain query.
+     */
+    @Override
+    public Matrix snapshot() {
+        return DecisionTable.of(repository.findAllEnabled()).asMatrix(hierarchy);
+    }
+
+    /**
+     * The chain starts with the LocationGroup of the Location, followed by the given LocationGroup and all its ancestors.
+     */
+    private List<String> chainOf(LocationVO location, LocationGroupVO locationGroup) {
+        Set<String> chain = new LinkedHashSet<>();
+        if (null != location && null != location.getLocationGroupName()) {
+            chain.add(location.getLocationGroupName());
+        }
+        if (null != locationGroup) {
+            chain.addAll(hierarchy.ancestorsOf(locationGroup));
+        }
+        return new ArrayList<>(chain);
+    }
+
+    /**
+     * An Action defined for the Location wins, otherwise the one defined for the LocationGroup nearest to the start of the chain.
+     */
+    private Optional<Action> nearest(List<Action> candidates, String locationKey, List<String> chain) {
+        if (candidates.isEmpty()) {
+            return Optional.empty();
+        }
+        if (null != locationKey) {
+            Optional<Action> explicit = candidates.stream().filter(a -> locationKey.equals(a.getLocationKey())).findFirst();
+            if (explicit.isPresent()) {
+                return explicit;
+            }
+        }
+        for (String locationGroupName : chain) {
+            Optional<Action> cp = candidates.stream().filter(a -> locationGroupName.equals(a.getLocationGroupName())).findFirst();
+            if (cp.isPresent()) {
+                return cp;
+            }
+        }
+        return Optional.empty();
+    }
+}
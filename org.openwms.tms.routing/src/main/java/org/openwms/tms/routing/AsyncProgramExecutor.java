@@ -0,0 +1,71 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.routing;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * A AsyncProgramExecutor queues the start of a program on a bounded worker pool and delegates to the {@link ProgramExecutor}. The
+ * calling thread is released immediately. If the pool is saturated the returned future fails with a {@link ExecutorBusyException}.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+@Component
+public class AsyncProgramExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncProgramExecutor.class);
+
+    @Autowired
+    private ProgramExecutor executor;
+    @Autowired
+    @Qualifier("programExecutorPool")
+    private ThreadPoolTaskExecutor pool;
+
+    /**
+     * Queue the execution of the {@code program}.
+     *
+     * @param program The Action to execute
+     * @param runtimeVariables Variables passed to the program
+     * @return A future completed with the result of the program
+     */
+    public CompletableFuture<ProgramResult> execute(Action program, Map<String, Object> runtimeVariables) {
+        try {
+            return CompletableFuture.supplyAsync(() -> executor.execute(program, runtimeVariables), pool);
+        } catch (TaskRejectedException | RejectedExecutionException e) {
+            LOGGER.warn("Program executor saturated, rejecting [{}]. Active [{}], queued [{}]", program.getName(), pool.getActiveCount(),
+                    pool.getThreadPoolExecutor().getQueue().size());
+            CompletableFuture<ProgramResult> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new ExecutorBusyException(String.format("Too many programs in progress, [%s] rejected", program.getName())));
+            return rejected;
+        }
+    }
+}
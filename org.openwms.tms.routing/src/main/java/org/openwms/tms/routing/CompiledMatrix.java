@@ -0,0 +1,93 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.routing;
+
+import javax.annotation.PostConstruct;
+import javax.validation.constraints.NotNull;
+
+import org.openwms.common.LocationGroupHierarchy;
+import org.openwms.common.LocationGroupVO;
+import org.openwms.common.LocationVO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * A CompiledMatrix loads all enabled {@link Action}s once into an immutable {@link DecisionTable} and resolves {@code Action}s in memory
+ * only. The table is rebuilt and swapped atomically after an {@code Action} or a {@code Route} has been changed. Activated with
+ * {@code owms.routing.matrix=compiled}.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+@Component
+@ConditionalOnProperty(name = "owms.routing.matrix", havingValue = "compiled")
+class CompiledMatrix implements Matrix {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompiledMatrix.class);
+
+    @Autowired
+    private ActionRepository repository;
+    @Autowired
+    private LocationGroupHierarchy hierarchy;
+    private volatile DecisionTable table = DecisionTable.EMPTY;
+
+    /**
+     * Load all enabled Actions and swap the current table.
+     */
+    @PostConstruct
+    void reload() {
+        DecisionTable newTable = DecisionTable.of(repository.findAllEnabled());
+        table = newTable;
+        LOGGER.debug("Routing decision table reloaded with [{}] entries", newTable.size());
+    }
+
+    /**
+     * Reload the table as soon as the transaction that has changed an Action or Route has been committed.
+     *
+     * @param event The event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoutingDataChanged(RoutingDataChangedEvent event) {
+        reload();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Action findBy(@NotNull String actionType, @NotNull Route route, LocationVO location, LocationGroupVO locationGroup) {
+        return table.asMatrix(hierarchy).findBy(actionType, route, location, locationGroup);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned Matrix is bound to the table that is current at the time of calling.
+     */
+    @Override
+    public Matrix snapshot() {
+        return table.asMatrix(hierarchy);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.routing;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import org.openwms.common.LocationGroupHierarchy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A DecisionTable is an immutable index of enabled {@link Action}s, keyed by the {@code Route}, the type of action and either the
+ * {@code Location} key or the {@code LocationGroup} name.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+final class DecisionTable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DecisionTable.class);
+    /** An empty table without any Actions. */
+    static final DecisionTable EMPTY = new DecisionTable(Collections.emptyMap(), Collections.emptyMap());
+    private final Map<Key, Action> byLocation;
+    private final Map<Key, Action> byLocationGroup;
+
+    private DecisionTable(Map<Key, Action> byLocation, Map<Key, Action> byLocationGroup) {
+        this.byLocation = byLocation;
+        this.byLocationGroup = byLocationGroup;
+    }
+
+    /**
+     * Build a DecisionTable from the given {@code actions}. Disabled Actions are skipped, for duplicates the first one wins.
+     *
+     * @param actions All Actions to index
+     * @return The immutable table
+     */
+    static DecisionTable of(Collection<Action> actions) {
+        Map<Key, Action> byLocation = new HashMap<>();
+        Map<Key, Action> byLocationGroup = new HashMap<>();
+        for (Action action : actions) {
+            if (!action.isEnabled() || action.getRoute() == null) {
+                continue;
+            }
+            String routeId = action.getRoute().getRouteId();
+            if (action.getLocationKey() != null) {
+                put(byLocation, new Key(routeId, action.getActionType(), action.getLocationKey()), action);
+            }
+            if (action.getLocationGroupName() != null) {
+                put(byLocationGroup, new Key(routeId, action.getActionType(), action.getLocationGroupName()), action);
+            }
+        }
+        return new DecisionTable(Collections.unmodifiableMap(byLocation), Collections.unmodifiableMap(byLocationGroup));
+    }
+
+    private static void put(Map<Key, Action> index, Key key, Action action) {
+        Action existing = index.putIfAbsent(key, action);
+        if (existing != null) {
+            LOGGER.warn("Ambiguous Actions [{}] and [{}] for [{}], the first one is used", existing.getName(), action.getName(), key);
+        }
+    }
+
+    /**
+     * Find an {@code Action} explicitly defined for a {@code Location}.
+     *
+     * @param routeId The id of the Route
+     * @param actionType The type of action
+     * @param locationKey The key of the Location
+     * @return The Action, if any
+     */
+    Optional<Action> findByLocation(String routeId, String actionType, String locationKey) {
+        return Optional.ofNullable(byLocation.get(new Key(routeId, actionType, locationKey)));
+    }
+
+    /**
+     * Find an {@code Action} defined for a {@code LocationGroup}.
+     *
+     * @param routeId The id of the Route
+     * @param actionType The type of action
+     * @param locationGroupName The name of the LocationGroup
+     * @return The Action, if any
+     */
+    Optional<Action> findByLocationGroup(String routeId, String actionType, String locationGroupName) {
+        return Optional.ofNullable(byLocationGroup.get(new Key(routeId, actionType, locationGroupName)));
+    }
+
+    /**
+     * Return a {@link Matrix} that resolves {@code Action}s against this table only.
+     *
+     * @param hierarchy Used to walk up the {@code LocationGroup} hierarchy
+     * @return The Matrix
+     */
+    Matrix asMatrix(LocationGroupHierarchy hierarchy) {
+        return (actionType, route, location, locationGroup) -> ActionSearch.findBy(route, location, locationGroup, hierarchy,
+                locationKey -> findByLocation(route.getRouteId(), actionType, locationKey),
+                locationGroupName -> findByLocationGroup(route.getRouteId(), actionType, locationGroupName));
+    }
+
+    /**
+     * Get the number of indexed entries.
+     *
+     * @return The size of the table
+     */
+    int size() {
+        return byLocation.size() + byLocationGroup.size();
+    }
+
+    private static final class Key {
+
+        private final String routeId, actionType, name;
+        private final int hash;
+
+        Key(String routeId, String actionType, String name) {
+            this.routeId = routeId;
+            this.actionType = actionType;
+            this.name = name;
+            this.hash = Objects.hash(routeId, actionType, name);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return Objects.equals(routeId, key.routeId) &&
+                    Objects.equals(actionType, key.actionType) &&
+                    Objects.equals(name, key.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return routeId + "/" + actionType + "/" + name;
+        }
+    }
+}
@@ -34,7 +34,8 @@ public interface Matrix {
     /**
      * Find and return an {@code Action}.
      *
-     * @param actionType The type of action is often the type of triggering event (REQ_, SYSU, etc.)
+     * @param actionType The type of action is often the type of triggering event (REQ_, SYSU, etc.), only Actions of this type are
+     * considered
      * @param route The {@code TransportOrder}s {@code Route}
      * @param location The actual {@code Location}
      * @param locationGroup The corresponding actual {@code LocationGroup}
@@ -42,4 +43,14 @@ public interface Matrix {
      * @throws org.ameba.exception.NotFoundException in case no Action was found
      */
     Action findBy(String actionType, Route route, LocationVO location, LocationGroupVO locationGroup);
+
+    /**
+     * Return a Matrix that resolves all subsequent calls against the same state of routing data, even if the data changes meanwhile.
+     * Useful to route a batch of requests consistently.
+     *
+     * @return The Matrix to use for a batch of requests
+     */
+    default Matrix snapshot() {
+        return this;
+    }
 }
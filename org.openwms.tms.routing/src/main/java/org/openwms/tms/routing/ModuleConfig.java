@@ -21,9 +21,13 @@
  */
 package org.openwms.tms.routing;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestTemplate;
 
 /**
@@ -46,4 +50,42 @@ class ModuleConfig {
     RestTemplate simpleRestTemplate() {
         return new RestTemplate();
     }
+
+    /**
+     * The bounded pool used to start programs asynchronously. When all workers are busy and the queue is full, further submissions are
+     * rejected instead of piling up.
+     */
+    public
+    @Bean
+    ThreadPoolTaskExecutor programExecutorPool(
+            @Value("${owms.routing.executor.core-size:4}") int coreSize,
+            @Value("${owms.routing.executor.max-size:16}") int maxSize,
+            @Value("${owms.routing.executor.queue-capacity:200}") int queueCapacity) {
+        ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
+        pool.setCorePoolSize(coreSize);
+        pool.setMaxPoolSize(maxSize);
+        pool.setQueueCapacity(queueCapacity);
+        pool.setThreadNamePrefix("program-");
+        pool.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        pool.setWaitForTasksToCompleteOnShutdown(true);
+        return pool;
+    }
+
+    /**
+     * The pool used to run lookups against other services concurrently. When all workers are busy and the queue is full, further lookups
+     * are rejected instead of being run by the caller without a deadline.
+     */
+    public
+    @Bean
+    ThreadPoolTaskExecutor lookupExecutorPool(
+            @Value("${owms.routing.lookup.pool-size:16}") int poolSize,
+            @Value("${owms.routing.lookup.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
+        pool.setCorePoolSize(poolSize);
+        pool.setMaxPoolSize(poolSize);
+        pool.setQueueCapacity(queueCapacity);
+        pool.setThreadNamePrefix("lookup-");
+        pool.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return pool;
+    }
 }
@@ -0,0 +1,208 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willReturn;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.hateoas.Link;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * A LocationGroupHierarchyTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+public class LocationGroupHierarchyTest {
+
+    private static final String HREF = "stub://locationgroups/";
+    private final Map<String, LocationGroupVO> groups = new HashMap<>();
+    private RestTemplate restTemplate;
+    private RestTemplate simpleRestTemplate;
+    private LocationGroupHierarchy testee;
+
+    /**
+     * ROOT has the children NEAR and MID, LEAF is the child of MID.
+     */
+    @Before
+    public void setUp() {
+        restTemplate = mock(RestTemplate.class);
+        simpleRestTemplate = mock(RestTemplate.class);
+        group("ROOT", null);
+        group("NEAR", "ROOT");
+        group("MID", "ROOT");
+        group("LEAF", "MID");
+        testee = hierarchy(60000, 100, false);
+    }
+
+    private LocationGroupHierarchy hierarchy(long ttl, int maxSize, boolean preload) {
+        LocationGroupHierarchy hierarchy = new LocationGroupHierarchy();
+        ReflectionTestUtils.setField(hierarchy, "restTemplate", restTemplate);
+        ReflectionTestUtils.setField(hierarchy, "simpleRestTemplate", simpleRestTemplate);
+        ReflectionTestUtils.setField(hierarchy, "ttl", ttl);
+        ReflectionTestUtils.setField(hierarchy, "maxSize", maxSize);
+        ReflectionTestUtils.setField(hierarchy, "preload", preload);
+        return hierarchy;
+    }
+
+    private void group(String name, String parent) {
+        LocationGroupVO lg = new LocationGroupVO(name);
+        lg.setParent(parent);
+        if (null != parent) {
+            lg.add(new Link(HREF + parent, "_parent"));
+        }
+        groups.put(name, lg);
+        given(simpleRestTemplate.getForObject(HREF + name, LocationGroupVO.class)).willReturn(lg);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void commonServiceReturnsAll() {
+        List<LocationGroupVO> all = Arrays.asList(groups.get("ROOT"), groups.get("NEAR"), groups.get("MID"), groups.get("LEAF"));
+        willReturn(new ResponseEntity<>(all, HttpStatus.OK)).given(restTemplate)
+                .exchange(anyString(), eq(HttpMethod.GET), (HttpEntity<?>) isNull(), any(ParameterizedTypeReference.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void verifyLoadedAll(int times) {
+        verify(restTemplate, times(times)).exchange(anyString(), eq(HttpMethod.GET), (HttpEntity<?>) isNull(), any(ParameterizedTypeReference.class));
+    }
+
+    public final @Test void testWalkUpOnceAndServeFromCache() {
+        assertEquals(Arrays.asList("LEAF", "MID", "ROOT"), testee.ancestorsOf(groups.get("LEAF")));
+        assertEquals(Arrays.asList("LEAF", "MID", "ROOT"), testee.ancestorsOf(groups.get("LEAF")));
+        assertEquals(Arrays.asList("MID", "ROOT"), testee.ancestorsOf(groups.get("MID")));
+
+        verify(simpleRestTemplate, times(1)).getForObject(HREF + "MID", LocationGroupVO.class);
+        verify(simpleRestTemplate, times(1)).getForObject(HREF + "ROOT", LocationGroupVO.class);
+    }
+
+    public final @Test void testWalkStopsAtCachedAncestor() {
+        testee.ancestorsOf(groups.get("MID"));
+
+        assertEquals(Arrays.asList("LEAF", "MID", "ROOT"), testee.ancestorsOf(groups.get("LEAF")));
+        verify(simpleRestTemplate, times(1)).getForObject(HREF + "ROOT", LocationGroupVO.class);
+    }
+
+    public final @Test void testExpiredChainIsResolvedAgain() throws Exception {
+        testee = hierarchy(50, 100, false);
+        testee.ancestorsOf(groups.get("NEAR"));
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        assertEquals(Arrays.asList("NEAR", "ROOT"), testee.ancestorsOf(groups.get("NEAR")));
+        verify(simpleRestTemplate, times(2)).getForObject(HREF + "ROOT", LocationGroupVO.class);
+    }
+
+    public final @Test void testLeastRecentlyUsedIsEvicted() {
+        testee = hierarchy(60000, 2, false);
+        testee.ancestorsOf(groups.get("LEAF"));
+        testee.ancestorsOf(groups.get("MID"));
+
+        // ROOT pushes out LEAF, the least recently used one
+        testee.ancestorsOf(groups.get("ROOT"));
+        assertEquals(Arrays.asList("LEAF", "MID", "ROOT"), testee.ancestorsOf(groups.get("LEAF")));
+        verify(simpleRestTemplate, times(2)).getForObject(HREF + "MID", LocationGroupVO.class);
+        verify(simpleRestTemplate, times(1)).getForObject(HREF + "ROOT", LocationGroupVO.class);
+    }
+
+    public final @Test void testLoadAllWithoutWalkingUp() {
+        commonServiceReturnsAll();
+
+        testee.loadAll();
+
+        assertEquals(Arrays.asList("LEAF", "MID", "ROOT"), testee.ancestorsOf(groups.get("LEAF")));
+        assertEquals(Arrays.asList("NEAR", "ROOT"), testee.ancestorsOf(groups.get("NEAR")));
+        assertEquals(Arrays.asList("ROOT"), testee.ancestorsOf(groups.get("ROOT")));
+        verify(simpleRestTemplate, never()).getForObject(anyString(), eq(LocationGroupVO.class));
+    }
+
+    public final @Test void testRefreshDropsAllChains() {
+        testee.ancestorsOf(groups.get("NEAR"));
+
+        testee.refresh();
+
+        testee.ancestorsOf(groups.get("NEAR"));
+        verify(simpleRestTemplate, times(2)).getForObject(HREF + "ROOT", LocationGroupVO.class);
+        verifyLoadedAll(0);
+    }
+
+    public final @Test void testRefreshLoadsAllAgainWithPreload() {
+        commonServiceReturnsAll();
+        testee = hierarchy(60000, 100, true);
+        testee.init();
+
+        testee.refresh();
+
+        verifyLoadedAll(2);
+        testee.ancestorsOf(groups.get("LEAF"));
+        verify(simpleRestTemplate, never()).getForObject(anyString(), eq(LocationGroupVO.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    public final @Test void testFailedPreloadFallsBackToLazyLoading() {
+        willThrow(new ResourceAccessException("Common service down")).given(restTemplate)
+                .exchange(anyString(), eq(HttpMethod.GET), (HttpEntity<?>) isNull(), any(ParameterizedTypeReference.class));
+        testee = hierarchy(60000, 100, true);
+
+        testee.init();
+
+        assertEquals(Arrays.asList("NEAR", "ROOT"), testee.ancestorsOf(groups.get("NEAR")));
+    }
+
+    public final @Test void testRefreshEndpoint() throws Exception {
+        LocationGroupHierarchy hierarchy = mock(LocationGroupHierarchy.class);
+        LocationGroupHierarchyController controller = new LocationGroupHierarchyController();
+        ReflectionTestUtils.setField(controller, "hierarchy", hierarchy);
+
+        MockMvcBuilders.standaloneSetup(controller).build()
+                .perform(post("/v1/locationgroups/hierarchy/refresh"))
+                .andExpect(status().isNoContent());
+        verify(hierarchy).refresh();
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.common.comm.req;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.ameba.exception.NotFoundException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openwms.common.FetchLocationByCoord;
+import org.openwms.common.FetchLocationGroupByName;
+import org.openwms.common.LocationGroupVO;
+import org.openwms.common.LocationVO;
+import org.openwms.tms.FetchStartedTransportOrder;
+import org.openwms.tms.TransportOrder;
+import org.openwms.tms.routing.ExecutorBusyException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * A RequestEnricherTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+public class RequestEnricherTest {
+
+    private RequestEnricher testee;
+    private FetchLocationByCoord fetchLocationByCoord;
+    private FetchLocationGroupByName fetchLocationGroupByName;
+    private FetchStartedTransportOrder fetchTransportOrder;
+    private ThreadPoolTaskExecutor pool;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void setUp() {
+        fetchLocationByCoord = mock(FetchLocationByCoord.class);
+        fetchLocationGroupByName = mock(FetchLocationGroupByName.class);
+        fetchTransportOrder = mock(FetchStartedTransportOrder.class);
+        pool = new ThreadPoolTaskExecutor();
+        pool.setCorePoolSize(8);
+        pool.initialize();
+        testee = new RequestEnricher();
+        ReflectionTestUtils.setField(testee, "fetchLocationByCoord", fetchLocationByCoord);
+        ReflectionTestUtils.setField(testee, "fetchLocationGroupByName", fetchLocationGroupByName);
+        ReflectionTestUtils.setField(testee, "fetchTransportOrder", fetchTransportOrder);
+        ReflectionTestUtils.setField(testee, "pool", pool);
+        ReflectionTestUtils.setField(testee, "timeout", 1000L);
+        when(fetchTransportOrder.apply(anyString())).then(i -> new TransportOrder("1", (String) i.getArguments()[0], "R001"));
+        when(fetchLocationGroupByName.apply("G1")).thenReturn(new LocationGroupVO("G1"));
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        pool.shutdown();
+    }
+
+    private static RequestVO request(String barcode, String actualLocation) {
+        RequestVO req = new RequestVO();
+        req.setBarcode(barcode);
+        req.setActualLocation(actualLocation);
+        return req;
+    }
+
+    private static LocationVO location(String coordinate) {
+        LocationVO location = new LocationVO(coordinate);
+        location.setLocationGroupName("G1");
+        return location;
+    }
+
+    @Test
+    public void shouldLookUpEachKeyOncePerBatch() {
+        when(fetchLocationByCoord.apply("L1")).thenReturn(location("L1"));
+
+        List<CompletableFuture<RequestEnricher.Enrichment>> result = testee.enrichAll(Arrays.asList(request("4711", "L1"), request("4712", "L1")));
+
+        assertEquals("R001", result.get(0).join().getRoute().getRouteId());
+        assertEquals("L1", result.get(1).join().getLocation().getCoordinate());
+        assertEquals("G1", result.get(1).join().getLocationGroup().getName());
+        verify(fetchLocationByCoord, times(1)).apply("L1");
+        verify(fetchLocationGroupByName, times(1)).apply("G1");
+    }
+
+    @Test
+    public void shouldIsolateFailedLookups() {
+        when(fetchLocationByCoord.apply("L1")).thenReturn(location("L1"));
+        when(fetchLocationByCoord.apply("L2")).thenThrow(new NotFoundException("No Location L2"));
+
+        List<CompletableFuture<RequestEnricher.Enrichment>> result = testee.enrichAll(Arrays.asList(request("4711", "L1"), request("4712", "L2")));
+
+        assertFalse(result.get(0).isCompletedExceptionally());
+        assertTrue(result.get(1).isCompletedExceptionally());
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void shouldRethrowTheCauseOfASingleRequest() {
+        when(fetchLocationByCoord.apply("L2")).thenThrow(new NotFoundException("No Location L2"));
+        testee.enrich(request("4711", "L2"));
+    }
+
+    @Test
+    public void shouldWaitForOneDeadlinePerBatch() {
+        ReflectionTestUtils.setField(testee, "timeout", 200L);
+        when(fetchLocationByCoord.apply(anyString())).then(i -> {
+            release.await();
+            return location((String) i.getArguments()[0]);
+        });
+
+        long start = System.currentTimeMillis();
+        List<CompletableFuture<RequestEnricher.Enrichment>> result = testee.enrichAll(Arrays.asList(request("4711", "L1"), request("4712", "L2"), request("4713", "L3")));
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue("The batch must not wait for each request in sequence, but took " + elapsed + " ms", elapsed < 500);
+        for (CompletableFuture<RequestEnricher.Enrichment> f : result) {
+            try {
+                f.join();
+                fail("Expected a timeout");
+            } catch (CompletionException e) {
+                assertTrue(e.getCause() instanceof LookupTimeoutException);
+            }
+        }
+    }
+
+    @Test
+    public void shouldRejectLookupsWhenThePoolIsSaturated() throws Exception {
+        pool.shutdown();
+        pool = new ThreadPoolTaskExecutor();
+        pool.setCorePoolSize(1);
+        pool.setMaxPoolSize(1);
+        pool.setQueueCapacity(0);
+        pool.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        pool.initialize();
+        ReflectionTestUtils.setField(testee, "pool", pool);
+        CountDownLatch running = new CountDownLatch(1);
+        when(fetchTransportOrder.apply("4711")).then(i -> {
+            running.countDown();
+            release.await();
+            return new TransportOrder("1", "4711", "R001");
+        });
+
+        try {
+            testee.enrich(request("4711", "L1"));
+            fail("Expected the lookup of the Location to be rejected");
+        } catch (ExecutorBusyException e) {
+            assertTrue(running.await(1, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void shouldInterruptLookupsAfterTheDeadline() throws Exception {
+        ReflectionTestUtils.setField(testee, "timeout", 100L);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(fetchLocationByCoord.apply("L1")).then(i -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return location("L1");
+        });
+
+        List<CompletableFuture<RequestEnricher.Enrichment>> result = testee.enrichAll(Arrays.asList(request("4711", "L1")));
+
+        assertTrue(result.get(0).isCompletedExceptionally());
+        assertTrue("The running lookup must be interrupted", interrupted.await(1, TimeUnit.SECONDS));
+    }
+}
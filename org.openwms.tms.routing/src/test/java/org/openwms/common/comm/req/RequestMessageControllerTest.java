@@ -0,0 +1,189 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.common.comm.req;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openwms.common.LocationGroupVO;
+import org.openwms.common.LocationVO;
+import org.openwms.tms.routing.Action;
+import org.openwms.tms.routing.AsyncProgramExecutor;
+import org.openwms.tms.routing.ExecutorBusyException;
+import org.openwms.tms.routing.Matrix;
+import org.openwms.tms.routing.ProgramExecutor;
+import org.openwms.tms.routing.ProgramResult;
+import org.openwms.tms.routing.Route;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+/**
+ * A RequestMessageControllerTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+public class RequestMessageControllerTest {
+
+    private static final Route R001 = new Route("R001");
+    private RequestMessageController testee;
+    private RequestEnricher enricher;
+    private Matrix matrix;
+    private ProgramExecutor executor;
+    private AsyncProgramExecutor asyncExecutor;
+
+    @Before
+    public void setUp() {
+        testee = new RequestMessageController();
+        enricher = mock(RequestEnricher.class);
+        matrix = mock(Matrix.class);
+        executor = mock(ProgramExecutor.class);
+        ReflectionTestUtils.setField(testee, "enricher", enricher);
+        ReflectionTestUtils.setField(testee, "matrix", matrix);
+        ReflectionTestUtils.setField(testee, "executor", executor);
+        asyncExecutor = mock(AsyncProgramExecutor.class);
+        ReflectionTestUtils.setField(testee, "asyncExecutor", asyncExecutor);
+        when(matrix.snapshot()).thenReturn(matrix);
+    }
+
+    private static RequestVO request(String barcode, String actualLocation) {
+        RequestVO req = new RequestVO();
+        req.setBarcode(barcode);
+        req.setActualLocation(actualLocation);
+        return req;
+    }
+
+    private static CompletableFuture<RequestEnricher.Enrichment> enrichment(String coordinate) {
+        return CompletableFuture.completedFuture(new RequestEnricher.Enrichment(new LocationVO(coordinate), new LocationGroupVO("G1"), R001));
+    }
+
+    private static <T> CompletableFuture<T> failed(RuntimeException ex) {
+        CompletableFuture<T> f = new CompletableFuture<>();
+        f.completeExceptionally(ex);
+        return f;
+    }
+
+    @Test
+    public void shouldAnswerEachTelegramInOrder() {
+        List<RequestVO> requests = Arrays.asList(request("4711", "L1"), request("4712", "L2"), request("4713", "L3"));
+        when(enricher.enrichAll(requests)).thenReturn(Arrays.asList(
+                enrichment("L1"),
+                failed(new LookupTimeoutException("Lookup of L2 timed out")),
+                enrichment("L3")));
+        Action act001 = new Action(R001, "ACT001", "L1", null, "REQ_", "CP001", "Start CP001");
+        when(matrix.findBy(eq("REQ_"), eq(R001), any(LocationVO.class), any(LocationGroupVO.class))).then(i -> {
+            if ("L3".equals(((LocationVO) i.getArguments()[2]).getCoordinate())) {
+                throw new IllegalArgumentException("No Action for L3");
+            }
+            return act001;
+        });
+
+        List<ResultVO> results = testee.handleREQs(requests).join();
+
+        assertEquals(3, results.size());
+        assertEquals("4711", results.get(0).getBarcode());
+        assertEquals("ACT001", results.get(0).getAction());
+        assertNull(results.get(0).getError());
+        assertEquals("4712", results.get(1).getBarcode());
+        assertEquals("Lookup of L2 timed out", results.get(1).getError());
+        assertNull(results.get(1).getAction());
+        assertEquals("No Action for L3", results.get(2).getError());
+    }
+
+    @Test
+    public void shouldReportAFailedProgram() {
+        List<RequestVO> requests = Arrays.asList(request("4711", "L1"));
+        when(enricher.enrichAll(requests)).thenReturn(Arrays.asList(enrichment("L1")));
+        when(matrix.findBy(anyString(), any(Route.class), any(LocationVO.class), any(LocationGroupVO.class)))
+                .thenReturn(new Action(R001, "ACT001", "L1", null, "REQ_", "CP001", "Start CP001"));
+        when(executor.execute(any(Action.class), anyMapOf(String.class, Object.class))).thenThrow(new IllegalStateException("CP001 failed"));
+
+        List<ResultVO> results = testee.handleREQs(requests).join();
+
+        assertEquals("CP001 failed", results.get(0).getError());
+    }
+
+    private MvcResult postREQ(MockMvc mvc) throws Exception {
+        when(enricher.enrich(any(RequestVO.class))).thenReturn(enrichment("L1").join());
+        Action act001 = new Action(R001, "ACT001", "L1", null, "REQ_", "CP001", "Start CP001");
+        when(matrix.findBy(anyString(), any(Route.class), any(LocationVO.class), any(LocationGroupVO.class))).thenReturn(act001);
+        return mvc.perform(post("/v1/req").contentType(MediaType.APPLICATION_JSON).content("{\"barcode\":\"4711\",\"actualLocation\":\"L1\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    @Test
+    public void shouldCompleteTheREQAfterTheProgramHasFinished() throws Exception {
+        ReflectionTestUtils.setField(testee, "async", true);
+        CompletableFuture<ProgramResult> execution = new CompletableFuture<>();
+        when(asyncExecutor.execute(any(Action.class), anyMapOf(String.class, Object.class))).thenReturn(execution);
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(testee).build();
+
+        MvcResult result = postREQ(mvc);
+        execution.complete(new ProgramResult());
+
+        mvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+        verify(asyncExecutor).execute(any(Action.class), anyMapOf(String.class, Object.class));
+    }
+
+    @Test
+    public void shouldAnswerWith503WhenTheProgramPoolIsSaturated() throws Exception {
+        ReflectionTestUtils.setField(testee, "async", true);
+        when(asyncExecutor.execute(any(Action.class), anyMapOf(String.class, Object.class)))
+                .thenReturn(failed(new ExecutorBusyException("Too many programs in progress, [ACT001] rejected")));
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(testee).build();
+
+        MvcResult result = postREQ(mvc);
+
+        mvc.perform(asyncDispatch(result)).andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    public void shouldCompleteTheREQSynchronouslyByDefault() throws Exception {
+        when(executor.execute(any(Action.class), anyMapOf(String.class, Object.class))).thenReturn(new ProgramResult());
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(testee).build();
+
+        MvcResult result = postREQ(mvc);
+
+        mvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+        verify(executor).execute(any(Action.class), anyMapOf(String.class, Object.class));
+    }
+}
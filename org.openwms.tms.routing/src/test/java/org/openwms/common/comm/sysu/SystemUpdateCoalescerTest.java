@@ -0,0 +1,99 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.common.comm.sysu;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * A SystemUpdateCoalescerTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+public class SystemUpdateCoalescerTest {
+
+    private SystemUpdateCoalescer testee;
+    private final AtomicInteger processed = new AtomicInteger();
+    private final Runnable processing = processed::incrementAndGet;
+
+    @Before
+    public void setUp() {
+        testee = new SystemUpdateCoalescer();
+        ReflectionTestUtils.setField(testee, "window", 60000L);
+    }
+
+    @Test
+    public void shouldSuppressDuplicates() {
+        assertTrue(testee.process("FGIN", "E01", processing));
+        assertFalse(testee.process("FGIN", "E01", processing));
+        assertEquals(1, processed.get());
+    }
+
+    @Test
+    public void shouldPassStateTransitions() {
+        assertTrue(testee.process("FGIN", "E01", processing));
+        assertTrue(testee.process("FGIN", "E00", processing));
+        assertTrue(testee.process("FGOUT", "E00", processing));
+        assertEquals(3, processed.get());
+    }
+
+    @Test
+    public void shouldPassAfterTheWindow() {
+        ReflectionTestUtils.setField(testee, "window", 1L);
+        testee.process("FGIN", "E01", processing);
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        assertTrue(testee.process("FGIN", "E01", processing));
+    }
+
+    @Test
+    public void shouldPassARetryOfAFailedUpdate() {
+        try {
+            testee.process("FGIN", "E01", () -> {
+                throw new IllegalStateException("No Action");
+            });
+            fail("Expected the failure to be rethrown");
+        } catch (IllegalStateException expected) {
+        }
+        assertTrue(testee.process("FGIN", "E01", processing));
+        assertEquals(1, processed.get());
+    }
+
+    @Test
+    public void shouldPassAllWithoutWindow() {
+        ReflectionTestUtils.setField(testee, "window", 0L);
+        testee.process("FGIN", "E01", processing);
+        testee.process("FGIN", "E01", processing);
+        assertEquals(2, processed.get());
+    }
+}
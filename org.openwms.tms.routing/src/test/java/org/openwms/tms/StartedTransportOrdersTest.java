@@ -0,0 +1,147 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * A StartedTransportOrdersTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+public class StartedTransportOrdersTest {
+
+    private StartedTransportOrders testee;
+    private RestTemplate restTemplate;
+
+    @Before
+    public void setUp() {
+        testee = new StartedTransportOrders();
+        restTemplate = mock(RestTemplate.class);
+        ReflectionTestUtils.setField(testee, "restTemplate", restTemplate);
+        ReflectionTestUtils.setField(testee, "enabled", true);
+        ReflectionTestUtils.setField(testee, "ttl", 60000L);
+    }
+
+    private static TransportOrderVO vo(String pKey, String barcode, String state) {
+        TransportOrderVO vo = new TransportOrderVO();
+        vo.setPersistentKey(pKey);
+        vo.setTransportUnitBK(barcode);
+        vo.setState(state);
+        return vo;
+    }
+
+    private void whenFetched(Runnable duringFetch, TransportOrderVO... started) {
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class), Matchers.<ParameterizedTypeReference<List<TransportOrderVO>>>any()))
+                .then(i -> {
+                    duringFetch.run();
+                    return new ResponseEntity<>(Arrays.asList(started), HttpStatus.OK);
+                });
+    }
+
+    @Test
+    public void shouldApplyPushedChanges() {
+        testee.apply(vo("1", "4711", "STARTED"));
+        assertEquals("1", testee.findBy("4711").get().getId());
+
+        testee.apply(vo("1", "4711", "FINISHED"));
+        assertFalse(testee.findBy("4711").isPresent());
+    }
+
+    @Test
+    public void shouldNotPutBackATerminatedOrder() {
+        // The lookup has read the order before it was finished, the push of the termination overtakes it
+        testee.apply(vo("1", "4711", "FINISHED"));
+        testee.put(new TransportOrder("1", "4711", "R001"));
+
+        assertFalse(testee.findBy("4711").isPresent());
+    }
+
+    @Test
+    public void shouldPutTheNextOrderOfATransportUnit() {
+        testee.apply(vo("1", "4711", "FINISHED"));
+        testee.put(new TransportOrder("2", "4711", "R001"));
+
+        assertEquals("2", testee.findBy("4711").get().getId());
+    }
+
+    @Test
+    public void shouldNotOverwriteAPushedOrder() {
+        testee.apply(vo("2", "4711", "STARTED"));
+        testee.put(new TransportOrder("1", "4711", "R001"));
+
+        assertEquals("2", testee.findBy("4711").get().getId());
+    }
+
+    @Test
+    public void shouldKeepALateTerminationFromRemovingTheNextOrder() {
+        testee.apply(vo("2", "4711", "STARTED"));
+        testee.apply(vo("1", "4711", "CANCELED"));
+
+        assertEquals("2", testee.findBy("4711").get().getId());
+    }
+
+    @Test
+    public void shouldExpireEntries() {
+        ReflectionTestUtils.setField(testee, "ttl", -1L);
+        testee.apply(vo("1", "4711", "STARTED"));
+
+        assertFalse(testee.findBy("4711").isPresent());
+    }
+
+    @Test
+    public void shouldKeepChangesPushedDuringResync() {
+        testee.apply(vo("0", "4710", "STARTED"));
+        whenFetched(() -> {
+            testee.apply(vo("1", "4711", "FINISHED"));
+            testee.apply(vo("2", "4712", "STARTED"));
+        }, vo("1", "4711", "STARTED"), vo("3", "4713", "STARTED"));
+
+        testee.resync();
+
+        assertFalse("Not started anymore", testee.findBy("4710").isPresent());
+        assertFalse("Finished during the resync", testee.findBy("4711").isPresent());
+        assertTrue("Started during the resync", testee.findBy("4712").isPresent());
+        assertTrue(testee.findBy("4713").isPresent());
+    }
+}
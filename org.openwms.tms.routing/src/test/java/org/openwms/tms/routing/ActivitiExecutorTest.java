@@ -0,0 +1,111 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.routing;
+
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.activiti.engine.RepositoryService;
+import org.activiti.engine.RuntimeService;
+import org.activiti.engine.repository.ProcessDefinition;
+import org.activiti.engine.repository.ProcessDefinitionQuery;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * A ActivitiExecutorTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+public class ActivitiExecutorTest {
+
+    private static final Action CP001 = new Action(new Route("R001"), "ACT001", "L1", null, "REQ_", "CP001", "Start CP001");
+    private ActivitiExecutor testee;
+    private RuntimeService runtimeService;
+    private ProcessDefinitionQuery query;
+
+    @Before
+    public void setUp() {
+        testee = new ActivitiExecutor();
+        runtimeService = mock(RuntimeService.class);
+        RepositoryService repositoryService = mock(RepositoryService.class, RETURNS_DEEP_STUBS);
+        query = repositoryService.createProcessDefinitionQuery().processDefinitionKey("CP001").latestVersion();
+        ReflectionTestUtils.setField(testee, "runtimeService", runtimeService);
+        ReflectionTestUtils.setField(testee, "repositoryService", repositoryService);
+    }
+
+    private static ProcessDefinition definition(String id) {
+        ProcessDefinition definition = mock(ProcessDefinition.class);
+        when(definition.getId()).thenReturn(id);
+        return definition;
+    }
+
+    @Test
+    public void shouldCacheTheDefinitionId() {
+        ProcessDefinition v1 = definition("CP001:1");
+        when(query.singleResult()).thenReturn(v1);
+
+        testee.execute(CP001, Collections.emptyMap());
+        testee.execute(CP001, Collections.emptyMap());
+
+        verify(query, times(1)).singleResult();
+        verify(runtimeService, times(2)).startProcessInstanceById(eq("CP001:1"), anyMapOf(String.class, Object.class));
+    }
+
+    @Test
+    public void shouldResolveAgainAfterEviction() {
+        ProcessDefinition v1 = definition("CP001:1");
+        ProcessDefinition v2 = definition("CP001:2");
+        when(query.singleResult()).thenReturn(v1, v2);
+
+        testee.execute(CP001, Collections.emptyMap());
+        testee.evict();
+        testee.execute(CP001, Collections.emptyMap());
+
+        verify(runtimeService).startProcessInstanceById(eq("CP001:2"), anyMapOf(String.class, Object.class));
+    }
+
+    @Test
+    public void shouldNotCacheALookupThatRacedWithADeployment() {
+        ProcessDefinition v1 = definition("CP001:1");
+        ProcessDefinition v2 = definition("CP001:2");
+        // The new version is committed while the first lookup is still running and has read the old one
+        when(query.singleResult()).then(i -> {
+            testee.evict();
+            return v1;
+        }).thenReturn(v2);
+
+        testee.execute(CP001, Collections.emptyMap());
+        testee.execute(CP001, Collections.emptyMap());
+
+        verify(runtimeService).startProcessInstanceById(eq("CP001:1"), anyMapOf(String.class, Object.class));
+        verify(runtimeService).startProcessInstanceById(eq("CP001:2"), anyMapOf(String.class, Object.class));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.routing;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * A AsyncProgramExecutorTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+public class AsyncProgramExecutorTest {
+
+    private static final Action BUSY = new Action(new Route("R001"), "ACT001", "L1", null, "REQ_", "CP001", "Blocks the only worker");
+    private static final Action NEXT = new Action(new Route("R001"), "ACT002", "L1", null, "REQ_", "CP002", "Queued behind");
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ProgramExecutor executor;
+    private ThreadPoolTaskExecutor pool;
+    private AsyncProgramExecutor testee;
+
+    @Before
+    public void setUp() {
+        executor = mock(ProgramExecutor.class);
+        pool = new ThreadPoolTaskExecutor();
+        pool.setCorePoolSize(1);
+        pool.setMaxPoolSize(1);
+        pool.setQueueCapacity(1);
+        pool.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        pool.initialize();
+        testee = new AsyncProgramExecutor();
+        ReflectionTestUtils.setField(testee, "executor", executor);
+        ReflectionTestUtils.setField(testee, "pool", pool);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        pool.shutdown();
+    }
+
+    public final @Test void testProgramIsExecutedOnThePool() throws Exception {
+        ProgramResult result = new ProgramResult();
+        given(executor.execute(eq(NEXT), anyMapOf(String.class, Object.class))).willReturn(result);
+
+        assertSame(result, testee.execute(NEXT, Collections.emptyMap()).get(5, TimeUnit.SECONDS));
+    }
+
+    public final @Test void testSaturatedPoolIsRejectedWithExecutorBusyException() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        given(executor.execute(eq(BUSY), anyMapOf(String.class, Object.class))).will(i -> {
+            running.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new ProgramResult();
+        });
+        CompletableFuture<ProgramResult> busy = testee.execute(BUSY, Collections.emptyMap());
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        CompletableFuture<ProgramResult> queued = testee.execute(NEXT, Collections.emptyMap());
+
+        CompletableFuture<ProgramResult> rejected = testee.execute(NEXT, Collections.emptyMap());
+
+        assertTrue(rejected.isCompletedExceptionally());
+        try {
+            rejected.get();
+            fail("Expected the program to be rejected");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof ExecutorBusyException);
+        }
+        release.countDown();
+        busy.get(5, TimeUnit.SECONDS);
+        queued.get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.routing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openwms.common.LocationEO;
+import org.openwms.common.LocationGroupHierarchy;
+import org.openwms.common.LocationGroupVO;
+import org.openwms.common.LocationVO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.hateoas.Link;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * A MatrixParityTest resolves the same routing data with all {@link Matrix} implementations and expects the same {@link Action}s.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+public class MatrixParityTest {
+
+    private static final String HREF = "stub://locationgroups/";
+    private static final String NO_ROUTE = "NoRouteException";
+    @Autowired
+    private ActionRepository repository;
+    @Autowired
+    private RouteRepository routeRepository;
+    private final Map<String, LocationGroupVO> groups = new HashMap<>();
+    private Route route, otherRoute;
+
+    @Configuration
+    @EntityScan(basePackageClasses = {Action.class, LocationEO.class})
+    @EnableJpaRepositories(basePackageClasses = ActionRepository.class)
+    static class TestConfig {
+    }
+
+    /**
+     * ROOT has the children NEAR and MID, LEAF is the child of MID.
+     */
+    @Before
+    public void setUp() {
+        route = routeRepository.save(new Route("R001"));
+        otherRoute = routeRepository.save(new Route("R002"));
+        repository.save(new Action(route, "REQ_L1", "L1", null, "REQ_", "CP001", "REQ_ on L1"));
+        repository.save(new Action(route, "SYSU_L1", "L1", null, "SYSU", "CP002", "SYSU on L1"));
+        repository.save(new Action(route, "REQ_NEAR", null, "NEAR", "REQ_", "CP001", "REQ_ in NEAR"));
+        repository.save(new Action(route, "REQ_ROOT", null, "ROOT", "REQ_", "CP001", "REQ_ in ROOT"));
+        repository.save(new Action(route, "SYSU_ROOT", null, "ROOT", "SYSU", "CP002", "SYSU in ROOT"));
+        repository.save(new Action(route, "SYSU_MID", null, "MID", "SYSU", "CP002", "SYSU in MID"));
+        Action disabled = new Action(route, "REQ_L2", "L2", null, "REQ_", "CP001", "Disabled REQ_ on L2");
+        disabled.setEnabled(false);
+        repository.saveAndFlush(disabled);
+
+        group("ROOT", null);
+        group("NEAR", "ROOT");
+        group("MID", "ROOT");
+        group("LEAF", "MID");
+    }
+
+    private void group(String name, String parent) {
+        LocationGroupVO lg = new LocationGroupVO(name);
+        lg.setParent(parent);
+        if (null != parent) {
+            lg.add(new Link(HREF + parent, "_parent"));
+        }
+        groups.put(name, lg);
+    }
+
+    private static LocationVO location(String coordinate, String locationGroupName) {
+        LocationVO location = new LocationVO(coordinate);
+        location.setLocationGroupName(locationGroupName);
+        return location;
+    }
+
+    @Test
+    public void shouldResolveTheSameActions() {
+        Map<Object[], String> cases = new LinkedHashMap<>();
+        cases.put(new Object[]{"REQ_", route, location("L1", "LEAF"), groups.get("LEAF")}, "REQ_L1");
+        cases.put(new Object[]{"SYSU", route, location("L1", "LEAF"), groups.get("LEAF")}, "SYSU_L1");
+        cases.put(new Object[]{"REQ_", route, location("L9", "NEAR"), groups.get("NEAR")}, "REQ_NEAR");
+        cases.put(new Object[]{"REQ_", route, location("L9", "LEAF"), groups.get("LEAF")}, "REQ_ROOT");
+        cases.put(new Object[]{"SYSU", route, location("L9", "LEAF"), groups.get("LEAF")}, "SYSU_MID");
+        cases.put(new Object[]{"SYSU", route, null, groups.get("LEAF")}, "SYSU_MID");
+        cases.put(new Object[]{"SYSU", route, null, groups.get("NEAR")}, "SYSU_ROOT");
+        cases.put(new Object[]{"REQ_", route, location("L2", "LEAF"), groups.get("LEAF")}, "REQ_ROOT");
+        cases.put(new Object[]{"REQ_", otherRoute, location("L1", "LEAF"), groups.get("LEAF")}, NO_ROUTE);
+        cases.put(new Object[]{"SYSU", route, null, null}, NO_ROUTE);
+
+        for (Matrix matrix : Arrays.asList(matrix(new ActivitiMatrix()), matrix(new CompiledMatrix()), matrix(new AncestorChainMatrix()))) {
+            for (Map.Entry<Object[], String> c : cases.entrySet()) {
+                Object[] args = c.getKey();
+                assertEquals(matrix.getClass().getSimpleName() + " " + Arrays.toString(args), c.getValue(),
+                        resolve(matrix, (String) args[0], (Route) args[1], (LocationVO) args[2], (LocationGroupVO) args[3]));
+            }
+        }
+    }
+
+    @Test
+    public void shouldResolveWithinASnapshot() {
+        List<Matrix> matrices = Arrays.asList(matrix(new ActivitiMatrix()), matrix(new CompiledMatrix()), matrix(new AncestorChainMatrix()));
+        List<Matrix> snapshots = matrices.stream().map(Matrix::snapshot).collect(Collectors.toList());
+
+        repository.saveAndFlush(new Action(route, "SYSU_L2", "L2", null, "SYSU", "CP002", "SYSU on L2"));
+
+        assertEquals("SYSU_L2", resolve(matrices.get(0), "SYSU", route, location("L2", "LEAF"), groups.get("LEAF")));
+        for (Matrix snapshot : snapshots) {
+            assertEquals("SYSU_L1", resolve(snapshot, "SYSU", route, location("L1", "LEAF"), groups.get("LEAF")));
+            assertEquals("SYSU_MID", resolve(snapshot, "SYSU", route, location("L2", "LEAF"), groups.get("LEAF")));
+        }
+    }
+
+    private static String resolve(Matrix matrix, String actionType, Route route, LocationVO location, LocationGroupVO locationGroup) {
+        try {
+            return matrix.findBy(actionType, route, location, locationGroup).getName();
+        } catch (NoRouteException nre) {
+            return NO_ROUTE;
+        } catch (RuntimeException ex) {
+            fail(matrix.getClass().getSimpleName() + " failed with " + ex);
+            return null;
+        }
+    }
+
+    private Matrix matrix(Matrix matrix) {
+        ReflectionTestUtils.setField(matrix, "repository", repository);
+        ReflectionTestUtils.setField(matrix, "hierarchy", hierarchy());
+        if (matrix instanceof CompiledMatrix) {
+            ((CompiledMatrix) matrix).reload();
+        }
+        return matrix;
+    }
+
+    private LocationGroupHierarchy hierarchy() {
+        RestTemplate commonService = new RestTemplate() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T getForObject(String url, Class<T> responseType, Object... uriVariables) {
+                return (T) groups.get(url.substring(HREF.length()));
+            }
+        };
+        LocationGroupHierarchy hierarchy = new LocationGroupHierarchy();
+        ReflectionTestUtils.setField(hierarchy, "restTemplate", commonService);
+        ReflectionTestUtils.setField(hierarchy, "simpleRestTemplate", commonService);
+        ReflectionTestUtils.setField(hierarchy, "ttl", 3600000L);
+        ReflectionTestUtils.setField(hierarchy, "maxSize", 10000);
+        return hierarchy;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.routing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openwms.common.LocationEO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * A RoutingDataListenerTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+public class RoutingDataListenerTest {
+
+    @Autowired
+    private ActionRepository repository;
+    @Autowired
+    private RouteRepository routeRepository;
+    @Autowired
+    private Events events;
+
+    @Configuration
+    @Import(RoutingDataListener.class)
+    @EntityScan(basePackageClasses = {Action.class, LocationEO.class})
+    @EnableJpaRepositories(basePackageClasses = ActionRepository.class)
+    static class TestConfig {
+
+        @Bean
+        Events events() {
+            return new Events();
+        }
+    }
+
+    static class Events {
+
+        private final List<Object> changed = new ArrayList<>();
+
+        @EventListener
+        public void onEvent(RoutingDataChangedEvent event) {
+            changed.add(event.getSource());
+        }
+    }
+
+    @Before
+    public void setUp() {
+        events.changed.clear();
+    }
+
+    public final @Test void testWritingRoutesAndActionsIsPublished() {
+        Route route = routeRepository.saveAndFlush(new Route("R001"));
+        Action action = repository.saveAndFlush(new Action(route, "REQ_L1", "L1", null, "REQ_", "CP001", "REQ_ on L1"));
+
+        assertEquals(2, events.changed.size());
+        assertTrue(events.changed.get(0) instanceof Route);
+        assertTrue(events.changed.get(1) instanceof Action);
+
+        action.setEnabled(false);
+        repository.saveAndFlush(action);
+        repository.delete(action);
+        repository.flush();
+        assertEquals(4, events.changed.size());
+    }
+}
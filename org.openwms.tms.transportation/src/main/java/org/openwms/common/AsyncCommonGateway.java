@@ -0,0 +1,70 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.common;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An AsyncCommonGateway is a {@link CommonGateway} that does not block the calling thread while the common service is asked. Callers
+ * can fan out several lookups and join the results afterwards. The futures complete exceptionally with the same exceptions the blocking
+ * methods throw.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+public interface AsyncCommonGateway extends CommonGateway {
+
+    CompletableFuture<Optional<LocationGroup>> getLocationGroupAsync(String target);
+
+    CompletableFuture<Optional<Location>> getLocationAsync(String target);
+
+    CompletableFuture<Optional<TransportUnit>> getTransportUnitAsync(String transportUnitBK);
+
+    /**
+     * Find all {@code Location}s with one request.
+     *
+     * @param targets The keys of the Locations
+     * @return The Locations mapped to their key, Locations not found are missing in the map
+     */
+    CompletableFuture<Map<String, Location>> getLocationsAsync(Collection<String> targets);
+
+    /**
+     * Find all {@code LocationGroup}s with one request.
+     *
+     * @param targets The names of the LocationGroups
+     * @return The LocationGroups mapped to their name, LocationGroups not found are missing in the map
+     */
+    CompletableFuture<Map<String, LocationGroup>> getLocationGroupsAsync(Collection<String> targets);
+
+    /**
+     * Find all {@code TransportUnit}s with one request.
+     *
+     * @param transportUnitBKs The business keys of the TransportUnits
+     * @return The TransportUnits mapped to their business key, TransportUnits not found are missing in the map
+     */
+    CompletableFuture<Map<String, TransportUnit>> getTransportUnitsAsync(Collection<String> transportUnitBKs);
+
+    CompletableFuture<Void> updateTransportUnitAsync(TransportUnit savedTU);
+}
@@ -0,0 +1,284 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.common;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.ameba.Messages;
+import org.ameba.exception.NotFoundException;
+import org.ameba.exception.ServiceLayerException;
+import org.ameba.mapping.BeanMapper;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.HttpComponentsAsyncClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.AsyncRestTemplate;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * An AsyncHttpCommonGateway is a non-blocking transport to the common service, an alternative to the {@link HttpCommonGateway}. Requests
+ * are sent over a pool of persistent connections, limited in total and per host, and the calling thread is only blocked when one of the
+ * blocking {@link CommonGateway} methods is used. The common service is looked up with the {@link LoadBalancerClient} for each request.
+ * Activated with {@code owms.common.transport=async}.
+ * <p>
+ * Request collapsing and the circuit breaker are not supported by this transport, the startup fails when {@code
+ * owms.common.collapse.window} or {@code owms.common.resilience.enabled} is set together with it.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+@Component
+@Qualifier("commonTransport")
+@ConditionalOnProperty(name = "owms.common.transport", havingValue = "async")
+class AsyncHttpCommonGateway implements AsyncCommonGateway {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncHttpCommonGateway.class);
+    @Autowired
+    private BeanMapper m;
+    @Autowired
+    private ServiceHeaders serviceHeaders;
+    @Autowired
+    private LoadBalancerClient loadBalancer;
+    @Value("${owms.common.service-id:COMMON-1}")
+    private String serviceId;
+    @Value("${owms.common.collapse.window:0}")
+    private long window;
+    @Value("${owms.common.resilience.enabled:false}")
+    private boolean resilience;
+    @Value("${owms.common.async.max-total:200}")
+    private int maxTotal;
+    @Value("${owms.common.async.max-per-host:50}")
+    private int maxPerHost;
+    @Value("${owms.common.async.keep-alive:30000}")
+    private long keepAlive;
+    @Value("${owms.common.async.connect-timeout:5000}")
+    private int connectTimeout;
+    @Value("${owms.common.async.read-timeout:10000}")
+    private int readTimeout;
+    private CloseableHttpAsyncClient client;
+    private AsyncRestTemplate template;
+
+    @PostConstruct
+    void init() {
+        if (window > 0 || resilience) {
+            throw new IllegalStateException("owms.common.transport=async does not support owms.common.collapse.window and owms.common.resilience.enabled, use owms.common.transport=feign");
+        }
+        client = HttpAsyncClients.custom()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerHost)
+                .setKeepAliveStrategy((response, context) -> {
+                    long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return duration > 0 ? duration : keepAlive;
+                })
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(connectTimeout)
+                        .setConnectionRequestTimeout(connectTimeout)
+                        .setSocketTimeout(readTimeout)
+                        .build())
+                .build();
+        template = new AsyncRestTemplate(new HttpComponentsAsyncClientHttpRequestFactory(client));
+        template.setInterceptors(Collections.singletonList((request, body, execution) -> {
+            serviceHeaders.get().forEach(request.getHeaders()::add);
+            return execution.executeAsync(request, body);
+        }));
+    }
+
+    @PreDestroy
+    void destroy() throws IOException {
+        client.close();
+    }
+
+    @Override
+    public CompletableFuture<Optional<LocationGroup>> getLocationGroupAsync(String target) {
+        return findOne(() -> uri(CommonConstants.API_LOCATIONGROUPS, "name", target), LocationGroup.class);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Location>> getLocationAsync(String target) {
+        return findOne(() -> uri(CommonConstants.API_LOCATIONS, "locationPK", target), Location.class);
+    }
+
+    @Override
+    public CompletableFuture<Optional<TransportUnit>> getTransportUnitAsync(String transportUnitBK) {
+        return findOne(() -> uri(CommonConstants.API_TRANSPORTUNITS, "bk", transportUnitBK), TransportUnit.class);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Location>> getLocationsAsync(Collection<String> targets) {
+        return targets.isEmpty() ? CompletableFuture.completedFuture(Collections.emptyMap()) :
+                findAll(() -> uri(CommonConstants.API_LOCATIONS, "locationPKs", targets.toArray()), Location[].class, Location::asString);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, LocationGroup>> getLocationGroupsAsync(Collection<String> targets) {
+        return targets.isEmpty() ? CompletableFuture.completedFuture(Collections.emptyMap()) :
+                findAll(() -> uri(CommonConstants.API_LOCATIONGROUPS, "names", targets.toArray()), LocationGroup[].class, LocationGroup::asString);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, TransportUnit>> getTransportUnitsAsync(Collection<String> transportUnitBKs) {
+        return transportUnitBKs.isEmpty() ? CompletableFuture.completedFuture(Collections.emptyMap()) :
+                findAll(() -> uri(CommonConstants.API_TRANSPORTUNITS, "bks", transportUnitBKs.toArray()), TransportUnit[].class, TransportUnit::getBarcode);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateTransportUnitAsync(TransportUnit savedTU) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        try {
+            template.put(uri(CommonConstants.API_TRANSPORTUNITS, "bk", savedTU.getBarcode()), new HttpEntity<>(m.map(savedTU, TransportUnitVO.class)))
+                    .addCallback(
+                            r -> result.complete(null),
+                            ex -> result.completeExceptionally(isNotFound(ex) ?
+                                    new NotFoundException(ex.getMessage(), Messages.NOT_FOUND, savedTU.getBarcode()) :
+                                    translate(ex)));
+        } catch (RuntimeException ex) {
+            result.completeExceptionally(ex);
+        }
+        return result;
+    }
+
+    @Override
+    public Optional<LocationGroup> getLocationGroup(String target) {
+        return join(getLocationGroupAsync(target));
+    }
+
+    @Override
+    public Optional<Location> getLocation(String target) {
+        return join(getLocationAsync(target));
+    }
+
+    @Override
+    public Optional<TransportUnit> getTransportUnit(String transportUnitBK) {
+        return join(getTransportUnitAsync(transportUnitBK));
+    }
+
+    @Override
+    public Map<String, Location> getLocations(Collection<String> targets) {
+        return join(getLocationsAsync(targets));
+    }
+
+    @Override
+    public Map<String, LocationGroup> getLocationGroups(Collection<String> targets) {
+        return join(getLocationGroupsAsync(targets));
+    }
+
+    @Override
+    public Map<String, TransportUnit> getTransportUnits(Collection<String> transportUnitBKs) {
+        return join(getTransportUnitsAsync(transportUnitBKs));
+    }
+
+    @Override
+    public void updateTransportUnit(TransportUnit savedTU) {
+        join(updateTransportUnitAsync(savedTU));
+    }
+
+    private URI uri(String path, String param, Object... values) {
+        ServiceInstance instance = loadBalancer.choose(serviceId);
+        if (instance == null) {
+            throw new ServiceLayerException(String.format("No instance of [%s] available", serviceId));
+        }
+        return UriComponentsBuilder.fromUri(instance.getUri()).path(path).queryParam(param, values).build().encode().toUri();
+    }
+
+    private <T> CompletableFuture<Optional<T>> findOne(Supplier<URI> uri, Class<T> type) {
+        CompletableFuture<Optional<T>> result = new CompletableFuture<>();
+        try {
+            template.getForEntity(uri.get(), type).addCallback(
+                    r -> result.complete(Optional.ofNullable(r.getBody())),
+                    ex -> {
+                        if (isNotFound(ex)) {
+                            result.complete(Optional.empty());
+                        } else {
+                            result.completeExceptionally(translate(ex));
+                        }
+                    });
+        } catch (RuntimeException ex) {
+            result.completeExceptionally(ex);
+        }
+        return result;
+    }
+
+    private <T> CompletableFuture<Map<String, T>> findAll(Supplier<URI> uri, Class<T[]> type, Function<T, String> key) {
+        CompletableFuture<Map<String, T>> result = new CompletableFuture<>();
+        try {
+            template.getForEntity(uri.get(), type).addCallback(
+                    r -> {
+                        Map<String, T> found = new LinkedHashMap<>();
+                        if (r.getBody() != null) {
+                            for (T t : r.getBody()) {
+                                found.put(key.apply(t), t);
+                            }
+                        }
+                        result.complete(found);
+                    },
+                    ex -> result.completeExceptionally(translate(ex)));
+        } catch (RuntimeException ex) {
+            result.completeExceptionally(ex);
+        }
+        return result;
+    }
+
+    private static boolean isNotFound(Throwable ex) {
+        return ex instanceof HttpStatusCodeException && ((HttpStatusCodeException) ex).getStatusCode() == HttpStatus.NOT_FOUND;
+    }
+
+    private static ServiceLayerException translate(Throwable ex) {
+        LOGGER.error(ex.getMessage(), ex);
+        return new ServiceLayerException(ex.getMessage());
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new ServiceLayerException(ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.common;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * A CacheController offers an endpoint to invalidate entries of the {@link CachingCommonGateway}. The common service calls it, e.g.
+ * when the {@code incomingActive} flag of a {@code Location} or {@code LocationGroup} has changed. Without any parameter all entries of
+ * the current tenant are invalidated.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+@RestController
+@ConditionalOnProperty(name = "owms.common.cache.enabled", havingValue = "true")
+class CacheController {
+
+    @Autowired
+    private CachingCommonGateway cache;
+
+    @PostMapping("/v1/cache/invalidate")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void invalidate(@RequestParam(value = "locationPK", required = false) String locationPK,
+            @RequestParam(value = "locationGroupName", required = false) String locationGroupName) {
+        if (locationPK == null && locationGroupName == null) {
+            cache.evictAll();
+            return;
+        }
+        if (locationPK != null) {
+            cache.evictLocation(locationPK);
+        }
+        if (locationGroupName != null) {
+            cache.evictLocationGroup(locationGroupName);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import org.ameba.tenancy.TenantHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+/**
+ * A CachingCommonGateway is a read-through cache in front of the {@link CommonGateway} that talks to the common service. {@code
+ * Location}s and {@code LocationGroup}s are cached per tenant, each with its own time to live and bounded in size, the least recently
+ * used entry is evicted first. Unknown targets are cached as well, but with a shorter time to live. {@code TransportUnit}s are not
+ * cached, because they change with each movement. The common service invalidates entries through the {@link CacheController} when the
+ * state of a target changes. Activated with {@code owms.common.cache.enabled=true}.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+@Primary
+@Component
+@ConditionalOnProperty(name = "owms.common.cache.enabled", havingValue = "true")
+class CachingCommonGateway implements CommonGateway {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingCommonGateway.class);
+    @Autowired
+    @Qualifier("commonTransport")
+    private CommonGateway delegate;
+    @Value("${owms.common.cache.location.ttl:60000}")
+    private long locationTtl;
+    @Value("${owms.common.cache.location-group.ttl:60000}")
+    private long locationGroupTtl;
+    @Value("${owms.common.cache.negative-ttl:5000}")
+    private long negativeTtl;
+    @Value("${owms.common.cache.max-size:1000}")
+    private int maxSize;
+    private final ConcurrentMap<String, Partition<Location>> locations = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Partition<LocationGroup>> locationGroups = new ConcurrentHashMap<>();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<LocationGroup> getLocationGroup(String target) {
+        return get(locationGroups, target, locationGroupTtl, delegate::getLocationGroup);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<Location> getLocation(String target) {
+        return get(locations, target, locationTtl, delegate::getLocation);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<TransportUnit> getTransportUnit(String transportUnitBK) {
+        return delegate.getTransportUnit(transportUnitBK);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only the Locations not cached yet are requested.
+     */
+    @Override
+    public Map<String, Location> getLocations(Collection<String> targets) {
+        return getAll(locations, targets, locationTtl, delegate::getLocations);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only the LocationGroups not cached yet are requested.
+     */
+    @Override
+    public Map<String, LocationGroup> getLocationGroups(Collection<String> targets) {
+        return getAll(locationGroups, targets, locationGroupTtl, delegate::getLocationGroups);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, TransportUnit> getTransportUnits(Collection<String> transportUnitBKs) {
+        return delegate.getTransportUnits(transportUnitBKs);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateTransportUnit(TransportUnit savedTU) {
+        delegate.updateTransportUnit(savedTU);
+    }
+
+    /**
+     * Remove a {@code Location} of the current tenant from the cache.
+     *
+     * @param locationPK The key of the Location
+     */
+    void evictLocation(String locationPK) {
+        Partition<Location> partition = locations.get(tenant());
+        if (partition != null) {
+            partition.remove(locationPK);
+        }
+    }
+
+    /**
+     * Remove a {@code LocationGroup} of the current tenant from the cache.
+     *
+     * @param name The name of the LocationGroup
+     */
+    void evictLocationGroup(String name) {
+        Partition<LocationGroup> partition = locationGroups.get(tenant());
+        if (partition != null) {
+            partition.remove(name);
+        }
+    }
+
+    /**
+     * Remove all entries of the current tenant from the cache.
+     */
+    void evictAll() {
+        locations.remove(tenant());
+        locationGroups.remove(tenant());
+        LOGGER.debug("Cache of Locations and LocationGroups cleared for tenant [{}]", tenant());
+    }
+
+    private <T> Optional<T> get(ConcurrentMap<String, Partition<T>> partitions, String key, long ttl, Function<String, Optional<T>> loader) {
+        if (key == null) {
+            return loader.apply(null);
+        }
+        Partition<T> partition = partitions.computeIfAbsent(tenant(), t -> new Partition<>(maxSize));
+        Entry<T> entry = partition.get(key);
+        if (entry != null) {
+            return Optional.ofNullable(entry.value);
+        }
+        Optional<T> loaded = loader.apply(key);
+        partition.put(key, new Entry<>(loaded.orElse(null), System.currentTimeMillis() + (loaded.isPresent() ? ttl : negativeTtl)));
+        return loaded;
+    }
+
+    private <T> Map<String, T> getAll(ConcurrentMap<String, Partition<T>> partitions, Collection<String> keys, long ttl, Function<Collection<String>, Map<String, T>> loader) {
+        Partition<T> partition = partitions.computeIfAbsent(tenant(), t -> new Partition<>(maxSize));
+        Map<String, T> result = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String key : keys) {
+            if (key == null) {
+                continue;
+            }
+            Entry<T> entry = partition.get(key);
+            if (entry == null) {
+                missing.add(key);
+            } else if (entry.value != null) {
+                result.put(key, entry.value);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, T> loaded = loader.apply(missing);
+            long now = System.currentTimeMillis();
+            for (String key : missing) {
+                T value = loaded.get(key);
+                partition.put(key, new Entry<>(value, now + (value != null ? ttl : negativeTtl)));
+                if (value != null) {
+                    result.put(key, value);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String tenant() {
+        String tenant = TenantHolder.getCurrentTenant();
+        return tenant == null ? "" : tenant;
+    }
+
+    private static final class Partition<T> {
+
+        private final Map<String, Entry<T>> entries;
+
+        Partition(int maxSize) {
+            entries = new LinkedHashMap<String, Entry<T>>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry<T>> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        synchronized Entry<T> get(String key) {
+            Entry<T> entry = entries.get(key);
+            if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+                entries.remove(key);
+                return null;
+            }
+            return entry;
+        }
+
+        synchronized void put(String key, Entry<T> entry) {
+            entries.put(key, entry);
+        }
+
+        synchronized void remove(String key) {
+            entries.remove(key);
+        }
+    }
+
+    private static final class Entry<T> {
+
+        /** {@literal null} for a target that is not known to the common service. */
+        private final T value;
+        private final long expiresAt;
+
+        Entry(T value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.common;
+
+import java.util.function.Supplier;
+
+import com.netflix.hystrix.HystrixCommand;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.HystrixCommandKey;
+import com.netflix.hystrix.HystrixCommandProperties;
+
+/**
+ * A CommonCommand protects a lookup at the common service with a circuit breaker. The command runs on the calling thread (semaphore
+ * isolation), so that the tenant and the request id are still available when the request is sent. The execution timeout of Hystrix is
+ * disabled, it would call the fallback on a timer thread without the tenant, the read timeout of the client applies instead. All
+ * other settings of the circuit breaker are taken from the {@code hystrix.command.<commandKey>} properties.
+ *
+ * @param <R> The type of the result
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+class CommonCommand<R> extends HystrixCommand<R> {
+
+    /** Group of all commands that call the common service. */
+    static final String GROUP = "common-service";
+    private final Supplier<R> run;
+    private final Supplier<R> fallback;
+
+    /**
+     * Create a CommonCommand.
+     *
+     * @param commandKey The name of the command
+     * @param maxConcurrent Maximum number of concurrent executions
+     * @param run The lookup
+     * @param fallback Called when the lookup failed or the circuit is open
+     */
+    CommonCommand(String commandKey, int maxConcurrent, Supplier<R> run, Supplier<R> fallback) {
+        super(Setter.withGroupKey(HystrixCommandGroupKey.Factory.asKey(GROUP))
+                .andCommandKey(HystrixCommandKey.Factory.asKey(commandKey))
+                .andCommandPropertiesDefaults(HystrixCommandProperties.Setter()
+                        .withExecutionIsolationStrategy(HystrixCommandProperties.ExecutionIsolationStrategy.SEMAPHORE)
+                        .withExecutionIsolationSemaphoreMaxConcurrentRequests(maxConcurrent)
+                        .withExecutionTimeoutEnabled(false)
+                        .withFallbackIsolationSemaphoreMaxConcurrentRequests(maxConcurrent)));
+        this.run = run;
+        this.fallback = fallback;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected R run() throws Exception {
+        return run.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected R getFallback() {
+        return fallback.get();
+    }
+}
@@ -21,6 +21,8 @@
  */
 package org.openwms.common;
 
+import java.util.List;
+
 import feign.Response;
 import org.springframework.cloud.netflix.feign.FeignClient;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -46,6 +48,15 @@ interface CommonFeignClient {
     @RequestMapping(method = RequestMethod.GET, value = CommonConstants.API_TRANSPORTUNITS, params = {"bk"})
     TransportUnit getTransportUnit(@RequestParam("bk") String transportUnitBK);
 
+    @RequestMapping(method = RequestMethod.GET, value = CommonConstants.API_LOCATIONS, params = {"locationPKs"})
+    List<Location> getLocations(@RequestParam("locationPKs") List<String> locationPks);
+
+    @RequestMapping(method = RequestMethod.GET, value = CommonConstants.API_LOCATIONGROUPS, params = {"names"})
+    List<LocationGroup> getLocationGroups(@RequestParam("names") List<String> names);
+
+    @RequestMapping(method = RequestMethod.GET, value = CommonConstants.API_TRANSPORTUNITS, params = {"bks"})
+    List<TransportUnit> getTransportUnits(@RequestParam("bks") List<String> transportUnitBKs);
+
     @RequestMapping(method = RequestMethod.PUT, value = CommonConstants.API_TRANSPORTUNITS, params = {"bk"})
     Response updateTU(@RequestParam("bk") String transportUnitBK, @RequestBody TransportUnitVO tu);
 }
@@ -21,6 +21,8 @@
  */
 package org.openwms.common;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -37,5 +39,29 @@ public interface CommonGateway {
 
     Optional<TransportUnit> getTransportUnit(String transportUnitBK);
 
+    /**
+     * Find all {@code Location}s with one request.
+     *
+     * @param targets The keys of the Locations
+     * @return The Locations mapped to their key, Locations not found are missing in the map
+     */
+    Map<String, Location> getLocations(Collection<String> targets);
+
+    /**
+     * Find all {@code LocationGroup}s with one request.
+     *
+     * @param targets The names of the LocationGroups
+     * @return The LocationGroups mapped to their name, LocationGroups not found are missing in the map
+     */
+    Map<String, LocationGroup> getLocationGroups(Collection<String> targets);
+
+    /**
+     * Find all {@code TransportUnit}s with one request.
+     *
+     * @param transportUnitBKs The business keys of the TransportUnits
+     * @return The TransportUnits mapped to their business key, TransportUnits not found are missing in the map
+     */
+    Map<String, TransportUnit> getTransportUnits(Collection<String> transportUnitBKs);
+
     void updateTransportUnit(TransportUnit savedTU);
 }
@@ -21,13 +21,8 @@
  */
 package org.openwms.common;
 
-import java.nio.charset.Charset;
-import java.util.Base64;
-
 import feign.RequestInterceptor;
-import org.ameba.Constants;
-import org.ameba.http.RequestIDHolder;
-import org.ameba.tenancy.TenantHolder;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -40,20 +35,12 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 class FeignConfiguration {
 
+    @Autowired
+    private ServiceHeaders serviceHeaders;
+
     public
     @Bean
     RequestInterceptor basicAuthRequestInterceptor() {
-        return (t) -> {
-            //Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            //User user = (User) authentication.getPrincipal();
-            String username = "user";//user.getUsername();
-            String password = "sa";//(String) authentication.getCredentials();
-            t.header("Authorization", "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(Charset.forName("UTF-8"))));
-            t.header(Constants.HEADER_VALUE_X_TENANT, TenantHolder.getCurrentTenant());
-            String reqId = RequestIDHolder.getRequestID();
-            if (reqId != null) {
-                t.header(Constants.HEADER_VALUE_X_REQUESTID, reqId);
-            }
-        };
+        return (t) -> serviceHeaders.get().forEach((name, value) -> t.header(name, value));
     }
 }
@@ -21,8 +21,18 @@
  */
 package org.openwms.common;
 
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+import com.netflix.hystrix.exception.HystrixRuntimeException;
 import feign.FeignException;
 import feign.Response;
 import feign.Util;
@@ -33,15 +43,23 @@ import org.ameba.mapping.BeanMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 /**
- * A HttpCommonGateway.
+ * A HttpCommonGateway is the transport to the common service, it may be decorated by a {@link CachingCommonGateway}. Concurrent
+ * lookups of the same key are collapsed into one request, within {@code owms.common.collapse.window} ms also lookups of different keys.
+ * With {@code owms.common.resilience.enabled=true} single and bulk lookups are protected by a circuit breaker and the last known
+ * entities are served from the {@link SnapshotStore} while the common service is not available.
  *
  * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
  * @since 1.0
  */
 @Component
+@Qualifier("commonTransport")
+@ConditionalOnProperty(name = "owms.common.transport", havingValue = "feign", matchIfMissing = true)
 class HttpCommonGateway implements CommonGateway {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpCommonGateway.class);
@@ -49,11 +67,106 @@ class HttpCommonGateway implements CommonGateway {
     private CommonFeignClient commonFeignClient;
     @Autowired
     private BeanMapper m;
+    @Value("${owms.common.collapse.window:0}")
+    private long window;
+    @Value("${owms.common.resilience.max-concurrent:100}")
+    private int maxConcurrent;
+    @Autowired(required = false)
+    private SnapshotStore snapshots;
+    private RequestCollapser<LocationGroup> locationGroups;
+    private RequestCollapser<Location> locations;
+    private RequestCollapser<TransportUnit> transportUnits;
+
+    @PostConstruct
+    void init() {
+        locationGroups = new RequestCollapser<>(window, k -> protect("getLocationGroup", LocationGroup.class, k, this::fetchLocationGroup), this::getLocationGroups);
+        locations = new RequestCollapser<>(window, k -> protect("getLocation", Location.class, k, this::fetchLocation), this::getLocations);
+        transportUnits = new RequestCollapser<>(window, k -> protect("getTransportUnit", TransportUnit.class, k, this::fetchTransportUnit), this::getTransportUnits);
+    }
+
+    private <T> Optional<T> protect(String command, Class<T> type, String key, Function<String, Optional<T>> fetch) {
+        if (snapshots == null) {
+            return fetch.apply(key);
+        }
+        return execute(new CommonCommand<>(command, maxConcurrent,
+                () -> {
+                    Optional<T> result = fetch.apply(key);
+                    snapshots.update(type, key, result);
+                    return result;
+                },
+                () -> snapshots.serveStale(type, key, () -> fetch.apply(key))
+                        .map(Optional::of)
+                        .orElseThrow(() -> new ServiceLayerException(String.format("Common service not available and no snapshot of [%s] with key [%s]", type.getSimpleName(), key)))
+        ));
+    }
+
+    /*
+     * Like protect but for bulk lookups, the snapshot of each requested key is updated. When the common service is not available, each
+     * key is served from its snapshot. A key without snapshot fails the whole lookup, because a missing key means not found to the
+     * caller.
+     */
+    private <T> Map<String, T> protectAll(String command, Class<T> type, Collection<String> keys, Function<Collection<String>, Map<String, T>> fetch,
+            Function<String, Optional<T>> single) {
+        if (keys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        if (snapshots == null) {
+            return fetch.apply(keys);
+        }
+        return execute(new CommonCommand<>(command, maxConcurrent,
+                () -> {
+                    Map<String, T> result = fetch.apply(keys);
+                    keys.forEach(key -> snapshots.update(type, key, Optional.ofNullable(result.get(key))));
+                    return result;
+                },
+                () -> {
+                    Map<String, T> result = new LinkedHashMap<>();
+                    List<String> missing = new ArrayList<>();
+                    for (String key : keys) {
+                        Optional<T> snapshot = snapshots.serveStale(type, key, () -> single.apply(key));
+                        if (snapshot.isPresent()) {
+                            result.put(key, snapshot.get());
+                        } else {
+                            missing.add(key);
+                        }
+                    }
+                    if (!missing.isEmpty()) {
+                        throw new ServiceLayerException(String.format("Common service not available and no snapshot of [%s] with keys %s", type.getSimpleName(), missing));
+                    }
+                    return result;
+                }
+        ));
+    }
+
+    private static <R> R execute(CommonCommand<R> command) {
+        try {
+            return command.execute();
+        } catch (HystrixRuntimeException ex) {
+            if (ex.getFallbackException() instanceof ServiceLayerException) {
+                throw (ServiceLayerException) ex.getFallbackException();
+            }
+            throw new ServiceLayerException(ex.getMessage());
+        }
+    }
 
     @Override
     public Optional<LocationGroup> getLocationGroup(String target) {
+        return locationGroups.get(target);
+    }
+
+    @Override
+    public Optional<Location> getLocation(String target) {
+        return locations.get(target);
+    }
+
+    @Override
+    public Optional<TransportUnit> getTransportUnit(String transportUnitBK) {
+        return transportUnits.get(transportUnitBK);
+    }
+
+    private Optional<LocationGroup> fetchLocationGroup(String target) {
         try {
-            return Optional.of(commonFeignClient.getLocationGroup(target));
+            return Optional.ofNullable(commonFeignClient.getLocationGroup(target));
         } catch (Exception ex) {
             int code = translate(ex);
             if (code == 404) {
@@ -65,15 +178,13 @@ class HttpCommonGateway implements CommonGateway {
         }
     }
 
-    @Override
-    public Optional<Location> getLocation(String target) {
+    private Optional<Location> fetchLocation(String target) {
         return Optional.ofNullable(commonFeignClient.getLocation(target));
     }
 
-    @Override
-    public Optional<TransportUnit> getTransportUnit(String transportUnitBK) {
+    private Optional<TransportUnit> fetchTransportUnit(String transportUnitBK) {
         try {
-            return Optional.of(commonFeignClient.getTransportUnit(transportUnitBK));
+            return Optional.ofNullable(commonFeignClient.getTransportUnit(transportUnitBK));
         } catch (Exception ex) {
             if (translate(ex) == 404) {
                 return Optional.empty();
@@ -84,6 +195,39 @@ class HttpCommonGateway implements CommonGateway {
         }
     }
 
+    @Override
+    public Map<String, Location> getLocations(Collection<String> targets) {
+        return protectAll("getLocations", Location.class, targets,
+                keys -> findAll(() -> commonFeignClient.getLocations(new ArrayList<>(keys)), Location::asString), this::fetchLocation);
+    }
+
+    @Override
+    public Map<String, LocationGroup> getLocationGroups(Collection<String> targets) {
+        return protectAll("getLocationGroups", LocationGroup.class, targets,
+                keys -> findAll(() -> commonFeignClient.getLocationGroups(new ArrayList<>(keys)), LocationGroup::asString), this::fetchLocationGroup);
+    }
+
+    @Override
+    public Map<String, TransportUnit> getTransportUnits(Collection<String> transportUnitBKs) {
+        return protectAll("getTransportUnits", TransportUnit.class, transportUnitBKs,
+                keys -> findAll(() -> commonFeignClient.getTransportUnits(new ArrayList<>(keys)), TransportUnit::getBarcode), this::fetchTransportUnit);
+    }
+
+    private static <T> Map<String, T> findAll(Supplier<List<T>> request, Function<T, String> key) {
+        List<T> found;
+        try {
+            found = request.get();
+        } catch (Exception ex) {
+            LOGGER.error(ex.getMessage(), ex);
+            throw new ServiceLayerException(ex.getMessage());
+        }
+        Map<String, T> result = new LinkedHashMap<>();
+        if (found != null) {
+            found.forEach(t -> result.put(key.apply(t), t));
+        }
+        return result;
+    }
+
     @Override
     public void updateTransportUnit(TransportUnit savedTU) {
         try {
@@ -0,0 +1,176 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.common;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.ameba.exception.ServiceLayerException;
+import org.ameba.tenancy.TenantHolder;
+
+/**
+ * A RequestCollapser merges concurrent lookups of the same key into one request, all waiting callers get the same result. With a
+ * {@code window} greater than zero, lookups of different keys that arrive within that time are merged into one bulk request as well.
+ * The first caller of a window waits for the window to elapse and sends the bulk request on its own thread, hence the request is sent
+ * with the tenant and the request id of that caller. Lookups are collapsed per tenant only.
+ *
+ * @param <T> The type of the looked up entity
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+class RequestCollapser<T> {
+
+    private final long window;
+    private final Function<String, Optional<T>> loader;
+    private final Function<Collection<String>, Map<String, T>> bulkLoader;
+    private final ConcurrentMap<String, CompletableFuture<Optional<T>>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Batch<T>> open = new ConcurrentHashMap<>();
+
+    /**
+     * Create a RequestCollapser.
+     *
+     * @param window Time in ms to collect keys for one bulk request, {@literal 0} to collapse lookups of the same key only
+     * @param loader Looks up a single key
+     * @param bulkLoader Looks up many keys at once, keys not found are missing in the result
+     */
+    RequestCollapser(long window, Function<String, Optional<T>> loader, Function<Collection<String>, Map<String, T>> bulkLoader) {
+        this.window = window;
+        this.loader = loader;
+        this.bulkLoader = bulkLoader;
+    }
+
+    /**
+     * Look up the {@code key}, or wait for the result of a lookup of the same key that is already in flight.
+     *
+     * @param key The key
+     * @return The result
+     */
+    Optional<T> get(String key) {
+        if (key == null) {
+            return loader.apply(null);
+        }
+        return window > 0 ? batched(key) : singleFlight(key);
+    }
+
+    private Optional<T> singleFlight(String key) {
+        String k = tenant() + '|' + key;
+        CompletableFuture<Optional<T>> mine = new CompletableFuture<>();
+        CompletableFuture<Optional<T>> existing = inFlight.putIfAbsent(k, mine);
+        if (existing != null) {
+            return join(existing);
+        }
+        try {
+            Optional<T> result = loader.apply(key);
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(k, mine);
+        }
+    }
+
+    private Optional<T> batched(String key) {
+        String tenant = tenant();
+        while (true) {
+            Batch<T> created = new Batch<>();
+            Batch<T> batch = open.putIfAbsent(tenant, created);
+            boolean leader = batch == null;
+            if (leader) {
+                batch = created;
+            }
+            CompletableFuture<Optional<T>> result = batch.join(key);
+            if (result == null) {
+
+                // Closed in the meantime, join the next one
+                continue;
+            }
+            if (leader) {
+                flush(tenant, batch);
+            }
+            return join(result);
+        }
+    }
+
+    private void flush(String tenant, Batch<T> batch) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(window);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        open.remove(tenant, batch);
+        Map<String, CompletableFuture<Optional<T>>> waiters = batch.close();
+        try {
+            if (waiters.size() == 1) {
+
+                // Nothing to merge, use the single lookup
+                Map.Entry<String, CompletableFuture<Optional<T>>> only = waiters.entrySet().iterator().next();
+                only.getValue().complete(loader.apply(only.getKey()));
+            } else {
+                Map<String, T> found = bulkLoader.apply(waiters.keySet());
+                waiters.forEach((k, f) -> f.complete(Optional.ofNullable(found.get(k))));
+            }
+        } catch (RuntimeException ex) {
+            waiters.values().forEach(f -> f.completeExceptionally(ex));
+        }
+    }
+
+    private static <T> Optional<T> join(CompletableFuture<Optional<T>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new ServiceLayerException(ex.getMessage());
+        }
+    }
+
+    private static String tenant() {
+        String tenant = TenantHolder.getCurrentTenant();
+        return tenant == null ? "" : tenant;
+    }
+
+    private static final class Batch<T> {
+
+        private final Map<String, CompletableFuture<Optional<T>>> waiters = new LinkedHashMap<>();
+        private boolean closed = false;
+
+        synchronized CompletableFuture<Optional<T>> join(String key) {
+            return closed ? null : waiters.computeIfAbsent(key, k -> new CompletableFuture<>());
+        }
+
+        synchronized Map<String, CompletableFuture<Optional<T>>> close() {
+            closed = true;
+            return waiters;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.common;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.ameba.tenancy.TenantHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * A SnapshotStore keeps the last known {@code Location}s, {@code LocationGroup}s and {@code TransportUnit}s per tenant, so that the
+ * {@link HttpCommonGateway} can serve them while the common service is not available. Serving a snapshot triggers a refresh in the
+ * background. The store is bounded in size, the least recently used snapshot is evicted first. Activated with {@code
+ * owms.common.resilience.enabled=true}.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+@Component
+@ConditionalOnProperty(name = "owms.common.resilience.enabled", havingValue = "true")
+@ManagedResource(objectName = "org.openwms.tms:name=CommonSnapshots", description = "Snapshots of the common service")
+class SnapshotStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotStore.class);
+    @Value("${owms.common.resilience.max-size:10000}")
+    private int maxSize;
+    @Value("${owms.common.resilience.refresh-threads:1}")
+    private int refreshThreads;
+    private Map<String, Object> snapshots;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolTaskExecutor refresher = new ThreadPoolTaskExecutor();
+    private final Map<Class<?>, AtomicLong> staleServed = new ConcurrentHashMap<>();
+    private final AtomicLong missed = new AtomicLong();
+    private final AtomicLong refreshFailed = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        snapshots = new LinkedHashMap<String, Object>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                return size() > maxSize;
+            }
+        };
+        refresher.setCorePoolSize(refreshThreads);
+        refresher.setMaxPoolSize(refreshThreads);
+        refresher.setQueueCapacity(maxSize);
+        refresher.setThreadNamePrefix("common-refresh-");
+        refresher.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        refresher.initialize();
+    }
+
+    @PreDestroy
+    void destroy() {
+        refresher.shutdown();
+    }
+
+    /**
+     * Store the result of a successful lookup. A lookup without result removes the snapshot.
+     *
+     * @param type The type of the entity
+     * @param key The key of the entity
+     * @param result The result of the lookup
+     */
+    <T> void update(Class<T> type, String key, Optional<T> result) {
+        String k = key(TenantHolder.getCurrentTenant(), type, key);
+        synchronized (snapshots) {
+            if (result.isPresent()) {
+                snapshots.put(k, result.get());
+            } else {
+                snapshots.remove(k);
+            }
+        }
+    }
+
+    /**
+     * Get the last known entity and schedule a refresh of it. The {@code refresh} is executed in the background with the tenant of the
+     * caller, only one refresh per entity is scheduled at once.
+     *
+     * @param type The type of the entity
+     * @param key The key of the entity
+     * @param refresh Looks up the entity again
+     * @return The last known entity, if any
+     */
+    <T> Optional<T> serveStale(Class<T> type, String key, Supplier<Optional<T>> refresh) {
+        String tenant = TenantHolder.getCurrentTenant();
+        String k = key(tenant, type, key);
+        Object snapshot;
+        synchronized (snapshots) {
+            snapshot = snapshots.get(k);
+        }
+        if (refreshing.add(k)) {
+            try {
+                refresher.execute(() -> refresh(tenant, k, type, key, refresh));
+            } catch (RuntimeException ex) {
+                refreshing.remove(k);
+            }
+        }
+        if (snapshot == null) {
+            missed.incrementAndGet();
+            return Optional.empty();
+        }
+        staleServed.computeIfAbsent(type, t -> new AtomicLong()).incrementAndGet();
+        LOGGER.debug("Serving last known [{}] with key [{}]", type.getSimpleName(), key);
+        return Optional.of(type.cast(snapshot));
+    }
+
+    private <T> void refresh(String tenant, String k, Class<T> type, String key, Supplier<Optional<T>> refresh) {
+        try {
+            TenantHolder.setCurrentTenant(tenant);
+            update(type, key, refresh.get());
+        } catch (RuntimeException ex) {
+            refreshFailed.incrementAndGet();
+            LOGGER.debug("Refreshing [{}] with key [{}] failed: [{}]", type.getSimpleName(), key, ex.getMessage());
+        } finally {
+            TenantHolder.destroy();
+            refreshing.remove(k);
+        }
+    }
+
+    private static String key(String tenant, Class<?> type, String key) {
+        return (tenant == null ? "" : tenant) + '|' + type.getSimpleName() + '|' + key;
+    }
+
+    private long stale(Class<?> type) {
+        AtomicLong count = staleServed.get(type);
+        return count == null ? 0 : count.get();
+    }
+
+    @ManagedAttribute(description = "Number of Locations served from a snapshot")
+    public long getStaleLocations() {
+        return stale(Location.class);
+    }
+
+    @ManagedAttribute(description = "Number of LocationGroups served from a snapshot")
+    public long getStaleLocationGroups() {
+        return stale(LocationGroup.class);
+    }
+
+    @ManagedAttribute(description = "Number of TransportUnits served from a snapshot")
+    public long getStaleTransportUnits() {
+        return stale(TransportUnit.class);
+    }
+
+    @ManagedAttribute(description = "Number of failed lookups without a snapshot")
+    public long getMissed() {
+        return missed.get();
+    }
+
+    @ManagedAttribute(description = "Number of failed background refreshes")
+    public long getRefreshFailed() {
+        return refreshFailed.get();
+    }
+
+    @ManagedAttribute(description = "Number of snapshots")
+    public int getSize() {
+        synchronized (snapshots) {
+            return snapshots.size();
+        }
+    }
+}
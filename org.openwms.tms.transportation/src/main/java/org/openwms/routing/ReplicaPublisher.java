@@ -0,0 +1,160 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.routing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.ameba.exception.ServiceLayerException;
+import org.openwms.common.ServiceHeaders;
+import org.openwms.tms.TransportOrder;
+import org.openwms.tms.TransportOrderRepository;
+import org.openwms.tms.TransportServiceBulkEvent;
+import org.openwms.tms.TransportServiceEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * A ReplicaPublisher pushes each start and termination of a {@code TransportOrder} to all instances of the routing service, each
+ * instance keeps its own replica. Activated with {@code owms.routing.replica.enabled=true}.
+ * <p>
+ * With {@code owms.tms.events.outbox.enabled=true} the events are delivered by the {@code OutboxRelay}, a failed push to any instance
+ * rolls back the delivery and the event is delivered again, in order with all other events of the TransportUnit. Without the outbox the
+ * push is done after the transaction has been committed and lost updates are repaired by the resync of the routing service at startup.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+@Component
+@ConditionalOnProperty(name = "owms.routing.replica.enabled", havingValue = "true")
+class ReplicaPublisher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaPublisher.class);
+    private static final String SERVICE_ID = "routing-service";
+    private static final String REPLICA_PATH = "/v1/transportorders/replica";
+    @Autowired
+    private TransportOrderRepository repository;
+    @Autowired
+    private DiscoveryClient discoveryClient;
+    @Autowired
+    private ServiceHeaders serviceHeaders;
+    @Value("${owms.tms.events.outbox.enabled:false}")
+    private boolean outbox;
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    @EventListener
+    public void onEvent(TransportServiceEvent event) {
+        switch (event.getType()) {
+            case STARTED:
+            case TRANSPORT_FINISHED:
+            case TRANSPORT_ONFAILURE:
+            case TRANSPORT_CANCELED:
+            case TRANSPORT_INTERRUPTED:
+                if (outbox && TransactionSynchronizationManager.isActualTransactionActive()) {
+
+                    // Delivered by the OutboxRelay, let it retry on failure
+                    push(Collections.singleton((Long) event.getSource()));
+                } else {
+                    pushAfterCommit(Collections.singleton((Long) event.getSource()));
+                }
+                break;
+            default:
+        }
+    }
+
+    @EventListener
+    public void onBulkEvent(TransportServiceBulkEvent event) {
+        if (event.getType() == TransportServiceEvent.TYPE.TRANSPORT_CREATED || event.getType() == TransportServiceEvent.TYPE.INITIALIZED) {
+            return;
+        }
+        pushAfterCommit(new ArrayList<>(event.getTransportUnits().keySet()));
+    }
+
+    private void pushAfterCommit(Collection<Long> pKeys) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    pushQuietly(pKeys);
+                }
+            });
+        } else {
+            pushQuietly(pKeys);
+        }
+    }
+
+    private void pushQuietly(Collection<Long> pKeys) {
+        try {
+            push(pKeys);
+        } catch (Exception ex) {
+            LOGGER.warn("Could not push TransportOrders {} to the routing service: {}", pKeys, ex.getMessage());
+        }
+    }
+
+    private void push(Collection<Long> pKeys) {
+        List<ServiceInstance> instances = discoveryClient.getInstances(SERVICE_ID);
+        if (instances.isEmpty()) {
+            LOGGER.debug("No instance of [{}] registered, nothing to push", SERVICE_ID);
+            return;
+        }
+        HttpHeaders headers = headers();
+        List<String> failed = new ArrayList<>();
+        for (TransportOrder to : repository.findAll(pKeys)) {
+            HttpEntity<TransportOrderReplicaVO> request = new HttpEntity<>(new TransportOrderReplicaVO(to), headers);
+            for (ServiceInstance instance : instances) {
+                try {
+                    restTemplate.postForLocation(instance.getUri() + REPLICA_PATH, request);
+                } catch (Exception ex) {
+                    LOGGER.warn("Could not push TransportOrder [{}] in state [{}] to [{}]: {}", to.getPersistentKey(), to.getState(), instance.getUri(), ex.getMessage());
+                    failed.add(instance.getUri().toString());
+                }
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new ServiceLayerException(String.format("Pushing TransportOrders %s to the routing service failed for %s", pKeys, failed));
+        }
+    }
+
+    /**
+     * The same headers the Feign clients send to other services.
+     */
+    private HttpHeaders headers() {
+        HttpHeaders headers = new HttpHeaders();
+        serviceHeaders.get().forEach(headers::add);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return headers;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.routing;
+
+import java.io.Serializable;
+
+import org.openwms.tms.TransportOrder;
+
+/**
+ * A TransportOrderReplicaVO carries the state of a {@code TransportOrder} that the routing service keeps locally.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+class TransportOrderReplicaVO implements Serializable {
+
+    private String persistentKey, transportUnitBK, state;
+
+    /** Dear Jackson ... */
+    TransportOrderReplicaVO() {
+    }
+
+    TransportOrderReplicaVO(TransportOrder transportOrder) {
+        this.persistentKey = transportOrder.getPersistentKey();
+        this.transportUnitBK = transportOrder.getTransportUnitBK();
+        this.state = transportOrder.getState().name();
+    }
+
+    public String getPersistentKey() {
+        return persistentKey;
+    }
+
+    public String getTransportUnitBK() {
+        return transportUnitBK;
+    }
+
+    public String getState() {
+        return state;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms;
+
+import org.ameba.exception.BehaviorAwareException;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * A StartedConcurrentlyException signals that a {@code TransportOrder} could not be started, because another one for the same {@code
+ * TransportUnit} has been started concurrently, detected by the unique constraint {@link TransportOrder#UC_STARTED_TU}. If thrown
+ * after a failed flush, the current transaction can't be used anymore and must be rolled back.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+@SuppressWarnings("serial")
+@ResponseStatus(HttpStatus.CONFLICT)
+public class StartedConcurrentlyException extends BehaviorAwareException {
+
+    /**
+     * Create a new StartedConcurrentlyException.
+     *
+     * @param message Detail message
+     */
+    public StartedConcurrentlyException(String message) {
+        super(message);
+    }
+
+    /**
+     * Create a new StartedConcurrentlyException.
+     *
+     * @param message Detail message
+     * @param cause Root cause
+     */
+    public StartedConcurrentlyException(String message, Throwable cause) {
+        super(message);
+        initCause(cause);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public HttpStatus getStatus() {
+        return HttpStatus.CONFLICT;
+    }
+
+    /**
+     * Check whether the unique constraint {@link TransportOrder#UC_STARTED_TU} has been violated.
+     *
+     * @param dive The exception to check
+     * @return {@literal true} if violated, {@literal false} if any other integrity constraint has been violated
+     */
+    public static boolean isCausedBy(DataIntegrityViolationException dive) {
+        for (Throwable t = dive; t != null; t = t.getCause()) {
+            String name = t instanceof ConstraintViolationException ? ((ConstraintViolationException) t).getConstraintName() : t.getMessage();
+            if (name != null && name.toUpperCase().contains(TransportOrder.UC_STARTED_TU)) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+}
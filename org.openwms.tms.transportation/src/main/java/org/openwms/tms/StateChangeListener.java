@@ -0,0 +1,41 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms;
+
+/**
+ * A StateChangeListener is notified after the state of a {@link TransportOrder} has been changed. Implementations are called within
+ * the transaction that changes the state.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+public interface StateChangeListener {
+
+    /**
+     * The state of the {@code transportOrder} has been changed.
+     *
+     * @param transportOrder The TransportOrder, already in the {@code newState}
+     * @param oldState The state before the change
+     * @param newState The new state
+     */
+    void onStateChange(TransportOrder transportOrder, TransportOrderState oldState, TransportOrderState newState);
+}
@@ -21,6 +21,8 @@
  */
 package org.openwms.tms;
 
+import java.util.Set;
+
 /**
  * A StateManager is able to manage the state of a {@link TransportOrder}.
  *
@@ -36,4 +38,16 @@ public interface StateManager {
      * @throws StateChangeException in case of errors
      */
     void validate(TransportOrderState newState, TransportOrder transportOrder) throws StateChangeException;
+
+    /**
+     * Validates the requested state transition like {@link #validate(TransportOrderState, TransportOrder)} but checks for already
+     * started {@code TransportOrder}s against the given set instead of the database. Meant to validate many TransportOrders at once.
+     *
+     * @param newState The new state
+     * @param transportOrder The TransportOrder to check the state transition for
+     * @param startedTransportUnits The business keys of all TransportUnits with a started TransportOrder, a TransportUnit is added if
+     * the {@code transportOrder} may be started
+     * @throws StateChangeException in case of errors
+     */
+    void validate(TransportOrderState newState, TransportOrder transportOrder, Set<String> startedTransportUnits) throws StateChangeException;
 }
@@ -38,5 +38,16 @@ public interface TargetHandler<T extends Target> {
      * @param target The target to search for
      * @return The number of TransportOrders
      */
-    int getNoTOToTarget(T target);
+    default int getNoTOToTarget(T target) {
+        return getNoTOToTarget(target, TransportOrderState.values());
+    }
+
+    /**
+     * Get the number of {@code TransportOrder}s in one of the {@code states} that are on the way to the specific {@code Target}.
+     *
+     * @param target The target to search for
+     * @param states The states to consider
+     * @return The number of TransportOrders
+     */
+    int getNoTOToTarget(T target, TransportOrderState... states);
 }
@@ -25,13 +25,17 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
+import javax.persistence.Index;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
 import javax.persistence.Transient;
+import javax.persistence.UniqueConstraint;
 import javax.validation.constraints.Min;
 import java.io.Serializable;
 import java.util.Date;
+import java.util.List;
+import java.util.Set;
 
 import org.ameba.integration.jpa.ApplicationEntity;
 import org.slf4j.Logger;
@@ -47,10 +51,21 @@ import org.springframework.beans.factory.annotation.Configurable;
  */
 @Configurable
 @Entity
-@Table(name = "TMS_TRANSPORT_ORDER")
+@Table(name = "TMS_TRANSPORT_ORDER", indexes = {
+        @Index(name = "IDX_TO_TARGET_LOC_STATE", columnList = "C_TARGET_LOCATION, C_STATE"),
+        @Index(name = "IDX_TO_TARGET_LG_STATE", columnList = "C_TARGET_LOCATION_GROUP, C_STATE")
+}, uniqueConstraints = @UniqueConstraint(name = TransportOrder.UC_STARTED_TU, columnNames = "C_STARTED_TU"))
 public class TransportOrder extends ApplicationEntity implements Serializable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TransportOrder.class);
+    /**
+     * Name of the unique constraint that allows only one started {@code TransportOrder} per {@code TransportUnit}. All TransportOrders
+     * that are not started have a {@literal null} value, so the constraint relies on the ANSI behaviour to allow any number of {@literal
+     * null} values. This is supported by PostgreSQL, Oracle, MySQL/MariaDB and H2. SQL Server treats {@literal null} values as equal and
+     * needs a filtered index of the same name instead: {@code CREATE UNIQUE INDEX UC_TO_STARTED_TU ON TMS_TRANSPORT_ORDER(C_STARTED_TU)
+     * WHERE C_STARTED_TU IS NOT NULL}. DB2 needs a unique index with {@code EXCLUDE NULL KEYS}.
+     */
+    public static final String UC_STARTED_TU = "UC_TO_STARTED_TU";
 
     /**
      * The bk of the {@code TransportUnit} to be moved by this {@code TransportOrder}. Allowed to be {@literal null} to keep {@code
@@ -95,6 +110,13 @@ public class TransportOrder extends ApplicationEntity implements Serializable {
     @Enumerated(EnumType.STRING)
     private TransportOrderState state = TransportOrderState.CREATED;
 
+    /**
+     * The bk of the {@code TransportUnit} as long as the {@code TransportOrder} is {@link TransportOrderState#STARTED}, otherwise
+     * {@literal null}. Guarded by a unique constraint, so that only one {@code TransportOrder} per {@code TransportUnit} can be started.
+     */
+    @Column(name = "C_STARTED_TU")
+    private String startedTransportUnitBK;
+
     /**
      * The source {@code Location} of the {@code TransportOrder}.<br> This property is set before the {@code TransportOrder} was started.
      */
@@ -117,6 +139,9 @@ public class TransportOrder extends ApplicationEntity implements Serializable {
     @Transient
     @Autowired
     private StateManager stateManager;
+    @Transient
+    @Autowired(required = false)
+    private List<StateChangeListener> stateChangeListeners;
 
     /* ----------------------------- constructors ------------------- */
 
@@ -182,12 +207,16 @@ public class TransportOrder extends ApplicationEntity implements Serializable {
 
     /**
      * Assign a {@code TransportUnit} to the {@code TransportOrder}. Setting the {@code TransportUnit} to {@literal null} is allowed here to
-     * unlink both.
+     * unlink both. A {@link TransportOrderState#STARTED} {@code TransportOrder} moves its guard of the unique constraint {@link
+     * #UC_STARTED_TU} to the new {@code TransportUnit}.
      *
      * @param transportUnitBK The business key of the {@code TransportUnit} to be assigned
      */
     public void setTransportUnitBK(String transportUnitBK) {
         this.transportUnitBK = transportUnitBK;
+        if (state == TransportOrderState.STARTED) {
+            startedTransportUnitBK = transportUnitBK;
+        }
     }
 
     /**
@@ -210,7 +239,31 @@ public class TransportOrder extends ApplicationEntity implements Serializable {
      */
     public TransportOrder changeState(TransportOrderState newState) throws StateChangeException {
         stateManager.validate(newState, this);
+        return applyState(newState);
+    }
+
+    /**
+     * Change the state of the {@code TransportOrder} like {@link #changeState(TransportOrderState)}, but check for other started
+     * {@code TransportOrder}s against the given set.
+     *
+     * @param newState The new state of the order
+     * @param startedTransportUnits The business keys of all TransportUnits with a started TransportOrder
+     * @return This instance
+     * @throws StateChangeException in case the state change is not allowed
+     * @see StateManager#validate(TransportOrderState, TransportOrder, Set)
+     */
+    public TransportOrder changeState(TransportOrderState newState, Set<String> startedTransportUnits) throws StateChangeException {
+        stateManager.validate(newState, this, startedTransportUnits);
+        return applyState(newState);
+    }
+
+    private TransportOrder applyState(TransportOrderState newState) {
+        TransportOrderState oldState = state;
         state = newState;
+        startedTransportUnitBK = newState == TransportOrderState.STARTED ? transportUnitBK : null;
+        if (stateChangeListeners != null) {
+            stateChangeListeners.forEach(l -> l.onStateChange(this, oldState, newState));
+        }
         return this;
     }
 
@@ -21,6 +21,7 @@
  */
 package org.openwms.tms;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -48,6 +49,26 @@ public interface TransportOrderRepository extends JpaRepository<TransportOrder,
 
     List<TransportOrder> findByTargetLocation(String targetLocation);
 
+    List<TransportOrder> findByState(TransportOrderState state);
+
+    @Query("select count(to) from TransportOrder to where to.targetLocation = :targetLocation and to.state in :states")
+    int numberOfTransportOrdersToLocation(@Param("targetLocation") String targetLocation, @Param("states") TransportOrderState... states);
+
+    @Query("select count(to) from TransportOrder to where to.targetLocationGroup = :targetLocationGroup and to.state in :states")
+    int numberOfTransportOrdersToLocationGroup(@Param("targetLocationGroup") String targetLocationGroup, @Param("states") TransportOrderState... states);
+
+    @Query("select to.targetLocation, to.state, count(to) from TransportOrder to where to.targetLocation is not null group by to.targetLocation, to.state")
+    List<Object[]> countByTargetLocationAndState();
+
+    @Query("select to.targetLocationGroup, to.state, count(to) from TransportOrder to where to.targetLocationGroup is not null group by to.targetLocationGroup, to.state")
+    List<Object[]> countByTargetLocationGroupAndState();
+
+    @Query("select to from TransportOrder to where to.transportUnitBK in :transportUnitBKs and to.state = :state")
+    List<TransportOrder> findByTransportUnitBKsAndState(@Param("transportUnitBKs") Collection<String> transportUnitBKs, @Param("state") TransportOrderState state);
+
+    @Query("select distinct to.transportUnitBK from TransportOrder to where to.transportUnitBK in :transportUnitBKs and to.state = :state")
+    List<String> findTransportUnitBKsInState(@Param("transportUnitBKs") Collection<String> transportUnitBKs, @Param("state") TransportOrderState state);
+
     @Query("select count(to) from TransportOrder to where to.transportUnitBK = :transportUnitBK and to.state = :state")
     int numberOfTransportOrders(@Param("transportUnitBK") String transportUnitBK, @Param("state") TransportOrderState state);
 }
@@ -0,0 +1,74 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * A TransportServiceBulkEvent is published once for a bunch of {@link TransportOrder}s that have been turned into the same state
+ * together, instead of one {@link TransportServiceEvent} per TransportOrder. The source is the list of primary keys. Multicasters that
+ * process events per {@code TransportUnit} may split it into several bulk events, each with the TransportOrders of some of the
+ * TransportUnits in their original order.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+public final class TransportServiceBulkEvent extends ApplicationEvent {
+
+    private final TransportServiceEvent.TYPE type;
+    private final Map<Long, String> transportUnits;
+
+    /**
+     * Create a new TransportServiceBulkEvent.
+     *
+     * @param type Event type, the same for all TransportOrders
+     * @param transportUnits The primary keys of all TransportOrders, mapped to the business key of their {@code TransportUnit}
+     */
+    public TransportServiceBulkEvent(TransportServiceEvent.TYPE type, Map<Long, String> transportUnits) {
+        super(new ArrayList<>(transportUnits.keySet()));
+        this.type = type;
+        this.transportUnits = Collections.unmodifiableMap(new LinkedHashMap<>(transportUnits));
+    }
+
+    /**
+     * Return the type of event.
+     *
+     * @return The event type
+     */
+    public TransportServiceEvent.TYPE getType() {
+        return type;
+    }
+
+    /**
+     * Return the primary keys of all TransportOrders, mapped to the business key of their {@code TransportUnit}.
+     *
+     * @return An unmodifiable map in the order the TransportOrders have been changed
+     */
+    public Map<Long, String> getTransportUnits() {
+        return transportUnits;
+    }
+}
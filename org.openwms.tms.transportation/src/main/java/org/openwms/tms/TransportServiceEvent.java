@@ -34,6 +34,7 @@ import org.springframework.context.ApplicationEvent;
 public final class TransportServiceEvent<T extends TransportServiceEvent.TYPE> extends ApplicationEvent implements Serializable {
 
     private TYPE type;
+    private String transportUnitBK;
 
     /**
      * All possible types of this event.
@@ -86,6 +87,19 @@ public final class TransportServiceEvent<T extends TransportServiceEvent.TYPE> e
         this.type = type;
     }
 
+    /**
+     * Create a new TransportServiceEvent.
+     *
+     * @param source Event source
+     * @param type Event type
+     * @param transportUnitBK The business key of the {@code TransportUnit} the {@code TransportOrder} belongs to
+     */
+    public TransportServiceEvent(Object source, TYPE type, String transportUnitBK) {
+        super(source);
+        this.type = type;
+        this.transportUnitBK = transportUnitBK;
+    }
+
     /**
      * Return the type of event.
      *
@@ -94,4 +108,13 @@ public final class TransportServiceEvent<T extends TransportServiceEvent.TYPE> e
     public TYPE getType() {
         return type;
     }
+
+    /**
+     * Return the business key of the {@code TransportUnit}.
+     *
+     * @return The business key or {@literal null} if not set
+     */
+    public String getTransportUnitBK() {
+        return transportUnitBK;
+    }
 }
@@ -23,6 +23,7 @@ package org.openwms.tms;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A TransportationService offers some useful methods regarding the general handling of {@link TransportOrder}s.
@@ -35,6 +36,14 @@ public interface TransportationService<T extends TransportOrder> {
 
     List<T> findBy(String barcode, String... states);
 
+    /**
+     * Find all {@code TransportOrder}s in the given {@code state}.
+     *
+     * @param state The state to search for
+     * @return All TransportOrders in that state, never {@literal null}
+     */
+    List<T> findByState(String state);
+
     /**
      * Returns the number of {@code TransportOrder}s that have the {@code target} as target and are in one of the {@code states}.
      *
@@ -54,6 +63,15 @@ public interface TransportationService<T extends TransportOrder> {
      */
     T create(String barcode, String target, PriorityLevel priority);
 
+    /**
+     * Create a bunch of new {@link TransportOrder}s at once. Each element of {@code transportOrders} must at least define the barcode of
+     * the {@code TransportUnit} and the target. The initialization is triggered once per {@code TransportUnit}.
+     *
+     * @param transportOrders The not yet persisted TransportOrders
+     * @return The newly created TransportOrders, in the same order
+     */
+    List<T> create(List<T> transportOrders);
+
     /**
      * Modifies an existing {@link TransportOrder} according to the argument passed as {@code transportOrder}.
      *
@@ -68,11 +86,23 @@ public interface TransportationService<T extends TransportOrder> {
      * @param pKeys The persisted keys of {@link TransportOrder}s
      * @param state The state to change all orders to
      * @return A list of persisted keys of {@link TransportOrder}s that have not been changed
-     * @deprecated Use update instead
+     * @deprecated Use {@link #changeState(Collection, TransportOrderState)} instead
      */
     @Deprecated
     Collection<String> change(Collection<String> pKeys, TransportOrderState state);
 
+    /**
+     * Try to turn a bunch of {@link TransportOrder}s into the given {@code state} at once. TransportOrders that cannot be changed are
+     * skipped, all others are changed in the same transaction and one aggregated {@link TransportServiceBulkEvent} is published.
+     * Duplicate {@code pKeys} are changed once.
+     *
+     * @param pKeys The persisted keys of {@link TransportOrder}s
+     * @param state The state to change all orders to
+     * @return The persisted keys of all {@link TransportOrder}s that have not been changed, mapped to the reason, in the order of {@code
+     * pKeys}
+     */
+    Map<String, String> changeState(Collection<String> pKeys, TransportOrderState state);
+
     /**
      * Find and return the {@code TransportOrder} identified by the persisted key {@code pKey}.
      *
@@ -28,6 +28,8 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.ameba.exception.BehaviorAwareException;
 import org.ameba.exception.BusinessRuntimeException;
@@ -37,6 +39,7 @@ import org.ameba.mapping.BeanMapper;
 import org.openwms.tms.PriorityLevel;
 import org.openwms.tms.TMSConstants;
 import org.openwms.tms.TransportOrder;
+import org.openwms.tms.TransportOrderState;
 import org.openwms.tms.TransportationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
@@ -72,6 +75,11 @@ class TransportationController {
         return new ArrayList<>(service.findBy(barcode, state));
     }
 
+    @GetMapping(value = TMSConstants.ROOT_ENTITIES, params = {"state"})
+    public List<TransportOrder> findBy(@RequestParam String state) {
+        return service.findByState(state);
+    }
+
     @GetMapping(TMSConstants.ROOT_ENTITIES + "/{pKey}")
     public TransportOrder findByPKey(@PathVariable String pKey) {
         return service.findByPKey(pKey);
@@ -85,6 +93,21 @@ class TransportationController {
         resp.addHeader(HttpHeaders.LOCATION, getCreatedResourceURI(req, to.getPersistentKey()));
     }
 
+    @PostMapping(TMSConstants.ROOT_ENTITIES + "/bulk")
+    @ResponseStatus(HttpStatus.CREATED)
+    public List<String> createTOs(@RequestBody List<CreateTransportOrderVO> vos) {
+        List<TransportOrder> transportOrders = new ArrayList<>(vos.size());
+        for (CreateTransportOrderVO vo : vos) {
+            validatePriority(vo);
+            TransportOrder to = new TransportOrder(vo.getBarcode())
+                    .setTargetLocation(vo.getTarget())
+                    .setTargetLocationGroup(vo.getTarget());
+            to.setPriority(PriorityLevel.valueOf(vo.getPriority()));
+            transportOrders.add(to);
+        }
+        return service.create(transportOrders).stream().map(TransportOrder::getPersistentKey).collect(Collectors.toList());
+    }
+
     @PatchMapping
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void updateTO(@RequestBody CreateTransportOrderVO vo) {
@@ -92,6 +115,16 @@ class TransportationController {
         service.update(m.map(vo, TransportOrder.class));
     }
 
+    @PostMapping(TMSConstants.ROOT_ENTITIES + "/state")
+    public List<StateChangeResultVO> changeState(@RequestBody ChangeStateVO vo) {
+        TransportOrderState state = asList(TransportOrderState.values()).stream()
+                .filter(s -> s.name().equals(vo.getState()))
+                .findFirst()
+                .orElseThrow(() -> new NotFoundException(String.format("A state of %s is not defined", vo.getState())));
+        Map<String, String> failures = service.changeState(vo.getpKeys(), state);
+        return vo.getpKeys().stream().distinct().map(pKey -> new StateChangeResultVO(pKey, failures.get(pKey))).collect(Collectors.toList());
+    }
+
     @ExceptionHandler(BusinessRuntimeException.class)
     public ResponseEntity<Response<Serializable>> handleNotFound(HttpServletResponse res, BusinessRuntimeException ex) throws Exception {
         if (ex instanceof BehaviorAwareException) {
@@ -0,0 +1,488 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.dispatch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import org.openwms.tms.StateChangeListener;
+import org.openwms.tms.TransportOrder;
+import org.openwms.tms.TransportOrderRepository;
+import org.openwms.tms.TransportOrderState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * A DispatchQueues keeps all {@link TransportOrderState#INITIALIZED} {@link TransportOrder}s in memory, sorted by priority and then by
+ * their primary key, per target {@code LocationGroup} (or target {@code Location} if no LocationGroup is set) and per {@code
+ * TransportUnit}. Finding the next TransportOrder to start is a lookup of the head of a queue instead of a query followed by a sort.
+ * TransportOrders of a TransportUnit with a started TransportOrder are parked and not part of the target queues, until the started
+ * TransportOrder has left {@link TransportOrderState#STARTED}.
+ * <p>
+ * The queues are maintained incrementally when a TransportOrder enters or leaves {@code INITIALIZED} and when its priority changes.
+ * Changes of a transaction are only applied to the queues after commit, like the {@code TargetCounters} do, so other transactions never
+ * see a TransportOrder they can't read yet. Until then the transaction itself sees its changes on top of the queues. The database
+ * remains the master, the queues are replaced with its content on a timer ({@code owms.tms.dispatch.reconcile-interval}).
+ * Activated with {@code owms.tms.dispatch.enabled=true}.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+@Component
+@ConditionalOnProperty(name = "owms.tms.dispatch.enabled", havingValue = "true")
+public class DispatchQueues implements StateChangeListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DispatchQueues.class);
+    @Autowired
+    private TransportOrderRepository repository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    private volatile Queues queues = new Queues();
+    /** Changes committed while a reconciliation loads the queues, {@literal null} if none runs. */
+    private Collection<Consumer<Queues>> recorded;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Get the key a {@code transportOrder} is queued with.
+     *
+     * @param transportOrder The TransportOrder
+     * @return The target LocationGroup or if not set, the target Location
+     */
+    public static String targetOf(TransportOrder transportOrder) {
+        return transportOrder.getTargetLocationGroup() != null ? transportOrder.getTargetLocationGroup() : transportOrder.getTargetLocation();
+    }
+
+    /**
+     * Find the next TransportOrder to start for the {@code target}. TransportOrders of {@code TransportUnit}s with a started
+     * TransportOrder are not considered.
+     *
+     * @param target The target LocationGroup or Location
+     * @return The primary key of the TransportOrder, if any
+     */
+    public Optional<Long> nextForTarget(String target) {
+        if (target == null) {
+            return Optional.empty();
+        }
+        Queues current = queues;
+        Changes changes = local();
+        Entry first = first(current.byTarget.get(target), current, changes);
+        if (changes != null) {
+
+            // Entries queued or unparked in this transaction
+            for (Entry entry : changes.added.values()) {
+                first = min(first, target.equals(entry.target) && !changes.isParked(entry.transportUnitBK, current) ? entry : null);
+            }
+            for (String transportUnitBK : changes.unparked) {
+                for (Entry entry : current.byTransportUnit.getOrDefault(transportUnitBK, new ConcurrentSkipListSet<>())) {
+                    if (target.equals(entry.target) && !changes.hides(entry)) {
+                        first = min(first, entry);
+                        break;
+                    }
+                }
+            }
+        }
+        return first == null ? Optional.empty() : Optional.of(first.pk);
+    }
+
+    /**
+     * Find the next TransportOrder to start for the {@code TransportUnit}.
+     *
+     * @param transportUnitBK The business key of the TransportUnit
+     * @return The primary key of the TransportOrder, if any and the TransportUnit has no started TransportOrder
+     */
+    public Optional<Long> nextForTransportUnit(String transportUnitBK) {
+        if (transportUnitBK == null) {
+            return Optional.empty();
+        }
+        Queues current = queues;
+        Changes changes = local();
+        if (changes == null ? current.started.contains(transportUnitBK) : changes.isParked(transportUnitBK, current)) {
+            return Optional.empty();
+        }
+        Entry first = first(current.byTransportUnit.get(transportUnitBK), current, changes);
+        if (changes != null) {
+            for (Entry entry : changes.added.values()) {
+                first = min(first, transportUnitBK.equals(entry.transportUnitBK) ? entry : null);
+            }
+        }
+        return first == null ? Optional.empty() : Optional.of(first.pk);
+    }
+
+    /* The first entry of the queue that is neither changed in this transaction nor of a started TransportUnit. */
+    private static Entry first(ConcurrentSkipListSet<Entry> queue, Queues current, Changes changes) {
+        if (queue == null) {
+            return null;
+        }
+        for (Entry entry : queue) {
+
+            // Usually the head, parked entries are only found here while a TransportUnit is started concurrently
+            if (changes == null ? entry.transportUnitBK == null || !current.started.contains(entry.transportUnitBK)
+                    : !changes.hides(entry) && !changes.isParked(entry.transportUnitBK, current)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static Entry min(Entry first, Entry other) {
+        return first == null || other != null && other.compareTo(first) < 0 ? other : first;
+    }
+
+    /**
+     * Drop a queued TransportOrder that could not be found, when it is still not found after the current transaction has completed.
+     * The TransportOrder may only be invisible to the current transaction, so the entry is not dropped blindly.
+     *
+     * @param pk The primary key of the TransportOrder
+     */
+    public void recheck(Long pk) {
+        Runnable check = () -> {
+            try {
+                TransportOrder transportOrder = readOnly().execute(status -> repository.findOne(pk));
+                if (transportOrder == null || transportOrder.getState() != TransportOrderState.INITIALIZED) {
+                    apply(Collections.singletonList(q -> q.remove(pk)));
+                    LOGGER.debug("Removed stale TransportOrder with PK [{}] from the dispatch queues", pk);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error("Could not check queued TransportOrder with PK [{}], left to the reconciliation. Message: [{}]", pk, e.getMessage());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    check.run();
+                }
+            });
+        } else {
+            check.run();
+        }
+    }
+
+    /* A new transaction, the one of the caller has already completed when rechecking. */
+    private TransactionTemplate readOnly() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        template.setReadOnly(true);
+        return template;
+    }
+
+    /**
+     * Move the {@code transportOrder} to the position of its current priority, if it is queued.
+     *
+     * @param transportOrder The TransportOrder with the new priority
+     */
+    public void reprioritize(TransportOrder transportOrder) {
+        Changes changes = changes();
+        boolean queued = changes == null ? queues.byPk.containsKey(transportOrder.getPk()) : changes.isQueued(transportOrder.getPk(), queues);
+        if (queued) {
+            Changes target = changes == null ? new Changes() : changes;
+            target.add(new Entry(transportOrder));
+            applyUnbound(target, changes);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onStateChange(TransportOrder transportOrder, TransportOrderState oldState, TransportOrderState newState) {
+        if (oldState == newState) {
+            return;
+        }
+        Changes changes = changes();
+        Changes target = changes == null ? new Changes() : changes;
+        if (newState == TransportOrderState.INITIALIZED) {
+            target.add(new Entry(transportOrder));
+        } else if (oldState == TransportOrderState.INITIALIZED) {
+            target.remove(transportOrder.getPk());
+        }
+        String transportUnitBK = transportOrder.getTransportUnitBK();
+        if (transportUnitBK != null) {
+            if (newState == TransportOrderState.STARTED) {
+                target.park(transportUnitBK);
+            } else if (oldState == TransportOrderState.STARTED) {
+                target.unpark(transportUnitBK);
+            }
+        }
+        applyUnbound(target, changes);
+    }
+
+    /* Without a transaction the changes are applied at once. */
+    private void applyUnbound(Changes target, Changes bound) {
+        if (bound == null) {
+            apply(target.ops);
+        }
+    }
+
+    /* The changes of the current transaction, if it has made any. */
+    private Changes local() {
+        return TransactionSynchronizationManager.isSynchronizationActive() ? (Changes) TransactionSynchronizationManager.getResource(this) : null;
+    }
+
+    /* The changes of the current transaction, bound to it and applied after commit. */
+    private Changes changes() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Changes changes = local();
+        if (changes == null) {
+            Changes bound = new Changes();
+            TransactionSynchronizationManager.bindResource(this, bound);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    apply(bound.ops);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(DispatchQueues.this);
+                }
+            });
+            changes = bound;
+        }
+        return changes;
+    }
+
+    private void apply(List<Consumer<Queues>> ops) {
+        lock.readLock().lock();
+        try {
+            Queues current = queues;
+            ops.forEach(op -> op.accept(current));
+            if (recorded != null) {
+                recorded.addAll(ops);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replace all queues with the current content of the database. Changes committed while loading are recorded and replayed onto the
+     * loaded queues before they are swapped in, so that they are not lost when the database was read before.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${owms.tms.dispatch.reconcile-interval:60000}")
+    public synchronized void reconcile() {
+        Queues loaded = new Queues();
+        record(new ConcurrentLinkedQueue<>());
+        try {
+            repository.findByState(TransportOrderState.STARTED).stream()
+                    .filter(to -> to.getTransportUnitBK() != null)
+                    .forEach(to -> loaded.park(to.getTransportUnitBK()));
+            repository.findByState(TransportOrderState.INITIALIZED).forEach(to -> loaded.add(new Entry(to)));
+        } catch (RuntimeException e) {
+            record(null);
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            recorded.forEach(op -> op.accept(loaded));
+            queues = loaded;
+            recorded = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        LOGGER.debug("Dispatch queues reconciled with [{}] TransportOrders for [{}] targets", loaded.byPk.size(), loaded.byTarget.size());
+    }
+
+    private void record(Collection<Consumer<Queues>> recording) {
+        lock.writeLock().lock();
+        try {
+            recorded = recording;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** The changes of one transaction, in the order they are applied after commit, and their effect seen by the transaction itself. */
+    private static final class Changes {
+
+        private final List<Consumer<Queues>> ops = new ArrayList<>();
+        private final Map<Long, Entry> added = new HashMap<>();
+        private final Set<Long> removed = new HashSet<>();
+        private final Set<String> parked = new HashSet<>();
+        private final Set<String> unparked = new HashSet<>();
+
+        void add(Entry entry) {
+            added.put(entry.pk, entry);
+            removed.remove(entry.pk);
+            ops.add(q -> q.add(entry));
+        }
+
+        void remove(Long pk) {
+            added.remove(pk);
+            removed.add(pk);
+            ops.add(q -> q.remove(pk));
+        }
+
+        void park(String transportUnitBK) {
+            parked.add(transportUnitBK);
+            unparked.remove(transportUnitBK);
+            ops.add(q -> q.park(transportUnitBK));
+        }
+
+        void unpark(String transportUnitBK) {
+            unparked.add(transportUnitBK);
+            parked.remove(transportUnitBK);
+            ops.add(q -> q.unpark(transportUnitBK));
+        }
+
+        /* An entry of the queues that is removed or replaced in this transaction. */
+        boolean hides(Entry entry) {
+            return removed.contains(entry.pk) || added.containsKey(entry.pk);
+        }
+
+        boolean isParked(String transportUnitBK, Queues queues) {
+            return transportUnitBK != null
+                    && (parked.contains(transportUnitBK) || queues.started.contains(transportUnitBK) && !unparked.contains(transportUnitBK));
+        }
+
+        boolean isQueued(Long pk, Queues queues) {
+            return added.containsKey(pk) || !removed.contains(pk) && queues.byPk.containsKey(pk);
+        }
+    }
+
+    /** Reads are lock free, modifications are serialized to keep the target queues and the parked TransportUnits consistent. */
+    private static final class Queues {
+
+        private final ConcurrentMap<Long, Entry> byPk = new ConcurrentHashMap<>();
+        /** Only entries of TransportUnits without a started TransportOrder. */
+        private final ConcurrentMap<String, ConcurrentSkipListSet<Entry>> byTarget = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, ConcurrentSkipListSet<Entry>> byTransportUnit = new ConcurrentHashMap<>();
+        private final Set<String> started = ConcurrentHashMap.newKeySet();
+
+        synchronized void add(Entry entry) {
+            Entry old = byPk.put(entry.pk, entry);
+            if (old != null) {
+                unlink(old);
+            }
+            if (entry.transportUnitBK != null) {
+                byTransportUnit.computeIfAbsent(entry.transportUnitBK, k -> new ConcurrentSkipListSet<>()).add(entry);
+            }
+            if (entry.transportUnitBK == null || !started.contains(entry.transportUnitBK)) {
+                enqueue(entry);
+            }
+        }
+
+        private void enqueue(Entry entry) {
+            if (entry.target != null) {
+                byTarget.computeIfAbsent(entry.target, k -> new ConcurrentSkipListSet<>()).add(entry);
+            }
+        }
+
+        private void dequeue(Entry entry) {
+            if (entry.target != null) {
+                byTarget.computeIfPresent(entry.target, (k, queue) -> {
+                    queue.remove(entry);
+                    return queue.isEmpty() ? null : queue;
+                });
+            }
+        }
+
+        /* Take all entries of the TransportUnit out of the target queues. */
+        synchronized void park(String transportUnitBK) {
+            if (started.add(transportUnitBK)) {
+                byTransportUnit.getOrDefault(transportUnitBK, new ConcurrentSkipListSet<>()).forEach(this::dequeue);
+            }
+        }
+
+        /* Put all entries of the TransportUnit back into the target queues. */
+        synchronized void unpark(String transportUnitBK) {
+            if (started.remove(transportUnitBK)) {
+                byTransportUnit.getOrDefault(transportUnitBK, new ConcurrentSkipListSet<>()).forEach(this::enqueue);
+            }
+        }
+
+        synchronized Entry remove(Long pk) {
+            Entry old = byPk.remove(pk);
+            if (old != null) {
+                unlink(old);
+            }
+            return old;
+        }
+
+        private void unlink(Entry entry) {
+            dequeue(entry);
+            if (entry.transportUnitBK != null) {
+                byTransportUnit.computeIfPresent(entry.transportUnitBK, (k, queue) -> {
+                    queue.remove(entry);
+                    return queue.isEmpty() ? null : queue;
+                });
+            }
+        }
+    }
+
+    /** Ordered like the {@code TransportStartComparator}: higher priority first, then lower primary key first. */
+    private static final class Entry implements Comparable<Entry> {
+
+        private final long pk;
+        private final int priority;
+        private final String target;
+        private final String transportUnitBK;
+
+        Entry(TransportOrder transportOrder) {
+            this.pk = transportOrder.getPk();
+            this.priority = transportOrder.getPriority().getOrder();
+            this.target = targetOf(transportOrder);
+            this.transportUnitBK = transportOrder.getTransportUnitBK();
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int result = Integer.compare(o.priority, priority);
+            return result != 0 ? result : Long.compare(pk, o.pk);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof Entry && compareTo((Entry) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(pk);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.events;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.support.AbstractApplicationContext;
+
+/**
+ * A EventsConfiguration replaces the default event multicaster with the {@link OutboxEventMulticaster}, activated with {@code
+ * owms.tms.events.outbox.enabled=true}, or with the {@link StripedEventMulticaster}, activated with {@code owms.tms.events.async=true}.
+ * The outbox takes precedence if both are enabled.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+@Configuration
+class EventsConfiguration {
+
+    public
+    @Bean(name = AbstractApplicationContext.APPLICATION_EVENT_MULTICASTER_BEAN_NAME)
+    @ConditionalOnProperty(name = "owms.tms.events.outbox.enabled", havingValue = "true")
+    OutboxEventMulticaster outboxEventMulticaster() {
+        return new OutboxEventMulticaster();
+    }
+
+    public
+    @Bean(name = AbstractApplicationContext.APPLICATION_EVENT_MULTICASTER_BEAN_NAME)
+    @ConditionalOnExpression("${owms.tms.events.async:false} and !${owms.tms.events.outbox.enabled:false}")
+    StripedEventMulticaster applicationEventMulticaster(
+            @Value("${owms.tms.events.stripes:0}") int stripes,
+            @Value("${owms.tms.events.queue-capacity:1000}") int queueCapacity,
+            @Value("${owms.tms.events.offer-timeout:5000}") long offerTimeout) {
+        return new StripedEventMulticaster(stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors(), queueCapacity, offerTimeout);
+    }
+}
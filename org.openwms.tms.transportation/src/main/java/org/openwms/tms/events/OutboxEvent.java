@@ -0,0 +1,146 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.events;
+
+import javax.persistence.CollectionTable;
+import javax.persistence.Column;
+import javax.persistence.ElementCollection;
+import javax.persistence.Embeddable;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
+import javax.persistence.JoinColumn;
+import javax.persistence.OrderColumn;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.ameba.integration.jpa.BaseEntity;
+import org.openwms.tms.TransportServiceBulkEvent;
+import org.openwms.tms.TransportServiceEvent;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * A OutboxEvent is a {@link TransportServiceEvent} or a {@link TransportServiceBulkEvent} stored in the same transaction that has caused
+ * it, waiting to be delivered. The TransportOrders of a bulk event are stored in their order in a separate table.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+@Entity
+@Table(name = "TMS_OUTBOX")
+class OutboxEvent extends BaseEntity implements Serializable {
+
+    @Column(name = "C_TYPE", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private TransportServiceEvent.TYPE type;
+
+    @Column(name = "C_SOURCE", nullable = false)
+    private Long source;
+
+    @Column(name = "C_TRANSPORT_UNIT_BK")
+    private String transportUnitBK;
+
+    /** Number of failed attempts to deliver the event. */
+    @Column(name = "C_ATTEMPTS")
+    private int attempts = 0;
+
+    /** All TransportOrders of a bulk event, empty for a single event. Eager, because the relay needs them outside of a transaction. */
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "TMS_OUTBOX_ORDER", joinColumns = @JoinColumn(name = "C_OUTBOX_PK"))
+    @OrderColumn(name = "C_POSITION")
+    private List<Member> members = new ArrayList<>();
+
+    /** Dear JPA ... */
+    protected OutboxEvent() {
+    }
+
+    OutboxEvent(TransportServiceEvent event) {
+        this.type = event.getType();
+        this.source = (Long) event.getSource();
+        this.transportUnitBK = event.getTransportUnitBK();
+    }
+
+    OutboxEvent(TransportServiceBulkEvent event) {
+        this.type = event.getType();
+        event.getTransportUnits().forEach((pk, transportUnitBK) -> members.add(new Member(pk, transportUnitBK)));
+        this.source = members.get(0).source;
+    }
+
+    /**
+     * Rebuild the original event.
+     *
+     * @return The event
+     */
+    ApplicationEvent toEvent() {
+        if (members.isEmpty()) {
+            return new TransportServiceEvent(source, type, transportUnitBK);
+        }
+        Map<Long, String> transportUnits = new LinkedHashMap<>();
+        members.forEach(m -> transportUnits.put(m.source, m.transportUnitBK));
+        return new TransportServiceBulkEvent(type, transportUnits);
+    }
+
+    /**
+     * Get the keys events must be ordered by.
+     *
+     * @return The TransportUnits or, if not set, the sources of all TransportOrders of the event
+     */
+    Set<String> getOrderingKeys() {
+        Set<String> keys = new LinkedHashSet<>();
+        if (members.isEmpty()) {
+            keys.add(transportUnitBK != null ? transportUnitBK : String.valueOf(source));
+        }
+        members.forEach(m -> keys.add(m.transportUnitBK != null ? m.transportUnitBK : String.valueOf(m.source)));
+        return keys;
+    }
+
+    int getAttempts() {
+        return attempts;
+    }
+
+    /** A TransportOrder of a bulk event. */
+    @Embeddable
+    static class Member implements Serializable {
+
+        @Column(name = "C_SOURCE", nullable = false)
+        private Long source;
+
+        @Column(name = "C_TRANSPORT_UNIT_BK")
+        private String transportUnitBK;
+
+        /** Dear JPA ... */
+        protected Member() {
+        }
+
+        Member(Long source, String transportUnitBK) {
+            this.source = source;
+            this.transportUnitBK = transportUnitBK;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.events;
+
+import org.openwms.tms.TransportServiceBulkEvent;
+import org.openwms.tms.TransportServiceEvent;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.event.SimpleApplicationEventMulticaster;
+import org.springframework.core.ResolvableType;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * A OutboxEventMulticaster stores {@link TransportServiceEvent}s published within a transaction in the outbox table instead of passing
+ * them to the listeners. The {@link OutboxRelay} delivers them later on. A {@link TransportServiceBulkEvent} is stored once and delivered
+ * as a bulk event again. Events published without a transaction and all other events are multicast synchronously, like before.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+class OutboxEventMulticaster extends SimpleApplicationEventMulticaster {
+
+    private BeanFactory beanFactory;
+    private volatile OutboxEventRepository repository;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        super.setBeanFactory(beanFactory);
+        this.beanFactory = beanFactory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void multicastEvent(ApplicationEvent event, ResolvableType eventType) {
+        if (event instanceof TransportServiceEvent && TransactionSynchronizationManager.isActualTransactionActive()) {
+            repository().save(new OutboxEvent((TransportServiceEvent) event));
+        } else if (event instanceof TransportServiceBulkEvent && TransactionSynchronizationManager.isActualTransactionActive()) {
+
+            // Nothing to deliver for an empty bulk
+            if (!((TransportServiceBulkEvent) event).getTransportUnits().isEmpty()) {
+                repository().save(new OutboxEvent((TransportServiceBulkEvent) event));
+            }
+        } else {
+            super.multicastEvent(event, eventType);
+        }
+    }
+
+    /**
+     * Pass an event taken from the outbox to all listeners.
+     *
+     * @param event The event
+     */
+    void deliver(ApplicationEvent event) {
+        super.multicastEvent(event, null);
+    }
+
+    private OutboxEventRepository repository() {
+        if (repository == null) {
+
+            // The multicaster is created before any repository, resolve it lazily
+            repository = beanFactory.getBean(OutboxEventRepository.class);
+        }
+        return repository;
+    }
+}
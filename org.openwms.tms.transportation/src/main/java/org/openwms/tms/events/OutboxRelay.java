@@ -0,0 +1,142 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.events;
+
+import javax.annotation.PostConstruct;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * A OutboxRelay drains the outbox table periodically and delivers the events to all listeners, including the ones that notify remote
+ * services. Each event is delivered and removed in its own transaction, so the changes of the listeners and the removal are committed
+ * together. Several nodes may relay concurrently, an event locked by one node is skipped by the others. Events of the same {@code
+ * TransportUnit} keep their order: once an event is skipped or fails, all later events of the TransportUnit wait for the next run. A
+ * bulk event waits as long as one of its TransportUnits does, and holds back all of them when it is skipped or fails. An
+ * event that failed {@code owms.tms.events.outbox.max-attempts} times remains in the table for manual inspection.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+@Component
+@ConditionalOnProperty(name = "owms.tms.events.outbox.enabled", havingValue = "true")
+@ManagedResource(objectName = "org.openwms.tms:name=Outbox", description = "Relay of the TransportServiceEvent outbox")
+class OutboxRelay {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OutboxRelay.class);
+    @Autowired
+    private OutboxEventRepository repository;
+    @Autowired
+    private OutboxEventMulticaster multicaster;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Value("${owms.tms.events.outbox.batch-size:100}")
+    private int batchSize;
+    @Value("${owms.tms.events.outbox.max-attempts:5}")
+    private int maxAttempts;
+    private TransactionTemplate transactionTemplate;
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Deliver up to {@code owms.tms.events.outbox.batch-size} pending events, and continue as long as full batches are found.
+     */
+    @Scheduled(fixedDelayString = "${owms.tms.events.outbox.poll-interval:1000}")
+    public void relay() {
+        List<OutboxEvent> pending;
+        int processed;
+        do {
+            pending = transactionTemplate.execute(status -> repository.findPending(maxAttempts, new PageRequest(0, batchSize)));
+            processed = relay(pending);
+        } while (pending.size() == batchSize && processed > 0);
+    }
+
+    private int relay(List<OutboxEvent> pending) {
+        Set<String> held = new HashSet<>();
+        int processed = 0;
+        for (OutboxEvent event : pending) {
+            Set<String> keys = event.getOrderingKeys();
+            if (keys.stream().anyMatch(held::contains)) {
+                held.addAll(keys);
+                continue;
+            }
+            try {
+                if (Boolean.TRUE.equals(transactionTemplate.execute(status -> deliver(event.getPk())))) {
+                    delivered.incrementAndGet();
+                    processed++;
+                } else {
+                    held.addAll(keys);
+                }
+            } catch (RuntimeException ex) {
+                failed.incrementAndGet();
+                held.addAll(keys);
+                LOGGER.error("Delivering event [{}] from outbox failed, attempt [{}]: [{}]", event.getPk(), event.getAttempts() + 1, ex.getMessage(), ex);
+                transactionTemplate.execute(status -> repository.incrementAttempts(event.getPk()));
+            }
+        }
+        return processed;
+    }
+
+    private boolean deliver(Long pk) {
+        Optional<OutboxEvent> locked = repository.findAndLock(pk);
+        if (!locked.isPresent()) {
+
+            // Taken by another node or already delivered
+            return false;
+        }
+        multicaster.deliver(locked.get().toEvent());
+        repository.delete(locked.get());
+        return true;
+    }
+
+    @ManagedAttribute(description = "Number of events delivered from the outbox")
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    @ManagedAttribute(description = "Number of failed delivery attempts")
+    public long getFailed() {
+        return failed.get();
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.events;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ameba.exception.ServiceLayerException;
+import org.openwms.tms.TransportServiceBulkEvent;
+import org.openwms.tms.TransportServiceEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.event.SimpleApplicationEventMulticaster;
+import org.springframework.core.ResolvableType;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * A StripedEventMulticaster dispatches {@link TransportServiceEvent}s asynchronously. Events are handed over after the publishing
+ * transaction has been committed, and are processed by one of a fixed number of single threaded stripes. The stripe is chosen by the
+ * {@code transportUnitBK} of the event, so all events of a {@code TransportUnit} are processed in sequence while different
+ * TransportUnits are processed in parallel. Each event is processed in a new transaction.
+ * <p>
+ * The queue of each stripe is bounded. A slot in the queue is reserved when the event is published, that is still within the
+ * transaction. When all slots are taken the publishing thread waits up to {@code offerTimeout} milliseconds for a free slot. If there
+ * is none afterwards the event is counted as rejected and the publishing thread gets a {@link ServiceLayerException}, so the
+ * transaction can still be rolled back. A reserved slot is given back when the transaction is rolled back. After the commit the event
+ * is not rejected anymore because of a full queue. Events are never processed out of their stripe, so the order per TransportUnit is
+ * kept. A {@link
+ * TransportServiceBulkEvent} stays a bulk event: it is dispatched as it is when all its TransportUnits share a stripe, otherwise it is
+ * split into one bulk event per stripe, each keeping the order of the TransportOrders. All other events are multicast synchronously,
+ * like before.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+@ManagedResource(objectName = "org.openwms.tms:name=TransportServiceEvents", description = "Asynchronous dispatching of TransportServiceEvents")
+class StripedEventMulticaster extends SimpleApplicationEventMulticaster implements DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StripedEventMulticaster.class);
+    private final ThreadPoolExecutor[] stripes;
+    /** Free slots in the queue of each stripe, the permit of an event is released as soon as it is taken from the queue. */
+    private final Semaphore[] slots;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final long offerTimeout;
+    private BeanFactory beanFactory;
+    private volatile TransactionTemplate transactionTemplate;
+
+    StripedEventMulticaster(int noStripes, int queueCapacity, long offerTimeout) {
+        this.offerTimeout = offerTimeout;
+        stripes = new ThreadPoolExecutor[noStripes];
+        slots = new Semaphore[noStripes];
+        for (int i = 0; i < noStripes; i++) {
+            String name = "tms-events-" + i;
+            stripes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                    r -> {
+                        Thread t = new Thread(r, name);
+                        t.setDaemon(true);
+                        return t;
+                    });
+            slots[i] = new Semaphore(queueCapacity);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        super.setBeanFactory(beanFactory);
+        this.beanFactory = beanFactory;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * TransportServiceEvents and TransportServiceBulkEvents reserve a slot in their stripe immediately, but are deferred until the
+     * current transaction has been committed and then queued to their stripe. If the transaction is rolled back, the event is dropped
+     * and the slot is given back.
+     *
+     * @throws ServiceLayerException if no slot is free within {@code offerTimeout}
+     */
+    @Override
+    public void multicastEvent(ApplicationEvent event, ResolvableType eventType) {
+        if (event instanceof TransportServiceBulkEvent) {
+            multicastBulk((TransportServiceBulkEvent) event, eventType);
+            return;
+        }
+        if (!(event instanceof TransportServiceEvent)) {
+            super.multicastEvent(event, eventType);
+            return;
+        }
+        TransportServiceEvent tse = (TransportServiceEvent) event;
+        int stripe = stripeOf(tse.getTransportUnitBK(), tse.getSource());
+        reserve(stripe, tse);
+        schedule(stripe, tse, eventType);
+    }
+
+    /* Either all slots of the bulk are reserved or none. */
+    private void multicastBulk(TransportServiceBulkEvent event, ResolvableType eventType) {
+        Map<Integer, Map<Long, String>> perStripe = new LinkedHashMap<>();
+        event.getTransportUnits().forEach((pk, transportUnitBK) ->
+                perStripe.computeIfAbsent(stripeOf(transportUnitBK, pk), k -> new LinkedHashMap<>()).put(pk, transportUnitBK));
+        Map<Integer, TransportServiceBulkEvent> reserved = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<Integer, Map<Long, String>> part : perStripe.entrySet()) {
+                TransportServiceBulkEvent bulk = perStripe.size() == 1 ? event : new TransportServiceBulkEvent(event.getType(), part.getValue());
+                reserve(part.getKey(), bulk);
+                reserved.put(part.getKey(), bulk);
+            }
+        } catch (ServiceLayerException sle) {
+            reserved.keySet().forEach(stripe -> slots[stripe].release());
+            throw sle;
+        }
+        reserved.forEach((stripe, bulk) -> schedule(stripe, bulk, bulk == event ? eventType : null));
+    }
+
+    private void schedule(int stripe, ApplicationEvent event, ResolvableType eventType) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    dispatch(stripe, event, eventType);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        slots[stripe].release();
+                    }
+                }
+            });
+        } else {
+            dispatch(stripe, event, eventType);
+        }
+    }
+
+    private void reserve(int stripe, ApplicationEvent event) {
+        String reason;
+        try {
+            if (slots[stripe].tryAcquire(offerTimeout, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+            reason = "Queue still full after " + offerTimeout + "ms";
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            reason = "Interrupted while waiting for queue capacity";
+        }
+        rejected.incrementAndGet();
+        LOGGER.error("[{}] not processed: [{}]", describe(event), reason);
+        throw new ServiceLayerException(String.format("%s not processed: %s", describe(event), reason));
+    }
+
+    /* For log and exception messages. */
+    private static String describe(ApplicationEvent event) {
+        if (event instanceof TransportServiceBulkEvent) {
+            TransportServiceBulkEvent bulk = (TransportServiceBulkEvent) event;
+            return String.format("Event %s of TransportOrders with TransportUnits %s", bulk.getType(), bulk.getTransportUnits());
+        }
+        TransportServiceEvent tse = (TransportServiceEvent) event;
+        return String.format("Event %s of TransportOrder %s for TransportUnit %s", tse.getType(), tse.getSource(), tse.getTransportUnitBK());
+    }
+
+    /*
+     * Called after the commit, must not throw. The reserved slot guarantees queue capacity, so the event can only be rejected when the
+     * stripes have been stopped meanwhile.
+     */
+    private void dispatch(int stripe, ApplicationEvent event, ResolvableType eventType) {
+        try {
+            stripes[stripe].execute(() -> {
+                slots[stripe].release();
+                process(event, eventType);
+            });
+            submitted.incrementAndGet();
+        } catch (RejectedExecutionException ree) {
+            slots[stripe].release();
+            rejected.incrementAndGet();
+            LOGGER.error("[{}] committed but not processed, event processing has been stopped. Enable owms.tms.events.outbox to deliver events durably",
+                    describe(event));
+        }
+    }
+
+    private int stripeOf(String transportUnitBK, Object source) {
+        Object key = transportUnitBK != null ? transportUnitBK : source;
+        return Math.floorMod(key.hashCode(), stripes.length);
+    }
+
+    private void process(ApplicationEvent event, ResolvableType eventType) {
+        try {
+            transactionTemplate().execute(status -> {
+                super.multicastEvent(event, eventType);
+                return null;
+            });
+        } catch (RuntimeException ex) {
+            failed.incrementAndGet();
+            LOGGER.error("Processing [{}] failed: [{}]", describe(event), ex.getMessage(), ex);
+        }
+    }
+
+    private TransactionTemplate transactionTemplate() {
+        if (transactionTemplate == null) {
+
+            // The multicaster is created before any transaction manager, resolve it lazily
+            TransactionTemplate template = new TransactionTemplate(beanFactory.getBean(PlatformTransactionManager.class));
+            template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            transactionTemplate = template;
+        }
+        return transactionTemplate;
+    }
+
+    @ManagedAttribute(description = "Number of events queued for asynchronous processing")
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    @ManagedAttribute(description = "Number of events that could not be queued and were not processed")
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    @ManagedAttribute(description = "Number of events whose processing failed")
+    public long getFailed() {
+        return failed.get();
+    }
+
+    @ManagedAttribute(description = "Number of events waiting in all queues")
+    public int getQueued() {
+        int queued = 0;
+        for (ThreadPoolExecutor stripe : stripes) {
+            queued += stripe.getQueue().size();
+        }
+        return queued;
+    }
+
+    /**
+     * Process all queued events, then stop the stripes.
+     */
+    @Override
+    public void destroy() throws Exception {
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.shutdown();
+        }
+        for (ThreadPoolExecutor stripe : stripes) {
+            if (!stripe.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOGGER.warn("Stopping event processing with [{}] events left", stripe.getQueue().size());
+                stripe.shutdownNow();
+            }
+        }
+    }
+}
@@ -23,6 +23,8 @@ package org.openwms.tms.service;
 
 import org.openwms.tms.TransportOrder;
 import org.openwms.tms.UpdateFunction;
+import org.openwms.tms.dispatch.DispatchQueues;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
@@ -34,6 +36,9 @@ import org.springframework.stereotype.Component;
 @Component
 class PrioritizeTO implements UpdateFunction {
 
+    @Autowired(required = false)
+    private DispatchQueues dispatchQueues;
+
     /**
      * {@inheritDoc}
      */
@@ -43,6 +48,9 @@ class PrioritizeTO implements UpdateFunction {
 
             // Request to change priority
             saved.setPriority(toUpdate.getPriority());
+            if (dispatchQueues != null) {
+                dispatchQueues.reprioritize(saved);
+            }
         }
     }
 }
@@ -46,6 +46,10 @@ final class TransportOrderUtil {
      */
     public static TransportServiceEvent.TYPE convertToEventType(TransportOrderState newState) {
         switch (newState) {
+        case INITIALIZED:
+            return TransportServiceEvent.TYPE.INITIALIZED;
+        case STARTED:
+            return TransportServiceEvent.TYPE.STARTED;
         case FINISHED:
             return TransportServiceEvent.TYPE.TRANSPORT_FINISHED;
         case CANCELED:
@@ -23,8 +23,13 @@ package org.openwms.tms.service;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -33,19 +38,23 @@ import org.ameba.i18n.Translator;
 import org.openwms.common.Target;
 import org.openwms.tms.Message;
 import org.openwms.tms.PriorityLevel;
+import org.openwms.tms.StartedConcurrentlyException;
 import org.openwms.tms.StateChangeException;
 import org.openwms.tms.TMSMessageCodes;
 import org.openwms.tms.TargetResolver;
 import org.openwms.tms.TransportOrder;
 import org.openwms.tms.TransportOrderRepository;
 import org.openwms.tms.TransportOrderState;
+import org.openwms.tms.TransportServiceBulkEvent;
 import org.openwms.tms.TransportServiceEvent;
 import org.openwms.tms.TransportationService;
 import org.openwms.tms.UpdateFunction;
+import org.openwms.tms.state.TransportUnitLocks;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -72,6 +81,8 @@ class TransportationServiceImpl implements TransportationService<TransportOrder>
     private List<UpdateFunction> updateFunctions;
     @Autowired
     private Translator translator;
+    @Autowired
+    private TransportUnitLocks locks;
 
     @Override
     public List<TransportOrder> findBy(String barcode, String... states) {
@@ -82,12 +93,25 @@ class TransportationServiceImpl implements TransportationService<TransportOrder>
      * {@inheritDoc}
      */
     @Override
+    public List<TransportOrder> findByState(String state) {
+        return repository.findByState(TransportOrderState.valueOf(state));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Without any {@code states} given, TransportOrders in all states are counted.
+     */
+    @Override
     public int getNoTransportOrdersToTarget(String target, String... states) {
+        TransportOrderState[] toStates = states.length == 0
+                ? TransportOrderState.values()
+                : Stream.of(states).map(TransportOrderState::valueOf).toArray(TransportOrderState[]::new);
         int i = 0;
         for (TargetResolver<Target> tr : targetResolvers) {
             Optional<Target> t = tr.resolve(target);
             if (t.isPresent()) {
-                i = +tr.getHandler().getNoTOToTarget(t.get());
+                i += tr.getHandler().getNoTOToTarget(t.get(), toStates);
             }
         }
         return i;
@@ -117,11 +141,35 @@ class TransportationServiceImpl implements TransportationService<TransportOrder>
         transportOrder = repository.save(transportOrder);
         LOGGER.debug("TransportOrder for Barcode [{}] created. PKey is [{}], PK is [{}]", barcode, transportOrder.getPersistentKey(), transportOrder.getPk());
         ctx.publishEvent(new TransportServiceEvent(transportOrder.getPk(),
-                TransportServiceEvent.TYPE.TRANSPORT_CREATED));
+                TransportServiceEvent.TYPE.TRANSPORT_CREATED, barcode));
         LOGGER.debug("TransportOrder for Barcode [{}] persisted. PKey is [{}], PK is [{}]", barcode, transportOrder.getPersistentKey(), transportOrder.getPk());
         return transportOrder;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * All TransportOrders are saved at once, hence inserted in JDBC batches. One {@link TransportServiceBulkEvent} of type {@code
+     * TRANSPORT_CREATED} is published for all of them, so that the initialization looks up all {@code TransportUnit}s at once.
+     *
+     * @throws NotFoundException when one of the barcodes is {@literal null}
+     */
+    @Override
+    public List<TransportOrder> create(List<TransportOrder> transportOrders) {
+        for (TransportOrder transportOrder : transportOrders) {
+            if (transportOrder.getTransportUnitBK() == null) {
+                throw new NotFoundException("Barcode cannot be null when creating a TransportOrder");
+            }
+        }
+        LOGGER.debug("Trying to create [{}] TransportOrders", transportOrders.size());
+        List<TransportOrder> saved = repository.save(transportOrders);
+        Map<Long, String> created = new LinkedHashMap<>();
+        saved.forEach(to -> created.put(to.getPk(), to.getTransportUnitBK()));
+        ctx.publishEvent(new TransportServiceBulkEvent(TransportServiceEvent.TYPE.TRANSPORT_CREATED, created));
+        LOGGER.debug("[{}] TransportOrders created", saved.size());
+        return saved;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -144,7 +192,7 @@ class TransportationServiceImpl implements TransportationService<TransportOrder>
                 LOGGER.debug("Trying to turn TransportOrder [{}] into state [{}]", transportOrder.getPk(), state);
                 transportOrder.changeState(state);
                 ctx.publishEvent(new TransportServiceEvent(transportOrder.getPk(), TransportOrderUtil
-                        .convertToEventType(state)));
+                        .convertToEventType(state), transportOrder.getTransportUnitBK()));
             } catch (StateChangeException sce) {
                 LOGGER.error("Could not turn TransportOrder: [{}] into [{}], because of [{}]", transportOrder.getPk(), state, sce.getMessage());
                 Message problem = new Message.Builder().withMessage(sce.getMessage()).build();
@@ -155,6 +203,73 @@ class TransportationServiceImpl implements TransportationService<TransportOrder>
         return failure;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * All TransportOrders are loaded with one query, duplicate {@code pKeys} are changed once. To start TransportOrders, all their
+     * TransportUnits are locked first, then the TransportUnits that already have a started one are loaded with one query. Changes are
+     * flushed once at the end.
+     *
+     * @throws StartedConcurrentlyException if another node has started a TransportOrder for one of the TransportUnits in the meantime,
+     * nothing is changed then
+     */
+    @Override
+    public Map<String, String> changeState(Collection<String> pKeys, TransportOrderState state) {
+        Set<String> uniquePKeys = new LinkedHashSet<>(pKeys);
+        Map<String, TransportOrder> transportOrders = repository.findByPKey(new ArrayList<>(uniquePKeys)).stream()
+                .collect(Collectors.toMap(TransportOrder::getPersistentKey, to -> to));
+        Set<String> started = null;
+        if (state == TransportOrderState.STARTED) {
+
+            // Otherwise a start on this node may commit between reading the started TransportUnits and the flush
+            locks.lockAll(transportOrders.values().stream().map(TransportOrder::getTransportUnitBK).collect(Collectors.toList()));
+            started = startedTransportUnits(transportOrders.values());
+        }
+        Map<String, String> failures = new LinkedHashMap<>();
+        Map<Long, String> changed = new LinkedHashMap<>();
+        for (String pKey : uniquePKeys) {
+            TransportOrder transportOrder = transportOrders.get(pKey);
+            if (transportOrder == null) {
+                failures.put(pKey, translator.translate(TMSMessageCodes.TO_WITH_PKEY_NOT_FOUND, pKey));
+                continue;
+            }
+            try {
+                if (started == null) {
+                    transportOrder.changeState(state);
+                } else {
+                    transportOrder.changeState(state, started);
+                }
+                changed.put(transportOrder.getPk(), transportOrder.getTransportUnitBK());
+            } catch (StateChangeException sce) {
+                LOGGER.debug("Could not turn TransportOrder: [{}] into [{}], because of [{}]", pKey, state, sce.getMessage());
+                transportOrder.setProblem(new Message.Builder().withMessage(sce.getMessage()).build());
+                failures.put(pKey, sce.getMessage());
+            }
+        }
+        repository.save(transportOrders.values());
+        try {
+            repository.flush();
+        } catch (DataIntegrityViolationException dive) {
+            if (!StartedConcurrentlyException.isCausedBy(dive)) {
+                throw dive;
+            }
+            throw new StartedConcurrentlyException("Cannot start TransportOrders " + changed.keySet() + " because another one of the same TransportUnit has been started concurrently", dive);
+        }
+        if (!changed.isEmpty()) {
+            ctx.publishEvent(new TransportServiceBulkEvent(TransportOrderUtil.convertToEventType(state), changed));
+        }
+        LOGGER.debug("[{}] TransportOrders turned into [{}], [{}] failed", changed.size(), state, failures.size());
+        return failures;
+    }
+
+    private Set<String> startedTransportUnits(Collection<TransportOrder> transportOrders) {
+        Set<String> transportUnitBKs = transportOrders.stream()
+                .map(TransportOrder::getTransportUnitBK)
+                .filter(bk -> bk != null)
+                .collect(Collectors.toSet());
+        return transportUnitBKs.isEmpty() ? new HashSet<>() : new HashSet<>(repository.findTransportUnitBKsInState(transportUnitBKs, TransportOrderState.STARTED));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -21,21 +21,36 @@
  */
 package org.openwms.tms.state;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import org.ameba.exception.NotFoundException;
 import org.openwms.common.CommonGateway;
+import org.openwms.common.TransportUnit;
+import org.openwms.tms.Message;
+import org.openwms.tms.StartedConcurrentlyException;
 import org.openwms.tms.StateChangeException;
 import org.openwms.tms.TransportOrder;
 import org.openwms.tms.TransportOrderRepository;
 import org.openwms.tms.TransportOrderState;
+import org.openwms.tms.TransportServiceBulkEvent;
 import org.openwms.tms.TransportServiceEvent;
+import org.openwms.tms.dispatch.DispatchQueues;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -56,6 +71,8 @@ class Initializer implements ApplicationListener<TransportServiceEvent> {
     private CommonGateway commonGateway;
     @Autowired
     private ApplicationContext ctx;
+    @Autowired(required = false)
+    private DispatchQueues dispatchQueues;
 
     /**
      * Handle an application event.
@@ -66,26 +83,92 @@ class Initializer implements ApplicationListener<TransportServiceEvent> {
     public void onApplicationEvent(TransportServiceEvent event) {
         if (event.getType() == TransportServiceEvent.TYPE.TRANSPORT_CREATED) {
             TransportOrder to = repository.findOne((Long) event.getSource());
-            List<TransportOrder> transportOrders = repository.findByTransportUnitBKAndStates(to.getTransportUnitBK(), TransportOrderState.CREATED);
-            Collections.sort(transportOrders, new TransportStartComparator());
-            for (TransportOrder transportOrder : transportOrders) {
-                try {
-                    transportOrder
-                            .changeState(TransportOrderState.INITIALIZED)
-                            .setSourceLocation(commonGateway.getTransportUnit(transportOrder.getTransportUnitBK()).orElseThrow(NotFoundException::new).getActualLocation().toString());
-                    transportOrder = repository.save(transportOrder);
-                    LOGGER.debug("TransportOrder with PK [{}] INITIALIZED", transportOrder.getPk());
-                } catch (StateChangeException sce) {
-                    LOGGER.warn("Could not initialize TransportOrder with PK [{}]. Message: [{}]", transportOrder.getPk(), sce.getMessage());
-                    continue;
-                }
+            String transportUnitBK = to.getTransportUnitBK();
+            List<TransportOrder> initialized = initialize(repository.findByTransportUnitBKAndStates(transportUnitBK, TransportOrderState.CREATED),
+                    () -> commonGateway.getTransportUnit(transportUnitBK).map(tu -> Collections.singletonMap(transportUnitBK, tu)).orElseGet(Collections::emptyMap),
+                    transportOrder -> {
+                        throw new NotFoundException(notFound(transportOrder));
+                    });
+            for (TransportOrder transportOrder : initialized) {
                 try {
                     ctx.publishEvent(new TransportServiceEvent(transportOrder.getPk(),
-                            TransportServiceEvent.TYPE.INITIALIZED));
-                } catch (StateChangeException sce) {
-                    LOGGER.warn("Post-processing of TransportOrder with PK [{}] failed with message: [{}]", transportOrder.getPk(), sce.getMessage());
+                            TransportServiceEvent.TYPE.INITIALIZED, transportOrder.getTransportUnitBK()));
+                } catch (StateChangeException | StartedConcurrentlyException e) {
+
+                    // The TransportOrder stays INITIALIZED and is created anyway
+                    LOGGER.warn("Post-processing of TransportOrder with PK [{}] failed with message: [{}]", transportOrder.getPk(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Initialize all created TransportOrders of all TransportUnits of the {@code event} at once. All TransportUnits are requested from
+     * the common service with one call. A TransportOrder whose TransportUnit is not known stays {@code CREATED} with a problem that
+     * names the barcode, all others are initialized. One {@link TransportServiceBulkEvent} of type {@code INITIALIZED} is published for
+     * all initialized TransportOrders.
+     *
+     * @param event the event to respond to
+     */
+    @EventListener
+    public void onBulkEvent(TransportServiceBulkEvent event) {
+        if (event.getType() == TransportServiceEvent.TYPE.TRANSPORT_CREATED) {
+            Set<String> transportUnitBKs = event.getTransportUnits().values().stream().filter(Objects::nonNull).collect(Collectors.toCollection(LinkedHashSet::new));
+            if (!transportUnitBKs.isEmpty()) {
+                List<TransportOrder> initialized = initialize(repository.findByTransportUnitBKsAndState(transportUnitBKs, TransportOrderState.CREATED),
+                        () -> commonGateway.getTransportUnits(transportUnitBKs),
+                        transportOrder -> {
+                            LOGGER.warn("Could not initialize TransportOrder with PK [{}]. Message: [{}]", transportOrder.getPk(), notFound(transportOrder));
+                            transportOrder.setProblem(new Message.Builder().withMessage(notFound(transportOrder)).build());
+                        });
+                if (!initialized.isEmpty()) {
+                    Map<Long, String> changed = new LinkedHashMap<>();
+                    initialized.forEach(to -> changed.put(to.getPk(), to.getTransportUnitBK()));
+                    ctx.publishEvent(new TransportServiceBulkEvent(TransportServiceEvent.TYPE.INITIALIZED, changed));
                 }
             }
         }
     }
+
+    private static String notFound(TransportOrder transportOrder) {
+        return "TransportUnit with barcode [" + transportOrder.getTransportUnitBK() + "] not found";
+    }
+
+    /*
+     * The TransportUnit is checked before the state is changed, so that a TransportOrder without a TransportUnit is left untouched
+     * unless the missingTransportUnit handler records a problem or throws.
+     */
+    private List<TransportOrder> initialize(List<TransportOrder> transportOrders, Supplier<Map<String, TransportUnit>> transportUnitLoader,
+            Consumer<TransportOrder> missingTransportUnit) {
+        if (transportOrders.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (dispatchQueues == null) {
+
+            // Otherwise the DispatchQueues decide on the start order
+            Collections.sort(transportOrders, new TransportStartComparator());
+        }
+
+        // Ask the common service once only
+        Map<String, TransportUnit> transportUnits = transportUnitLoader.get();
+        List<TransportOrder> initialized = new ArrayList<>(transportOrders.size());
+        for (TransportOrder transportOrder : transportOrders) {
+            TransportUnit transportUnit = transportUnits.get(transportOrder.getTransportUnitBK());
+            if (transportUnit == null) {
+                missingTransportUnit.accept(transportOrder);
+                continue;
+            }
+            try {
+                transportOrder.changeState(TransportOrderState.INITIALIZED);
+            } catch (StateChangeException sce) {
+                LOGGER.warn("Could not initialize TransportOrder with PK [{}]. Message: [{}]", transportOrder.getPk(), sce.getMessage());
+                continue;
+            }
+            transportOrder.setSourceLocation(transportUnit.getActualLocation().toString());
+            initialized.add(transportOrder);
+        }
+        repository.save(transportOrders);
+        initialized.forEach(to -> LOGGER.debug("TransportOrder with PK [{}] INITIALIZED", to.getPk()));
+        return initialized;
+    }
 }
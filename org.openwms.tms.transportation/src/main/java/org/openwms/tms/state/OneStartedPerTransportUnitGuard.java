@@ -0,0 +1,100 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.state;
+
+import java.util.Set;
+
+import org.ameba.i18n.Translator;
+import org.openwms.tms.StateChangeException;
+import org.openwms.tms.TMSMessageCodes;
+import org.openwms.tms.TransportOrder;
+import org.openwms.tms.TransportOrderRepository;
+import org.openwms.tms.TransportOrderState;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * A OneStartedPerTransportUnitGuard rejects to start a {@link TransportOrder} as long as another one for the same {@code TransportUnit}
+ * is started. The {@code TransportUnit} is locked before, so that the check and the following write are not interleaved. A single
+ * persisted TransportOrder claims its TransportUnit in the database as last step, to detect a start on another node without spoiling
+ * the current transaction.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+@Order(20)
+@Component
+class OneStartedPerTransportUnitGuard implements TransitionGuard {
+
+    @Autowired
+    private TransportOrderRepository repo;
+    @Autowired
+    private TransportUnitLocks locks;
+    @Autowired
+    private Translator translator;
+    @Autowired
+    private StartedTransportUnitClaim claim;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean supports(TransportOrderState from, TransportOrderState to) {
+        return from != TransportOrderState.STARTED && to == TransportOrderState.STARTED;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws org.openwms.tms.StartedConcurrentlyException if another node has started a TransportOrder of the TransportUnit in the
+     * meantime, the current transaction is left usable
+     */
+    @Override
+    public void check(TransportOrder transportOrder, TransportOrderState newState) throws StateChangeException {
+        locks.lock(transportOrder.getTransportUnitBK());
+        if (repo.numberOfTransportOrders(transportOrder.getTransportUnitBK(), TransportOrderState.STARTED) > 0) {
+            throw alreadyStarted(transportOrder);
+        }
+        if (transportOrder.getPk() != null && transportOrder.getTransportUnitBK() != null) {
+            claim.claim(transportOrder);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The {@code TransportUnit} is added to the {@code startedTransportUnits}, so that a second TransportOrder of the same
+     * TransportUnit is rejected.
+     */
+    @Override
+    public void check(TransportOrder transportOrder, TransportOrderState newState, Set<String> startedTransportUnits) throws StateChangeException {
+        locks.lock(transportOrder.getTransportUnitBK());
+        if (!startedTransportUnits.add(transportOrder.getTransportUnitBK())) {
+            throw alreadyStarted(transportOrder);
+        }
+    }
+
+    private StateChangeException alreadyStarted(TransportOrder transportOrder) {
+        return new StateChangeException(translator.translate(TMSMessageCodes.START_TO_NOT_ALLOWED_ALREADY_STARTED_ONE, transportOrder.getTransportUnitBK(), transportOrder.getPersistentKey()), TMSMessageCodes.START_TO_NOT_ALLOWED_ALREADY_STARTED_ONE, transportOrder.getTransportUnitBK(), transportOrder.getPersistentKey());
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.state;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import org.openwms.tms.TransportOrder;
+import org.openwms.tms.TransportOrderRepository;
+import org.openwms.tms.TransportOrderState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * A StartedTransportUnitBackfill sets the guard of the unique constraint {@link TransportOrder#UC_STARTED_TU} on all {@link
+ * TransportOrderState#STARTED} {@code TransportOrder}s that have been started before the guard existed. It runs once the application is
+ * ready and is idempotent. If a {@code TransportUnit} has more than one started {@code TransportOrder}, none of them is changed and a
+ * warning is logged, because this must be resolved manually.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+@Transactional
+@Component
+class StartedTransportUnitBackfill implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartedTransportUnitBackfill.class);
+    @Autowired
+    private TransportOrderRepository repository;
+
+    /**
+     * Backfill all started TransportOrders.
+     *
+     * @param event the event to respond to
+     */
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        Map<String, List<TransportOrder>> started = repository.findByState(TransportOrderState.STARTED).stream()
+                .filter(to -> Objects.nonNull(to.getTransportUnitBK()))
+                .collect(Collectors.groupingBy(TransportOrder::getTransportUnitBK));
+        started.forEach((transportUnitBK, transportOrders) -> {
+            if (transportOrders.size() == 1) {
+
+                // Assigning the TransportUnit of a started TransportOrder sets the guard as well
+                transportOrders.get(0).setTransportUnitBK(transportUnitBK);
+            } else {
+                LOGGER.warn("TransportUnit [{}] has [{}] started TransportOrders, none of them is guarded by [{}]", transportUnitBK,
+                        transportOrders.size(), TransportOrder.UC_STARTED_TU);
+            }
+        });
+        LOGGER.debug("Backfilled the guard of [{}] started TransportOrders", started.values().stream().filter(l -> l.size() == 1).count());
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.state;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+
+import org.hibernate.Session;
+import org.openwms.tms.StartedConcurrentlyException;
+import org.openwms.tms.TransportOrder;
+import org.springframework.stereotype.Component;
+
+/**
+ * A StartedTransportUnitClaim sets the guard of the unique constraint {@link TransportOrder#UC_STARTED_TU} directly in the database
+ * before a {@code TransportOrder} is started. The statement runs within a savepoint, so a violated constraint rolls back this statement
+ * only. Unlike a failed flush of the persistence context, the current transaction can still be committed afterwards.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+@Component
+class StartedTransportUnitClaim {
+
+    private static final String CLAIM = "update TMS_TRANSPORT_ORDER set C_STARTED_TU = ? where C_PK = ?";
+    /** SQL state class of integrity constraint violations. */
+    private static final String INTEGRITY_CONSTRAINT_VIOLATION = "23";
+    @PersistenceContext
+    private EntityManager em;
+
+    /**
+     * Claim the {@code TransportUnit} of the {@code transportOrder}. Pending changes are flushed before. The claim is committed or rolled
+     * back with the current transaction.
+     *
+     * @param transportOrder The TransportOrder to start
+     * @throws StartedConcurrentlyException if another TransportOrder of the TransportUnit has been started concurrently, the current
+     * transaction is left usable
+     */
+    void claim(TransportOrder transportOrder) {
+        em.flush();
+        boolean claimed = em.unwrap(Session.class).doReturningWork(connection -> {
+            Savepoint savepoint = connection.setSavepoint();
+            try (PreparedStatement ps = connection.prepareStatement(CLAIM)) {
+                ps.setString(1, transportOrder.getTransportUnitBK());
+                ps.setLong(2, transportOrder.getPk());
+                ps.executeUpdate();
+                return true;
+            } catch (SQLException sqle) {
+                connection.rollback(savepoint);
+                if (sqle.getSQLState() != null && sqle.getSQLState().startsWith(INTEGRITY_CONSTRAINT_VIOLATION)) {
+                    return false;
+                }
+                throw sqle;
+            }
+        });
+        if (!claimed) {
+            throw new StartedConcurrentlyException(
+                    "Cannot start TransportOrder for TransportUnit [" + transportOrder.getTransportUnitBK() + "] because another one has been started concurrently");
+        }
+    }
+}
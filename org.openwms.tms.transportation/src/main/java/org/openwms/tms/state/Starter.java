@@ -21,26 +21,44 @@
  */
 package org.openwms.tms.state;
 
-import java.util.List;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.ameba.exception.NotFoundException;
 import org.openwms.common.CommonGateway;
 import org.openwms.common.Location;
 import org.openwms.common.LocationGroup;
+import org.openwms.tms.StartedConcurrentlyException;
 import org.openwms.tms.StateChangeException;
 import org.openwms.tms.TransportOrder;
 import org.openwms.tms.TransportOrderRepository;
 import org.openwms.tms.TransportOrderState;
+import org.openwms.tms.TransportServiceBulkEvent;
 import org.openwms.tms.TransportServiceEvent;
+import org.openwms.tms.dispatch.DispatchQueues;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Component;
 
 /**
  * A Starter.
+ * <p>
+ * Starting a TransportOrder is flushed immediately. If another TransportOrder of the same TransportUnit has been started concurrently,
+ * a {@link StartedConcurrentlyException} is thrown. Usually this is detected by the {@link OneStartedPerTransportUnitGuard} before
+ * anything is flushed, so the caller may handle it and go on with the transaction. If it is only detected by the failed flush, the
+ * transaction is marked for rollback and the whole transaction of the triggering event fails.
  *
  * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
  */
@@ -53,6 +71,10 @@ class Starter implements ApplicationListener<TransportServiceEvent> {
     private TransportOrderRepository repository;
     @Autowired
     private CommonGateway commonGateway;
+    @Autowired
+    private ApplicationContext ctx;
+    @Autowired(required = false)
+    private DispatchQueues dispatchQueues;
 
     /**
      * Handle an application event.
@@ -69,35 +91,165 @@ class Starter implements ApplicationListener<TransportServiceEvent> {
             case TRANSPORT_INTERRUPTED:
 
                 final TransportOrder to = repository.findOne((Long) event.getSource());
-//                List<TransportOrder> transportOrders = repository.findByTransportUnitBKAndStates(to.getTransportUnitBK(), TransportOrderState.CREATED);
-                LOGGER.debug("> Request to start the TransportOrder with PKey [{}]", to.getPersistentKey());
-                Optional<LocationGroup> lg = commonGateway.getLocationGroup(to.getTargetLocationGroup());
-                Optional<Location> loc = commonGateway.getLocation(to.getTargetLocation());
-                if (!lg.isPresent() && !loc.isPresent()) {
-                    // At least one target must be set
-                    throw new NotFoundException(
-                            "Neither a valid target LocationGroup nor a Location are set, hence it is not possible to start the TransportOrder");
+                if (to == null) {
+                    LOGGER.warn("TransportOrder with PK [{}] of event [{}] does not exist anymore", event.getSource(), event.getType());
+                    break;
+                }
+                Targets targets = new Targets();
+                if (dispatchQueues == null) {
+                    start(to, targets);
+                } else {
+                    startQueued(event.getType(), to, targets);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Handle a bunch of TransportOrders that have been changed together. Initialized TransportOrders are started, a TransportOrder that
+     * can't be started is skipped. For terminated TransportOrders there is only something to start with {@link DispatchQueues}. The
+     * targets of the triggering TransportOrders, and of the next queued ones of their TransportUnits, are requested from the common
+     * service with one call per type.
+     *
+     * @param event the event to respond to
+     */
+    @EventListener
+    public void onBulkEvent(TransportServiceBulkEvent event) {
+        switch (event.getType()) {
+            case INITIALIZED:
+            case TRANSPORT_FINISHED:
+            case TRANSPORT_ONFAILURE:
+            case TRANSPORT_CANCELED:
+            case TRANSPORT_INTERRUPTED:
+                if (dispatchQueues == null && event.getType() != TransportServiceEvent.TYPE.INITIALIZED) {
+                    return;
+                }
+                Map<Long, TransportOrder> triggers = repository.findAll(event.getTransportUnits().keySet()).stream()
+                        .collect(Collectors.toMap(TransportOrder::getPk, Function.identity()));
+                Targets targets = new Targets().prefetch(triggers.values());
+                if (dispatchQueues != null) {
+                    targets.prefetch(repository.findAll(triggers.values().stream()
+                            .map(to -> dispatchQueues.nextForTransportUnit(to.getTransportUnitBK()))
+                            .flatMap(o -> o.map(Stream::of).orElseGet(Stream::empty))
+                            .collect(Collectors.toSet())));
                 }
-                lg.ifPresent(l -> {
-                    if (l.isInfeedBlocked())
-                        throw new StateChangeException("Cannot start the TransportOrder because TargetLocationGroup is blocked");
-                });
-                loc.ifPresent(l -> {
-                    if (l.isInfeedBlocked())
-                        throw new StateChangeException("Cannot start the TransportOrder because TargetLocation is blocked");
-                });
-                lg.ifPresent(l -> to.setTargetLocationGroup(l.toString()));
-                loc.ifPresent(l -> to.setTargetLocation(l.toString()));
-
-                List<TransportOrder> others = repository.findByTransportUnitBKAndStates(to.getTransportUnitBK(), TransportOrderState.STARTED);
-                if (!others.isEmpty()) {
-                    throw new StateChangeException(
-                            "Cannot start TransportOrder for TransportUnit [" + to.getTransportUnitBK() + "] because " + others.size() + " TransportOrders already started [" + others.get(0).getPersistentKey() + "]");
+
+                // In the order of the event, like the Initializer has sorted them
+                for (Long pk : event.getTransportUnits().keySet()) {
+                    TransportOrder to = triggers.get(pk);
+                    if (to == null) {
+                        continue;
+                    }
+                    if (dispatchQueues == null) {
+                        tryStart(to, targets);
+                    } else {
+                        startQueued(event.getType(), to, targets);
+                    }
                 }
-                to.changeState(TransportOrderState.STARTED);
-                repository.save(to);
-                LOGGER.info("TransportOrder for TransportUnit with Barcode {} STARTED at {}. Persisted key is {}", to.getTransportUnitBK(), to.getStartDate(), to.getPk());
                 break;
         }
     }
+
+    /*
+     * The TransportUnit of the trigger may start its next TransportOrder. When the trigger has left the target, the next
+     * TransportOrder to that target may be started too.
+     */
+    private void startQueued(TransportServiceEvent.TYPE type, TransportOrder trigger, Targets targets) {
+        dispatchQueues.nextForTransportUnit(trigger.getTransportUnitBK()).ifPresent(pk -> tryStart(pk, targets));
+        if (type != TransportServiceEvent.TYPE.INITIALIZED) {
+            dispatchQueues.nextForTarget(DispatchQueues.targetOf(trigger)).ifPresent(pk -> tryStart(pk, targets));
+        }
+    }
+
+    private void tryStart(Long pk, Targets targets) {
+        TransportOrder to = repository.findOne(pk);
+        if (to == null) {
+            LOGGER.warn("Queued TransportOrder with PK [{}] not found, checked again after the transaction", pk);
+            dispatchQueues.recheck(pk);
+            return;
+        }
+        tryStart(to, targets);
+    }
+
+    private void tryStart(TransportOrder to, Targets targets) {
+        try {
+            start(to, targets);
+        } catch (StateChangeException | NotFoundException | StartedConcurrentlyException e) {
+            LOGGER.warn("Could not start TransportOrder with PK [{}]. Message: [{}]", to.getPk(), e.getMessage());
+        }
+    }
+
+    private void start(TransportOrder to, Targets targets) {
+//        List<TransportOrder> transportOrders = repository.findByTransportUnitBKAndStates(to.getTransportUnitBK(), TransportOrderState.CREATED);
+        LOGGER.debug("> Request to start the TransportOrder with PKey [{}]", to.getPersistentKey());
+        Optional<LocationGroup> lg = targets.locationGroup(to.getTargetLocationGroup());
+        Optional<Location> loc = targets.location(to.getTargetLocation());
+        if (!lg.isPresent() && !loc.isPresent()) {
+            // At least one target must be set
+            throw new NotFoundException(
+                    "Neither a valid target LocationGroup nor a Location are set, hence it is not possible to start the TransportOrder");
+        }
+        lg.ifPresent(l -> {
+            if (l.isInfeedBlocked())
+                throw new StateChangeException("Cannot start the TransportOrder because TargetLocationGroup is blocked");
+        });
+        loc.ifPresent(l -> {
+            if (l.isInfeedBlocked())
+                throw new StateChangeException("Cannot start the TransportOrder because TargetLocation is blocked");
+        });
+        lg.ifPresent(l -> to.setTargetLocationGroup(l.toString()));
+        loc.ifPresent(l -> to.setTargetLocation(l.toString()));
+
+        // Other started TransportOrders for the TransportUnit are checked by the OneStartedPerTransportUnitGuard
+        to.changeState(TransportOrderState.STARTED);
+        try {
+            repository.saveAndFlush(to);
+        } catch (DataIntegrityViolationException dive) {
+            if (!StartedConcurrentlyException.isCausedBy(dive)) {
+                throw dive;
+            }
+
+            // Another node has started an order for the same TransportUnit in the meantime
+            throw new StartedConcurrentlyException(
+                    "Cannot start TransportOrder for TransportUnit [" + to.getTransportUnitBK() + "] because another one has been started concurrently", dive);
+        }
+        ctx.publishEvent(new TransportServiceEvent(to.getPk(), TransportServiceEvent.TYPE.STARTED, to.getTransportUnitBK()));
+        LOGGER.info("TransportOrder for TransportUnit with Barcode {} STARTED at {}. Persisted key is {}", to.getTransportUnitBK(), to.getStartDate(), to.getPk());
+    }
+
+    /**
+     * Targets resolved from the common service within the handling of one event. Targets can be requested upfront for a bunch of
+     * TransportOrders with one call per type, all others are requested one by one when needed.
+     */
+    private final class Targets {
+
+        private final Map<String, Optional<LocationGroup>> locationGroups = new HashMap<>();
+        private final Map<String, Optional<Location>> locations = new HashMap<>();
+
+        Targets prefetch(Collection<TransportOrder> transportOrders) {
+            Set<String> lgNames = missing(transportOrders.stream().map(TransportOrder::getTargetLocationGroup), locationGroups);
+            if (!lgNames.isEmpty()) {
+                Map<String, LocationGroup> found = commonGateway.getLocationGroups(lgNames);
+                lgNames.forEach(name -> locationGroups.put(name, Optional.ofNullable(found.get(name))));
+            }
+            Set<String> locNames = missing(transportOrders.stream().map(TransportOrder::getTargetLocation), locations);
+            if (!locNames.isEmpty()) {
+                Map<String, Location> found = commonGateway.getLocations(locNames);
+                locNames.forEach(name -> locations.put(name, Optional.ofNullable(found.get(name))));
+            }
+            return this;
+        }
+
+        private Set<String> missing(Stream<String> names, Map<String, ?> resolved) {
+            return names.filter(Objects::nonNull).filter(name -> !resolved.containsKey(name)).collect(Collectors.toSet());
+        }
+
+        Optional<LocationGroup> locationGroup(String name) {
+            return locationGroups.computeIfAbsent(name, commonGateway::getLocationGroup);
+        }
+
+        Optional<Location> location(String name) {
+            return locations.computeIfAbsent(name, commonGateway::getLocation);
+        }
+    }
 }
@@ -21,21 +21,17 @@
  */
 package org.openwms.tms.state;
 
-import static org.openwms.tms.TransportOrderState.CANCELED;
-import static org.openwms.tms.TransportOrderState.INITIALIZED;
-import static org.openwms.tms.TransportOrderState.ONFAILURE;
-import static org.openwms.tms.TransportOrderState.STARTED;
-
-import javax.persistence.Transient;
+import javax.annotation.PostConstruct;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
 import org.ameba.i18n.Translator;
 import org.openwms.tms.StateChangeException;
 import org.openwms.tms.StateManager;
 import org.openwms.tms.TMSMessageCodes;
 import org.openwms.tms.TransportOrder;
-import org.openwms.tms.TransportOrderRepository;
 import org.openwms.tms.TransportOrderState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,7 +39,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
- * A StateManagerImpl.
+ * A StateManagerImpl validates state transitions against the {@link TransitionTable}. Messages are only translated when a transition
+ * is rejected.
  *
  * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
  */
@@ -52,16 +49,27 @@ import org.springframework.stereotype.Component;
 class StateManagerImpl implements StateManager {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(StateManagerImpl.class);
-    @Transient
     @Autowired
     private Translator translator;
+    @Autowired(required = false)
+    private List<TransitionGuard> guards;
+    private TransitionTable table;
 
-    @Transient
-    @Autowired
-    private TransportOrderRepository repo;
+    @PostConstruct
+    void init() {
+        table = TransitionTable.of(guards == null ? Collections.emptyList() : guards);
+    }
 
     @Override
     public void validate(TransportOrderState newState, TransportOrder transportOrder) throws StateChangeException {
+        validate(newState, transportOrder, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void validate(TransportOrderState newState, TransportOrder transportOrder, Set<String> startedTransportUnits) throws StateChangeException {
         TransportOrderState state = transportOrder.getState();
         LOGGER.debug("Request for state change of TransportOrder with PK [{}] from [{}] to [{}]", transportOrder.getPk(), state, newState);
         if (newState == null) {
@@ -71,34 +79,18 @@ class StateManagerImpl implements StateManager {
             // Don't allow to turn back the state!
             throw new StateChangeException(translator.translate(TMSMessageCodes.TO_STATE_CHANGE_BACKWARDS_NOT_ALLOWED, transportOrder.getPersistentKey()), TMSMessageCodes.TO_STATE_CHANGE_BACKWARDS_NOT_ALLOWED, transportOrder.getPersistentKey());
         }
-        switch (state) {
-            case CREATED:
-                if (newState != INITIALIZED && newState != CANCELED) {
-                    throw new StateChangeException(translator.translate(TMSMessageCodes.TO_STATE_CHANGE_NOT_READY, newState, transportOrder.getPersistentKey()), TMSMessageCodes.TO_STATE_CHANGE_NOT_READY, newState, transportOrder.getPersistentKey());
-                }
-                if (transportOrder.getTransportUnitBK() == null || transportOrder.getTransportUnitBK().isEmpty() || transportOrder.getTargetLocation() == null && transportOrder.getTargetLocationGroup() == null) {
-                    throw new StateChangeException(String.format("Not all properties set to turn TransportOrder into next state! transportUnit's barcode [%s], targetLocation [%s], targetLocationGroup [%s]", transportOrder.getTransportUnitBK(), transportOrder.getTargetLocation(), transportOrder.getTargetLocationGroup()));
-                }
-                break;
-            case INITIALIZED:
-                if (newState != STARTED && newState != CANCELED && newState != ONFAILURE) {
-                    throw new StateChangeException(translator.translate(TMSMessageCodes.STATE_CHANGE_ERROR_FOR_INITIALIZED_TO, transportOrder.getPersistentKey()), TMSMessageCodes.STATE_CHANGE_ERROR_FOR_INITIALIZED_TO, transportOrder.getPersistentKey());
-                }
-                if (newState == STARTED && repo.findByTransportUnitBKAndStates(transportOrder.getTransportUnitBK(), STARTED).size() > 0) {
-                    throw new StateChangeException(translator.translate(TMSMessageCodes.START_TO_NOT_ALLOWED_ALREADY_STARTED_ONE, transportOrder.getTransportUnitBK(), transportOrder.getPersistentKey()), TMSMessageCodes.START_TO_NOT_ALLOWED_ALREADY_STARTED_ONE, transportOrder.getTransportUnitBK(), transportOrder.getPersistentKey());
-                }
-                List<TransportOrder> orders = repo.findByTransportUnitBKAndStates(transportOrder.getTransportUnitBK(), STARTED);
-                LOGGER.debug("Current State is [{}], new state is [{}], # of started is [{}]", state, newState, repo.numberOfTransportOrders(transportOrder.getTransportUnitBK(), STARTED));
-                break;
-            case STARTED:
-                // new state may be one of the following, no additional if-check required here
-                break;
-            case FINISHED:
-            case ONFAILURE:
-            case CANCELED:
-                throw new StateChangeException("Not allowed to change the state of a TransportOrder that has already been completed. Current state is CANCELED");
-            default:
-                throw new IllegalStateException("State not managed: " + state);
+        if (!table.isManaged(state)) {
+            throw new IllegalStateException("State not managed: " + state);
+        }
+        if (!table.isAllowed(state, newState)) {
+            throw rejected(state, newState, transportOrder);
+        }
+        for (TransitionGuard guard : table.guardsFor(state, newState)) {
+            if (startedTransportUnits == null) {
+                guard.check(transportOrder, newState);
+            } else {
+                guard.check(transportOrder, newState, startedTransportUnits);
+            }
         }
         switch (newState) {
             case STARTED:
@@ -114,4 +106,15 @@ class StateManagerImpl implements StateManager {
         }
         LOGGER.debug("Request processed, order is now [{}]", newState);
     }
+
+    private StateChangeException rejected(TransportOrderState state, TransportOrderState newState, TransportOrder transportOrder) {
+        switch (state) {
+            case CREATED:
+                return new StateChangeException(translator.translate(TMSMessageCodes.TO_STATE_CHANGE_NOT_READY, newState, transportOrder.getPersistentKey()), TMSMessageCodes.TO_STATE_CHANGE_NOT_READY, newState, transportOrder.getPersistentKey());
+            case INITIALIZED:
+                return new StateChangeException(translator.translate(TMSMessageCodes.STATE_CHANGE_ERROR_FOR_INITIALIZED_TO, transportOrder.getPersistentKey()), TMSMessageCodes.STATE_CHANGE_ERROR_FOR_INITIALIZED_TO, transportOrder.getPersistentKey());
+            default:
+                return new StateChangeException("Not allowed to change the state of a TransportOrder that has already been completed. Current state is " + state);
+        }
+    }
 }
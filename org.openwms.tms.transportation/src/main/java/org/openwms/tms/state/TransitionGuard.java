@@ -0,0 +1,69 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.state;
+
+import java.util.Set;
+
+import org.openwms.tms.StateChangeException;
+import org.openwms.tms.TransportOrder;
+import org.openwms.tms.TransportOrderState;
+
+/**
+ * A TransitionGuard is an additional check on a state transition of a {@link TransportOrder} that is allowed by the {@link
+ * TransitionTable}. Guards are Spring managed beans and looked up once, when the table is built.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+interface TransitionGuard {
+
+    /**
+     * Check whether the guard applies to the transition.
+     *
+     * @param from The current state
+     * @param to The requested state
+     * @return {@literal true} if the guard must be checked
+     */
+    boolean supports(TransportOrderState from, TransportOrderState to);
+
+    /**
+     * Check the transition of the {@code transportOrder}.
+     *
+     * @param transportOrder The TransportOrder
+     * @param newState The requested state
+     * @throws StateChangeException if the transition is rejected
+     */
+    void check(TransportOrder transportOrder, TransportOrderState newState) throws StateChangeException;
+
+    /**
+     * Check the transition of the {@code transportOrder} against preloaded data instead of the database. Guards that do not access the
+     * database need not to override this method.
+     *
+     * @param transportOrder The TransportOrder
+     * @param newState The requested state
+     * @param startedTransportUnits The business keys of all TransportUnits with a started TransportOrder
+     * @throws StateChangeException if the transition is rejected
+     */
+    default void check(TransportOrder transportOrder, TransportOrderState newState, Set<String> startedTransportUnits) throws StateChangeException {
+        check(transportOrder, newState);
+    }
+}
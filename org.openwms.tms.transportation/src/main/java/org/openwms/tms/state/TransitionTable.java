@@ -0,0 +1,122 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.state;
+
+import static org.openwms.tms.TransportOrderState.CANCELED;
+import static org.openwms.tms.TransportOrderState.CREATED;
+import static org.openwms.tms.TransportOrderState.FINISHED;
+import static org.openwms.tms.TransportOrderState.INITIALIZED;
+import static org.openwms.tms.TransportOrderState.ONFAILURE;
+import static org.openwms.tms.TransportOrderState.STARTED;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import org.openwms.tms.TransportOrderState;
+
+/**
+ * A TransitionTable holds all allowed state transitions of a {@code TransportOrder} together with the {@link TransitionGuard}s to
+ * check for each of them. The table is immutable and computed once.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+final class TransitionTable {
+
+    private static final TransitionGuard[] NO_GUARDS = new TransitionGuard[0];
+    private static final Map<TransportOrderState, EnumSet<TransportOrderState>> TRANSITIONS = new EnumMap<>(TransportOrderState.class);
+
+    static {
+        TRANSITIONS.put(CREATED, EnumSet.of(INITIALIZED, CANCELED));
+        TRANSITIONS.put(INITIALIZED, EnumSet.of(STARTED, CANCELED, ONFAILURE));
+        // Backwards transitions are rejected before
+        TRANSITIONS.put(STARTED, EnumSet.allOf(TransportOrderState.class));
+        TRANSITIONS.put(FINISHED, EnumSet.noneOf(TransportOrderState.class));
+        TRANSITIONS.put(ONFAILURE, EnumSet.noneOf(TransportOrderState.class));
+        TRANSITIONS.put(CANCELED, EnumSet.noneOf(TransportOrderState.class));
+    }
+
+    private final Map<TransportOrderState, Map<TransportOrderState, TransitionGuard[]>> guards = new EnumMap<>(TransportOrderState.class);
+
+    private TransitionTable(Collection<TransitionGuard> all) {
+        TRANSITIONS.forEach((from, targets) -> {
+            Map<TransportOrderState, TransitionGuard[]> byTarget = new EnumMap<>(TransportOrderState.class);
+            for (TransportOrderState to : targets) {
+                List<TransitionGuard> applicable = new ArrayList<>();
+                all.stream().filter(g -> g.supports(from, to)).forEach(applicable::add);
+                byTarget.put(to, applicable.isEmpty() ? NO_GUARDS : applicable.toArray(new TransitionGuard[applicable.size()]));
+            }
+            guards.put(from, byTarget);
+        });
+    }
+
+    /**
+     * Build the table with the given {@code guards}.
+     *
+     * @param guards All TransitionGuards, checked in the given order
+     * @return The table
+     */
+    static TransitionTable of(Collection<TransitionGuard> guards) {
+        return new TransitionTable(guards);
+    }
+
+    /**
+     * Check whether transitions are defined for the state {@code from}.
+     *
+     * @param from The current state
+     * @return {@literal true} if so
+     */
+    boolean isManaged(TransportOrderState from) {
+        return TRANSITIONS.containsKey(from);
+    }
+
+    /**
+     * Check whether the transition is allowed at all.
+     *
+     * @param from The current state
+     * @param to The requested state
+     * @return {@literal true} if so
+     */
+    boolean isAllowed(TransportOrderState from, TransportOrderState to) {
+        EnumSet<TransportOrderState> targets = TRANSITIONS.get(from);
+        return targets != null && targets.contains(to);
+    }
+
+    /**
+     * Get the guards to check for an allowed transition.
+     *
+     * @param from The current state
+     * @param to The requested state
+     * @return The guards, never {@literal null}
+     */
+    TransitionGuard[] guardsFor(TransportOrderState from, TransportOrderState to) {
+        Map<TransportOrderState, TransitionGuard[]> byTarget = guards.get(from);
+        if (byTarget == null) {
+            return NO_GUARDS;
+        }
+        return byTarget.getOrDefault(to, NO_GUARDS);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.state;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.openwms.tms.StateChangeException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * A TransportUnitLocks serializes the start of {@code TransportOrder}s per {@code TransportUnit} within this node. A fixed number of
+ * locks is striped by the business key of the {@code TransportUnit}, so starts for different TransportUnits run in parallel. A lock is
+ * held until the current transaction completes, hence the check for other started orders and the write are covered both. Across nodes
+ * the unique constraint on {@code C_STARTED_TU} takes over. Locks are acquired with a timeout to resolve crosswise waiting of
+ * transactions that start orders for several TransportUnits.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+@Component
+public class TransportUnitLocks {
+
+    @Value("${owms.tms.locks.stripes:64}")
+    private int noStripes;
+    @Value("${owms.tms.locks.timeout:5000}")
+    private long timeout;
+    private ReentrantLock[] stripes;
+
+    @PostConstruct
+    void init() {
+        stripes = new ReentrantLock[noStripes];
+        for (int i = 0; i < noStripes; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Lock the {@code TransportUnit} until the current transaction has completed. Without transaction synchronization nothing is
+     * locked, because the lock could not be released reliably.
+     *
+     * @param transportUnitBK The business key of the TransportUnit
+     * @throws StateChangeException if the lock could not be acquired in time
+     */
+    void lock(String transportUnitBK) {
+        if (transportUnitBK == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        ReentrantLock lock = stripes[stripeOf(transportUnitBK)];
+        try {
+            if (!lock.tryLock(timeout, TimeUnit.MILLISECONDS)) {
+                throw new StateChangeException("Timed out waiting to start a TransportOrder for TransportUnit [" + transportUnitBK + "]");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StateChangeException("Interrupted while waiting to start a TransportOrder for TransportUnit [" + transportUnitBK + "]");
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Lock all {@code TransportUnit}s until the current transaction has completed, like {@link #lock(String)}. The locks are acquired
+     * in a fixed order, so that transactions locking overlapping sets of TransportUnits don't wait crosswise.
+     *
+     * @param transportUnitBKs The business keys of the TransportUnits
+     * @throws StateChangeException if one of the locks could not be acquired in time
+     */
+    public void lockAll(Collection<String> transportUnitBKs) {
+        transportUnitBKs.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted((a, b) -> Integer.compare(stripeOf(a), stripeOf(b)))
+                .forEach(this::lock);
+    }
+
+    private int stripeOf(String transportUnitBK) {
+        return Math.floorMod(transportUnitBK.hashCode(), stripes.length);
+    }
+}
@@ -21,12 +21,12 @@
  */
 package org.openwms.tms.targets;
 
-import java.util.List;
+import java.util.OptionalInt;
 
 import org.openwms.common.Location;
 import org.openwms.tms.TargetHandler;
-import org.openwms.tms.TransportOrder;
 import org.openwms.tms.TransportOrderRepository;
+import org.openwms.tms.TransportOrderState;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -41,13 +41,23 @@ class LocationTargetHandler implements TargetHandler<Location> {
 
     @Autowired
     private TransportOrderRepository repository;
+    @Autowired(required = false)
+    private TargetCounters counters;
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public int getNoTOToTarget(Location target) {
-        List<TransportOrder> result = repository.findByTargetLocation(target.asString());
-        return result != null ? result.size() : 0;
+    public int getNoTOToTarget(Location target, TransportOrderState... states) {
+        if (states.length == 0) {
+            return 0;
+        }
+        if (counters != null) {
+            OptionalInt count = counters.toLocation(target.asString(), states);
+            if (count.isPresent()) {
+                return count.getAsInt();
+            }
+        }
+        return repository.numberOfTransportOrdersToLocation(target.asString(), states);
     }
 }
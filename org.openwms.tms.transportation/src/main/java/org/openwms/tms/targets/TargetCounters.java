@@ -0,0 +1,234 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.targets;
+
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.openwms.tms.StateChangeListener;
+import org.openwms.tms.TransportOrder;
+import org.openwms.tms.TransportOrderRepository;
+import org.openwms.tms.TransportOrderState;
+import org.openwms.tms.TransportServiceBulkEvent;
+import org.openwms.tms.TransportServiceEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * A TargetCounters keeps the number of {@link TransportOrder}s per target {@code Location} and target {@code LocationGroup} and per
+ * {@link TransportOrderState} in memory. Counters are updated after the transaction that created a TransportOrder or changed its state
+ * has been committed. Changes not covered by these events, like redirecting a TransportOrder, are corrected with the database on a
+ * timer ({@code owms.tms.counters.reconcile-interval}). Until the first reconciliation has finished no counts are available. Activated
+ * with {@code owms.tms.counters.enabled=true}.
+ * <p>
+ * While a reconciliation loads the counts, all changes are applied to the live and to the loading counters. So changes committed after
+ * the database has been queried are not lost when the loaded counters replace the live ones. A change that was committed before the
+ * query but applied afterwards is counted twice until the next reconciliation.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+@Component
+@ConditionalOnProperty(name = "owms.tms.counters.enabled", havingValue = "true")
+class TargetCounters implements StateChangeListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TargetCounters.class);
+    private static final int NO_STATES = TransportOrderState.values().length;
+    @Autowired
+    private TransportOrderRepository repository;
+    private volatile Counters counters;
+    /** The counters being loaded by a running reconciliation. */
+    private Counters loading;
+    /** Applying changes is shared, registering and swapping the loading counters is exclusive. */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Get the number of TransportOrders to the target Location.
+     *
+     * @param targetLocation The target Location
+     * @param states The states to consider
+     * @return The number, empty if the counters are not loaded yet
+     */
+    OptionalInt toLocation(String targetLocation, TransportOrderState... states) {
+        Counters current = counters;
+        return null == current ? OptionalInt.empty() : OptionalInt.of(sum(current.byLocation.get(targetLocation), states));
+    }
+
+    /**
+     * Get the number of TransportOrders to the target LocationGroup.
+     *
+     * @param targetLocationGroup The target LocationGroup
+     * @param states The states to consider
+     * @return The number, empty if the counters are not loaded yet
+     */
+    OptionalInt toLocationGroup(String targetLocationGroup, TransportOrderState... states) {
+        Counters current = counters;
+        return null == current ? OptionalInt.empty() : OptionalInt.of(sum(current.byLocationGroup.get(targetLocationGroup), states));
+    }
+
+    private static int sum(AtomicIntegerArray counts, TransportOrderState... states) {
+        if (null == counts) {
+            return 0;
+        }
+        int sum = 0;
+        for (TransportOrderState state : states) {
+            sum += counts.get(state.ordinal());
+        }
+        return Math.max(sum, 0);
+    }
+
+    /**
+     * Count a newly created TransportOrder.
+     *
+     * @param event The event
+     */
+    @EventListener
+    public void onEvent(TransportServiceEvent event) {
+        if (event.getType() == TransportServiceEvent.TYPE.TRANSPORT_CREATED) {
+            TransportOrder to = repository.findOne((Long) event.getSource());
+            if (null != to) {
+                afterCommit(to.getTargetLocation(), to.getTargetLocationGroup(), null, TransportOrderState.CREATED);
+            }
+        }
+    }
+
+    /**
+     * Count a bunch of newly created TransportOrders.
+     *
+     * @param event The event
+     */
+    @EventListener
+    public void onBulkEvent(TransportServiceBulkEvent event) {
+        if (event.getType() == TransportServiceEvent.TYPE.TRANSPORT_CREATED) {
+            repository.findAll(event.getTransportUnits().keySet())
+                    .forEach(to -> afterCommit(to.getTargetLocation(), to.getTargetLocationGroup(), null, TransportOrderState.CREATED));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onStateChange(TransportOrder transportOrder, TransportOrderState oldState, TransportOrderState newState) {
+        if (oldState != newState) {
+            afterCommit(transportOrder.getTargetLocation(), transportOrder.getTargetLocationGroup(), oldState, newState);
+        }
+    }
+
+    private void afterCommit(String targetLocation, String targetLocationGroup, TransportOrderState oldState, TransportOrderState newState) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    apply(targetLocation, targetLocationGroup, oldState, newState);
+                }
+            });
+        } else {
+            apply(targetLocation, targetLocationGroup, oldState, newState);
+        }
+    }
+
+    private void apply(String targetLocation, String targetLocationGroup, TransportOrderState oldState, TransportOrderState newState) {
+        lock.readLock().lock();
+        try {
+            if (null != counters) {
+                counters.apply(targetLocation, targetLocationGroup, oldState, newState);
+            }
+            if (null != loading) {
+                loading.apply(targetLocation, targetLocationGroup, oldState, newState);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void move(AtomicIntegerArray counts, TransportOrderState oldState, TransportOrderState newState) {
+        if (null != oldState) {
+            counts.decrementAndGet(oldState.ordinal());
+        }
+        counts.incrementAndGet(newState.ordinal());
+    }
+
+    /**
+     * Replace all counters with the current numbers of the database.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${owms.tms.counters.reconcile-interval:60000}")
+    public synchronized void reconcile() {
+        Counters loaded = new Counters();
+        swap(null, loaded);
+        try {
+            load(loaded.byLocation, repository.countByTargetLocationAndState());
+            load(loaded.byLocationGroup, repository.countByTargetLocationGroupAndState());
+        } catch (RuntimeException ex) {
+            swap(null, null);
+            throw ex;
+        }
+        swap(loaded, null);
+        LOGGER.debug("Target counters reconciled for [{}] Locations and [{}] LocationGroups", loaded.byLocation.size(), loaded.byLocationGroup.size());
+    }
+
+    private void swap(Counters live, Counters next) {
+        lock.writeLock().lock();
+        try {
+            if (null != live) {
+                counters = live;
+            }
+            loading = next;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void load(ConcurrentMap<String, AtomicIntegerArray> counts, List<Object[]> rows) {
+        for (Object[] row : rows) {
+            counts.computeIfAbsent((String) row[0], k -> new AtomicIntegerArray(NO_STATES))
+                    .addAndGet(((TransportOrderState) row[1]).ordinal(), ((Number) row[2]).intValue());
+        }
+    }
+
+    private static final class Counters {
+
+        private final ConcurrentMap<String, AtomicIntegerArray> byLocation = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, AtomicIntegerArray> byLocationGroup = new ConcurrentHashMap<>();
+
+        private void apply(String targetLocation, String targetLocationGroup, TransportOrderState oldState, TransportOrderState newState) {
+            if (null != targetLocation) {
+                move(byLocation.computeIfAbsent(targetLocation, k -> new AtomicIntegerArray(NO_STATES)), oldState, newState);
+            }
+            if (null != targetLocationGroup) {
+                move(byLocationGroup.computeIfAbsent(targetLocationGroup, k -> new AtomicIntegerArray(NO_STATES)), oldState, newState);
+            }
+        }
+    }
+}
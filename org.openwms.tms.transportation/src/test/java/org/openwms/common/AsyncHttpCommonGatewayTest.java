@@ -0,0 +1,94 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.common;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.ameba.exception.ServiceLayerException;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * An AsyncHttpCommonGatewayTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+public class AsyncHttpCommonGatewayTest {
+
+    private LoadBalancerClient loadBalancer;
+    private AsyncHttpCommonGateway testee;
+
+    @Before
+    public void setUp() {
+        loadBalancer = mock(LoadBalancerClient.class);
+        testee = new AsyncHttpCommonGateway();
+        ReflectionTestUtils.setField(testee, "serviceHeaders", new ServiceHeaders());
+        ReflectionTestUtils.setField(testee, "loadBalancer", loadBalancer);
+        ReflectionTestUtils.setField(testee, "serviceId", "COMMON-1");
+        ReflectionTestUtils.setField(testee, "maxTotal", 10);
+        ReflectionTestUtils.setField(testee, "maxPerHost", 10);
+        ReflectionTestUtils.setField(testee, "keepAlive", 1000L);
+        ReflectionTestUtils.setField(testee, "connectTimeout", 1000);
+        ReflectionTestUtils.setField(testee, "readTimeout", 1000);
+    }
+
+    public final @Test void testStartupFailsWithCollapsing() {
+        ReflectionTestUtils.setField(testee, "window", 10L);
+        assertStartupFails();
+    }
+
+    public final @Test void testStartupFailsWithResilience() {
+        ReflectionTestUtils.setField(testee, "resilience", true);
+        assertStartupFails();
+    }
+
+    private void assertStartupFails() {
+        try {
+            testee.init();
+            fail("Expected the startup to fail");
+        } catch (IllegalStateException ex) {
+            assertTrue(ex.getMessage().contains("owms.common.transport=feign"));
+        }
+    }
+
+    public final @Test void testLookupFailsWithoutInstanceOfCommonService() throws Exception {
+        given(loadBalancer.choose("COMMON-1")).willReturn(null);
+        testee.init();
+        try {
+            testee.getLocationAsync("LOC").get(5, TimeUnit.SECONDS);
+            fail("Expected the lookup to fail without an instance of the common service");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof ServiceLayerException);
+        } finally {
+            testee.destroy();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.ameba.tenancy.TenantHolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * A CachingCommonGatewayTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+public class CachingCommonGatewayTest {
+
+    private CommonGateway delegate;
+    private CachingCommonGateway testee;
+
+    @Before
+    public void setUp() {
+        delegate = mock(CommonGateway.class);
+        testee = new CachingCommonGateway();
+        ReflectionTestUtils.setField(testee, "delegate", delegate);
+        ReflectionTestUtils.setField(testee, "locationTtl", 60000L);
+        ReflectionTestUtils.setField(testee, "locationGroupTtl", 60000L);
+        ReflectionTestUtils.setField(testee, "negativeTtl", 50L);
+        ReflectionTestUtils.setField(testee, "maxSize", 2);
+    }
+
+    @After
+    public void tearDown() {
+        TenantHolder.destroy();
+    }
+
+    public final @Test void testLocationIsLookedUpOnce() {
+        Location loc = new Location("LOC");
+        given(delegate.getLocation("LOC")).willReturn(Optional.of(loc));
+
+        assertSame(loc, testee.getLocation("LOC").get());
+        assertSame(loc, testee.getLocation("LOC").get());
+        verify(delegate, times(1)).getLocation("LOC");
+    }
+
+    public final @Test void testUnknownTargetIsCachedShorter() throws Exception {
+        given(delegate.getLocationGroup("UNKNOWN")).willReturn(Optional.empty());
+
+        assertFalse(testee.getLocationGroup("UNKNOWN").isPresent());
+        assertFalse(testee.getLocationGroup("UNKNOWN").isPresent());
+        verify(delegate, times(1)).getLocationGroup("UNKNOWN");
+
+        TimeUnit.MILLISECONDS.sleep(100);
+        testee.getLocationGroup("UNKNOWN");
+        verify(delegate, times(2)).getLocationGroup("UNKNOWN");
+    }
+
+    public final @Test void testTransportUnitsAreNotCached() {
+        given(delegate.getTransportUnit("TU")).willReturn(Optional.empty());
+
+        testee.getTransportUnit("TU");
+        testee.getTransportUnit("TU");
+        verify(delegate, times(2)).getTransportUnit("TU");
+    }
+
+    public final @Test void testBulkLookupRequestsOnlyMissingLocations() {
+        Location loc1 = new Location("LOC1");
+        Location loc2 = new Location("LOC2");
+        given(delegate.getLocation("LOC1")).willReturn(Optional.of(loc1));
+        given(delegate.getLocations(Arrays.asList("LOC2", "UNKNOWN"))).willReturn(Collections.singletonMap("LOC2", loc2));
+        testee.getLocation("LOC1");
+
+        Map<String, Location> result = testee.getLocations(Arrays.asList("LOC1", "LOC2", "UNKNOWN"));
+
+        assertEquals(2, result.size());
+        assertSame(loc1, result.get("LOC1"));
+        assertSame(loc2, result.get("LOC2"));
+        assertFalse(testee.getLocation("UNKNOWN").isPresent());
+        verify(delegate, never()).getLocation("UNKNOWN");
+    }
+
+    public final @Test void testBulkLookupWithAllCachedDoesNotCallDelegate() {
+        given(delegate.getLocation("LOC1")).willReturn(Optional.of(new Location("LOC1")));
+        testee.getLocation("LOC1");
+
+        assertEquals(1, testee.getLocations(Collections.singletonList("LOC1")).size());
+        verify(delegate, never()).getLocations(anyCollectionOf(String.class));
+    }
+
+    public final @Test void testEvictLocation() {
+        given(delegate.getLocation("LOC")).willReturn(Optional.of(new Location("LOC")));
+        testee.getLocation("LOC");
+
+        testee.evictLocation("LOC");
+        testee.getLocation("LOC");
+        verify(delegate, times(2)).getLocation("LOC");
+    }
+
+    public final @Test void testEvictAllOfCurrentTenantOnly() {
+        given(delegate.getLocation("LOC")).willReturn(Optional.of(new Location("LOC")));
+        TenantHolder.setCurrentTenant("A");
+        testee.getLocation("LOC");
+        TenantHolder.setCurrentTenant("B");
+        testee.getLocation("LOC");
+
+        testee.evictAll();
+        testee.getLocation("LOC");
+        TenantHolder.setCurrentTenant("A");
+        testee.getLocation("LOC");
+        verify(delegate, times(3)).getLocation("LOC");
+    }
+
+    public final @Test void testLeastRecentlyUsedIsEvicted() {
+        given(delegate.getLocation("LOC1")).willReturn(Optional.of(new Location("LOC1")));
+        given(delegate.getLocation("LOC2")).willReturn(Optional.of(new Location("LOC2")));
+        given(delegate.getLocation("LOC3")).willReturn(Optional.of(new Location("LOC3")));
+        testee.getLocation("LOC1");
+        testee.getLocation("LOC2");
+        testee.getLocation("LOC1");
+        testee.getLocation("LOC3");
+
+        testee.getLocation("LOC1");
+        testee.getLocation("LOC2");
+        verify(delegate, times(1)).getLocation("LOC1");
+        verify(delegate, times(2)).getLocation("LOC2");
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.ameba.exception.ServiceLayerException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * A HttpCommonGatewayTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+public class HttpCommonGatewayTest {
+
+    private CommonFeignClient client;
+    private SnapshotStore snapshots;
+    private HttpCommonGateway testee;
+
+    @Before
+    public void setUp() {
+        client = mock(CommonFeignClient.class);
+        snapshots = new SnapshotStore();
+        ReflectionTestUtils.setField(snapshots, "maxSize", 100);
+        ReflectionTestUtils.setField(snapshots, "refreshThreads", 1);
+        snapshots.init();
+        testee = gateway(0, snapshots);
+    }
+
+    @After
+    public void tearDown() {
+        snapshots.destroy();
+    }
+
+    private HttpCommonGateway gateway(long window, SnapshotStore store) {
+        HttpCommonGateway gateway = new HttpCommonGateway();
+        ReflectionTestUtils.setField(gateway, "commonFeignClient", client);
+        ReflectionTestUtils.setField(gateway, "window", window);
+        ReflectionTestUtils.setField(gateway, "maxConcurrent", 100);
+        ReflectionTestUtils.setField(gateway, "snapshots", store);
+        gateway.init();
+        return gateway;
+    }
+
+    private void commonServiceDown() {
+        given(client.getLocation(anyString())).willThrow(new RuntimeException("Common service down"));
+        given(client.getLocations(anyListOf(String.class))).willThrow(new RuntimeException("Common service down"));
+    }
+
+    public final @Test void testBulkLookupUpdatesSnapshotsPerKey() {
+        Location loc1 = new Location("LOC1");
+        given(client.getLocations(Arrays.asList("LOC1", "UNKNOWN"))).willReturn(Collections.singletonList(loc1));
+
+        Map<String, Location> result = testee.getLocations(Arrays.asList("LOC1", "UNKNOWN"));
+
+        assertSame(loc1, result.get("LOC1"));
+        assertFalse(result.containsKey("UNKNOWN"));
+        assertEquals(1, snapshots.getSize());
+    }
+
+    public final @Test void testBulkLookupFallsBackToSnapshots() {
+        Location loc1 = new Location("LOC1");
+        Location loc2 = new Location("LOC2");
+        given(client.getLocations(Arrays.asList("LOC1", "LOC2"))).willReturn(Arrays.asList(loc1, loc2));
+        testee.getLocations(Arrays.asList("LOC1", "LOC2"));
+        commonServiceDown();
+
+        Map<String, Location> result = testee.getLocations(Arrays.asList("LOC1", "LOC2"));
+
+        assertSame(loc1, result.get("LOC1"));
+        assertSame(loc2, result.get("LOC2"));
+        assertEquals(2, snapshots.getStaleLocations());
+        assertEquals(0, snapshots.getMissed());
+    }
+
+    public final @Test void testBulkLookupFailsForKeysWithoutSnapshot() {
+        snapshots.update(Location.class, "LOC1", Optional.of(new Location("LOC1")));
+        commonServiceDown();
+
+        try {
+            testee.getLocations(Arrays.asList("LOC1", "LOC2"));
+            fail("Expected the lookup to fail without a snapshot of LOC2");
+        } catch (ServiceLayerException ex) {
+            assertTrue(ex.getMessage().contains("LOC2"));
+            assertFalse(ex.getMessage().contains("LOC1"));
+        }
+        assertEquals(1, snapshots.getStaleLocations());
+        assertEquals(1, snapshots.getMissed());
+    }
+
+    public final @Test void testSingleLookupFallsBackToSnapshot() {
+        Location loc = new Location("LOC");
+        given(client.getLocation("LOC")).willReturn(loc);
+        testee.getLocation("LOC");
+        commonServiceDown();
+
+        assertSame(loc, testee.getLocation("LOC").get());
+        assertEquals(1, snapshots.getStaleLocations());
+    }
+
+    public final @Test void testSingleLookupFailsWithoutSnapshot() {
+        commonServiceDown();
+
+        try {
+            testee.getLocation("LOC");
+            fail("Expected the lookup to fail without a snapshot");
+        } catch (ServiceLayerException ex) {
+            assertEquals(1, snapshots.getMissed());
+        }
+    }
+
+    public final @Test void testCollapsedLookupsFallBackToSnapshots() throws Exception {
+        HttpCommonGateway collapsing = gateway(200, snapshots);
+        Location loc1 = new Location("LOC1");
+        Location loc2 = new Location("LOC2");
+        snapshots.update(Location.class, "LOC1", Optional.of(loc1));
+        snapshots.update(Location.class, "LOC2", Optional.of(loc2));
+        commonServiceDown();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Optional<Location>> first = executor.submit(() -> collapsing.getLocation("LOC1"));
+            Future<Optional<Location>> second = executor.submit(() -> collapsing.getLocation("LOC2"));
+
+            assertSame(loc1, first.get(5, TimeUnit.SECONDS).get());
+            assertSame(loc2, second.get(5, TimeUnit.SECONDS).get());
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(client, times(1)).getLocations(anyListOf(String.class));
+        assertEquals(2, snapshots.getStaleLocations());
+    }
+
+    public final @Test void testSlowLookupIsNotTimedOut() {
+        Location stale = new Location("LOC");
+        Location fresh = new Location("LOC");
+        snapshots.update(Location.class, "LOC", Optional.of(stale));
+        willAnswer(invocation -> {
+
+            // Longer than the default execution timeout of Hystrix
+            Thread.sleep(1500);
+            return fresh;
+        }).given(client).getLocation("LOC");
+
+        assertSame("Answered by the client, not by the fallback", fresh, testee.getLocation("LOC").get());
+        assertEquals(0, snapshots.getStaleLocations());
+    }
+
+    public final @Test void testUnknownTransportUnit() {
+        given(client.getTransportUnit("UNKNOWN")).willReturn(null);
+        assertFalse(testee.getTransportUnit("UNKNOWN").isPresent());
+    }
+
+    public final @Test void testBulkLookupWithoutResilienceFails() {
+        HttpCommonGateway unprotected = gateway(0, null);
+        commonServiceDown();
+
+        try {
+            unprotected.getLocations(Arrays.asList("LOC1", "LOC2"));
+            fail("Expected the lookup to fail");
+        } catch (ServiceLayerException ex) {
+            assertEquals(0, snapshots.getMissed());
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ameba.exception.ServiceLayerException;
+import org.ameba.tenancy.TenantHolder;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * A RequestCollapserTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+public class RequestCollapserTest {
+
+    private static final long WINDOW = 200;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger singleCalls = new AtomicInteger();
+    private final List<Collection<String>> bulkCalls = Collections.synchronizedList(new ArrayList<>());
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private Map<String, Location> bulk(Collection<String> keys) {
+        bulkCalls.add(new ArrayList<>(keys));
+        Map<String, Location> result = new LinkedHashMap<>();
+        keys.stream().filter(k -> !k.startsWith("UNKNOWN")).forEach(k -> result.put(k, new Location(k)));
+        return result;
+    }
+
+    private Future<Optional<Location>> lookup(RequestCollapser<Location> testee, String tenant, String key) {
+        return executor.submit(() -> {
+            TenantHolder.setCurrentTenant(tenant);
+            try {
+                return testee.get(key);
+            } finally {
+                TenantHolder.destroy();
+            }
+        });
+    }
+
+    public final @Test void testSameKeyIsLookedUpOnce() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Location location = new Location("LOC");
+        RequestCollapser<Location> testee = new RequestCollapser<>(0, k -> {
+            singleCalls.incrementAndGet();
+            entered.countDown();
+            await(release);
+            return Optional.of(location);
+        }, this::bulk);
+
+        Future<Optional<Location>> first = lookup(testee, null, "LOC");
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        List<Future<Optional<Location>>> others = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            others.add(lookup(testee, null, "LOC"));
+        }
+        TimeUnit.MILLISECONDS.sleep(100);
+        release.countDown();
+
+        assertSame(location, first.get(5, TimeUnit.SECONDS).get());
+        for (Future<Optional<Location>> other : others) {
+            assertSame(location, other.get(5, TimeUnit.SECONDS).get());
+        }
+        assertEquals(1, singleCalls.get());
+        assertTrue(bulkCalls.isEmpty());
+    }
+
+    public final @Test void testFailedLookupIsPropagatedToAllWaiters() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RequestCollapser<Location> testee = new RequestCollapser<>(0, k -> {
+            singleCalls.incrementAndGet();
+            entered.countDown();
+            await(release);
+            throw new ServiceLayerException("Common service down");
+        }, this::bulk);
+
+        Future<Optional<Location>> first = lookup(testee, null, "LOC");
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        Future<Optional<Location>> second = lookup(testee, null, "LOC");
+        TimeUnit.MILLISECONDS.sleep(100);
+        release.countDown();
+
+        assertFailed(first);
+        assertFailed(second);
+        assertEquals(1, singleCalls.get());
+    }
+
+    public final @Test void testSameKeyOfDifferentTenantsIsNotCollapsed() throws Exception {
+        CountDownLatch entered = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        RequestCollapser<Location> testee = new RequestCollapser<>(0, k -> {
+            singleCalls.incrementAndGet();
+            entered.countDown();
+            await(release);
+            return Optional.of(new Location(TenantHolder.getCurrentTenant()));
+        }, this::bulk);
+
+        Future<Optional<Location>> a = lookup(testee, "A", "LOC");
+        Future<Optional<Location>> b = lookup(testee, "B", "LOC");
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        release.countDown();
+
+        assertEquals("A", a.get(5, TimeUnit.SECONDS).get().asString());
+        assertEquals("B", b.get(5, TimeUnit.SECONDS).get().asString());
+        assertEquals(2, singleCalls.get());
+    }
+
+    public final @Test void testKeysWithinTheWindowAreMergedIntoOneBulkRequest() throws Exception {
+        RequestCollapser<Location> testee = new RequestCollapser<>(WINDOW, k -> {
+            singleCalls.incrementAndGet();
+            return Optional.of(new Location(k));
+        }, this::bulk);
+
+        Future<Optional<Location>> loc1 = lookup(testee, null, "LOC1");
+        Future<Optional<Location>> loc2 = lookup(testee, null, "LOC2");
+        Future<Optional<Location>> loc1Again = lookup(testee, null, "LOC1");
+        Future<Optional<Location>> unknown = lookup(testee, null, "UNKNOWN");
+
+        assertEquals("LOC1", loc1.get(5, TimeUnit.SECONDS).get().asString());
+        assertEquals("LOC2", loc2.get(5, TimeUnit.SECONDS).get().asString());
+        assertEquals("LOC1", loc1Again.get(5, TimeUnit.SECONDS).get().asString());
+        assertFalse(unknown.get(5, TimeUnit.SECONDS).isPresent());
+        assertEquals(1, bulkCalls.size());
+        assertEquals(new HashSet<>(Arrays.asList("LOC1", "LOC2", "UNKNOWN")), new HashSet<>(bulkCalls.get(0)));
+        assertEquals(0, singleCalls.get());
+    }
+
+    public final @Test void testSingleKeyWithinTheWindowUsesTheSingleLookup() throws Exception {
+        RequestCollapser<Location> testee = new RequestCollapser<>(WINDOW, k -> {
+            singleCalls.incrementAndGet();
+            return Optional.of(new Location(k));
+        }, this::bulk);
+
+        assertEquals("LOC", lookup(testee, null, "LOC").get(5, TimeUnit.SECONDS).get().asString());
+        assertEquals(1, singleCalls.get());
+        assertTrue(bulkCalls.isEmpty());
+    }
+
+    public final @Test void testLookupsAfterTheWindowGoIntoTheNextBulkRequest() throws Exception {
+        RequestCollapser<Location> testee = new RequestCollapser<>(WINDOW, k -> {
+            singleCalls.incrementAndGet();
+            return Optional.of(new Location(k));
+        }, this::bulk);
+
+        Future<Optional<Location>> loc1 = lookup(testee, null, "LOC1");
+        Future<Optional<Location>> loc2 = lookup(testee, null, "LOC2");
+        loc1.get(5, TimeUnit.SECONDS);
+        loc2.get(5, TimeUnit.SECONDS);
+        Future<Optional<Location>> loc3 = lookup(testee, null, "LOC3");
+        Future<Optional<Location>> loc4 = lookup(testee, null, "LOC4");
+        loc3.get(5, TimeUnit.SECONDS);
+        loc4.get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, bulkCalls.size());
+        assertEquals(new HashSet<>(Arrays.asList("LOC1", "LOC2")), new HashSet<>(bulkCalls.get(0)));
+        assertEquals(new HashSet<>(Arrays.asList("LOC3", "LOC4")), new HashSet<>(bulkCalls.get(1)));
+    }
+
+    public final @Test void testFailedBulkRequestIsPropagatedToAllWaiters() throws Exception {
+        RequestCollapser<Location> testee = new RequestCollapser<>(WINDOW, k -> Optional.of(new Location(k)), keys -> {
+            bulkCalls.add(keys);
+            throw new ServiceLayerException("Common service down");
+        });
+
+        Future<Optional<Location>> loc1 = lookup(testee, null, "LOC1");
+        Future<Optional<Location>> loc2 = lookup(testee, null, "LOC2");
+
+        assertFailed(loc1);
+        assertFailed(loc2);
+        assertEquals(1, bulkCalls.size());
+    }
+
+    public final @Test void testWindowIsPerTenant() throws Exception {
+        RequestCollapser<Location> testee = new RequestCollapser<>(WINDOW, k -> {
+            singleCalls.incrementAndGet();
+            return Optional.of(new Location(k));
+        }, this::bulk);
+
+        Future<Optional<Location>> a = lookup(testee, "A", "LOC1");
+        Future<Optional<Location>> b = lookup(testee, "B", "LOC2");
+        a.get(5, TimeUnit.SECONDS);
+        b.get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, singleCalls.get());
+        assertTrue(bulkCalls.isEmpty());
+    }
+
+    private static void assertFailed(Future<?> future) throws InterruptedException, TimeoutException {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Expected the lookup to fail");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof ServiceLayerException);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.ameba.Constants;
+import org.ameba.tenancy.TenantHolder;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * A ServiceHeadersTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+public class ServiceHeadersTest {
+
+    private final ServiceHeaders testee = new ServiceHeaders();
+
+    @After
+    public void tearDown() {
+        TenantHolder.destroy();
+    }
+
+    public final @Test void testHeadersWithTenant() {
+        TenantHolder.setCurrentTenant("T1");
+
+        Map<String, String> headers = testee.get();
+
+        assertEquals("T1", headers.get(Constants.HEADER_VALUE_X_TENANT));
+        assertTrue(headers.get("Authorization").startsWith("Basic "));
+    }
+
+    public final @Test void testHeadersWithoutValueAreSkipped() {
+        Map<String, String> headers = testee.get();
+
+        assertFalse(headers.containsKey(Constants.HEADER_VALUE_X_TENANT));
+        assertFalse(headers.containsValue(null));
+        assertTrue(headers.containsKey("Authorization"));
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.ameba.exception.ServiceLayerException;
+import org.ameba.tenancy.TenantHolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * A SnapshotStoreTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+public class SnapshotStoreTest {
+
+    private SnapshotStore testee;
+
+    @Before
+    public void setUp() {
+        testee = new SnapshotStore();
+        ReflectionTestUtils.setField(testee, "maxSize", 2);
+        ReflectionTestUtils.setField(testee, "refreshThreads", 1);
+        testee.init();
+    }
+
+    @After
+    public void tearDown() {
+        testee.destroy();
+        TenantHolder.destroy();
+    }
+
+    public final @Test void testServeLastKnownEntity() {
+        Location location = new Location("LOC");
+        testee.update(Location.class, "LOC", Optional.of(location));
+
+        assertSame(location, testee.serveStale(Location.class, "LOC", Optional::empty).get());
+        assertEquals(1, testee.getStaleLocations());
+        assertEquals(0, testee.getStaleLocationGroups());
+        assertEquals(0, testee.getMissed());
+    }
+
+    public final @Test void testMissWithoutSnapshot() {
+        assertFalse(testee.serveStale(Location.class, "LOC", Optional::empty).isPresent());
+        assertEquals(0, testee.getStaleLocations());
+        assertEquals(1, testee.getMissed());
+    }
+
+    public final @Test void testLookupWithoutResultRemovesSnapshot() {
+        testee.update(LocationGroup.class, "LG", Optional.of(new LocationGroup("LG")));
+        testee.update(LocationGroup.class, "LG", Optional.empty());
+
+        assertEquals(0, testee.getSize());
+        assertFalse(testee.serveStale(LocationGroup.class, "LG", Optional::empty).isPresent());
+    }
+
+    public final @Test void testSnapshotsAreSeparatedByTypeAndTenant() {
+        TenantHolder.setCurrentTenant("A");
+        testee.update(Location.class, "X", Optional.of(new Location("X")));
+        TenantHolder.setCurrentTenant("B");
+
+        assertFalse(testee.serveStale(Location.class, "X", Optional::empty).isPresent());
+        TenantHolder.setCurrentTenant("A");
+        assertFalse(testee.serveStale(LocationGroup.class, "X", Optional::empty).isPresent());
+        assertTrue(testee.serveStale(Location.class, "X", Optional::empty).isPresent());
+    }
+
+    public final @Test void testLeastRecentlyUsedIsEvicted() {
+        Location loc1 = new Location("LOC1");
+        testee.update(Location.class, "LOC1", Optional.of(loc1));
+        testee.update(Location.class, "LOC2", Optional.of(new Location("LOC2")));
+        testee.serveStale(Location.class, "LOC1", () -> Optional.of(loc1));
+        testee.update(Location.class, "LOC3", Optional.of(new Location("LOC3")));
+
+        assertEquals(2, testee.getSize());
+        assertTrue(testee.serveStale(Location.class, "LOC1", () -> Optional.of(loc1)).isPresent());
+        assertFalse(testee.serveStale(Location.class, "LOC2", Optional::empty).isPresent());
+    }
+
+    public final @Test void testRefreshInBackgroundWithTenantOfCaller() throws Exception {
+        TenantHolder.setCurrentTenant("A");
+        testee.update(Location.class, "LOC", Optional.of(new Location("LOC")));
+        Location refreshed = new Location("LOC");
+        CountDownLatch done = new CountDownLatch(1);
+        String[] tenant = new String[1];
+
+        testee.serveStale(Location.class, "LOC", () -> {
+            tenant[0] = TenantHolder.getCurrentTenant();
+            done.countDown();
+            return Optional.of(refreshed);
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals("A", tenant[0]);
+        awaitRefreshed(() -> testee.serveStale(Location.class, "LOC", () -> Optional.of(refreshed)).get() == refreshed);
+    }
+
+    public final @Test void testOnlyOneRefreshPerEntityAtOnce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger refreshes = new AtomicInteger();
+        testee.serveStale(Location.class, "LOC", () -> {
+            refreshes.incrementAndGet();
+            await(release);
+            return Optional.empty();
+        });
+        testee.serveStale(Location.class, "LOC", () -> {
+            refreshes.incrementAndGet();
+            return Optional.empty();
+        });
+        release.countDown();
+
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertEquals(1, refreshes.get());
+    }
+
+    public final @Test void testFailedRefreshIsCounted() throws Exception {
+        testee.serveStale(Location.class, "LOC", () -> {
+            throw new ServiceLayerException("Common service down");
+        });
+
+        awaitRefreshed(() -> testee.getRefreshFailed() == 1);
+    }
+
+    private static void awaitRefreshed(BooleanSupplier condition) throws InterruptedException {
+        long until = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Not refreshed in time", System.currentTimeMillis() < until);
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
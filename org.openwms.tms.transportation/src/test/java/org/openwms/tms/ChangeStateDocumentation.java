@@ -22,18 +22,24 @@
 package org.openwms.tms;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.restdocs.mockmvc.MockMvcRestDocumentation.document;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import javax.persistence.EntityManager;
+import java.util.Arrays;
 import java.util.Optional;
 
 import org.junit.Ignore;
 import org.junit.Test;
+import org.openwms.common.Location;
 import org.openwms.common.TransportUnit;
+import org.openwms.tms.api.ChangeStateVO;
 import org.openwms.tms.api.CreateTransportOrderVO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -333,4 +339,69 @@ public class ChangeStateDocumentation extends DocumentationBase {
                 .andDo(document("to-patch-state-change-a-canceled"))
         ;
     }
+
+    /* ----------------- BULK -------------------*/
+    public
+    @Test
+    void cancellingInBulk() throws Exception {
+        // setup ...
+        CreateTransportOrderVO vo = createTO();
+        postTOAndValidate(vo, NOTLOGGED);
+        CreateTransportOrderVO vo2 = createTO();
+        postTOAndValidate(vo2, NOTLOGGED);
+        ChangeStateVO change = new ChangeStateVO();
+        change.setpKeys(Arrays.asList(vo.getpKey(), vo2.getpKey(), UNKNOWN));
+        change.setState(TransportOrderState.CANCELED.toString());
+
+        // test ...
+        mockMvc.perform(
+                post(TMSConstants.ROOT_ENTITIES + "/state")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(change))
+        )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].changed", is(true)))
+                .andExpect(jsonPath("$[1].changed", is(true)))
+                .andExpect(jsonPath("$[2].changed", is(false)))
+                .andDo(document("to-post-state-change-bulk"))
+        ;
+    }
+
+    public
+    @Test
+    void startingInBulkTheSameTransportUnitTwice() throws Exception {
+        // setup ... two TransportOrders of the same TransportUnit stay INITIALIZED, because the target is not available
+        Location notAvailable = new Location(ERR_LOC_STRING);
+        notAvailable.setIncomingActive(false);
+        CreateTransportOrderVO vo = createTO();
+        given(commonGateway.getLocation(vo.getTarget())).willReturn(Optional.of(notAvailable));
+        postTOAndValidate(vo, NOTLOGGED);
+        CreateTransportOrderVO vo2 = createTO();
+        given(commonGateway.getLocation(vo2.getTarget())).willReturn(Optional.of(notAvailable));
+        postTOAndValidate(vo2, NOTLOGGED);
+        ChangeStateVO change = new ChangeStateVO();
+        change.setpKeys(Arrays.asList(vo.getpKey(), vo2.getpKey(), vo.getpKey(), UNKNOWN));
+        change.setState(TransportOrderState.STARTED.toString());
+
+        // test ... the duplicate is changed once, the second TransportOrder of the TransportUnit and the unknown one fail
+        mockMvc.perform(
+                post(TMSConstants.ROOT_ENTITIES + "/state")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(change))
+        )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].changed", is(true)))
+                .andExpect(jsonPath("$[1].changed", is(false)))
+                .andExpect(jsonPath("$[2].changed", is(false)))
+        ;
+        mockMvc.perform(get(TMSConstants.ROOT_ENTITIES + "/" + vo.getpKey()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("state", is(TransportOrderState.STARTED.toString())))
+        ;
+        mockMvc.perform(get(TMSConstants.ROOT_ENTITIES + "/" + vo2.getpKey()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("state", is(TransportOrderState.INITIALIZED.toString())))
+        ;
+    }
 }
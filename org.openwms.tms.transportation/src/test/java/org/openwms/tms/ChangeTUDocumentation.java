@@ -22,10 +22,13 @@
 package org.openwms.tms;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.CoreMatchers.is;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.willThrow;
 import static org.springframework.restdocs.mockmvc.MockMvcRestDocumentation.document;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.util.Optional;
@@ -35,6 +38,7 @@ import org.junit.Test;
 import org.openwms.common.CommonMessageCodes;
 import org.openwms.common.TransportUnit;
 import org.openwms.tms.api.CreateTransportOrderVO;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MvcResult;
 
@@ -67,6 +71,30 @@ public class ChangeTUDocumentation extends DocumentationBase {
         ;
     }
 
+    public
+    @Test
+    void testTUChangeOfStartedTOReleasesTheFormerTU() throws Exception {
+        // setup ...
+        CreateTransportOrderVO vo = createTO();
+        postTOAndValidate(vo, NOTLOGGED);
+        vo.setBarcode(KNOWN);
+        given(commonGateway.getTransportUnit(KNOWN)).willReturn(Optional.of(new TransportUnit(KNOWN, INIT_LOC, ERR_LOC_STRING)));
+        mockMvc.perform(
+                patch(TMSConstants.ROOT_ENTITIES)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(vo))
+                )
+                .andExpect(status().isNoContent())
+        ;
+
+        // test ... the former TransportUnit is not started anymore, so a new TransportOrder for it can be started
+        MvcResult res = postTOAndValidate(createTO(), NOTLOGGED);
+        mockMvc.perform(get((String) res.getResponse().getHeaderValue(HttpHeaders.LOCATION)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("state", is(TransportOrderState.STARTED.toString())))
+        ;
+    }
+
     public
     @Test
     void testTUChangeUnknownTU() throws Exception {
@@ -22,7 +22,9 @@
 package org.openwms.tms;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.restdocs.mockmvc.MockMvcRestDocumentation.document;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -30,11 +32,14 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 import org.junit.Test;
 import org.openwms.common.Location;
 import org.openwms.tms.api.CreateTransportOrderVO;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.annotation.Rollback;
@@ -52,6 +57,9 @@ import org.springframework.transaction.annotation.Transactional;
  */
 public class CreateTODocumentation extends DocumentationBase {
 
+    @Autowired
+    private TransportOrderRepository repository;
+
     public
     @Test
     void testCreateTO() throws Exception {
@@ -144,4 +152,54 @@ public class CreateTODocumentation extends DocumentationBase {
                 .andReturn()
         ;
     }
+
+    public
+    @Test
+    void testCreateTOsInBulk() throws Exception {
+        CreateTransportOrderVO first = createTO();
+        CreateTransportOrderVO second = createTO();
+        second.setPriority(PriorityLevel.LOWEST.toString());
+        long before = repository.count();
+
+        MvcResult res = mockMvc.perform(post(TMSConstants.ROOT_ENTITIES + "/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Arrays.asList(first, second))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andDo(document("to-create-bulk"))
+                .andReturn();
+
+        List<String> pKeys = Arrays.asList(objectMapper.readValue(res.getResponse().getContentAsString(), String[].class));
+        assertThat(repository.count()).isEqualTo(before + 2);
+        assertThat(pKeys).doesNotHaveDuplicates();
+        assertThat(repository.findByPKey(pKeys.get(0)).get().getPriority()).isEqualTo(PriorityLevel.HIGHEST);
+        assertThat(repository.findByPKey(pKeys.get(1)).get().getPriority()).isEqualTo(PriorityLevel.LOWEST);
+    }
+
+    public
+    @Test
+    void testCreateTOsInBulkWithUnknownTU() throws Exception {
+        CreateTransportOrderVO known = createTO();
+        CreateTransportOrderVO unknown = createTO();
+        unknown.setBarcode(UNKNOWN);
+        given(commonGateway.getTransportUnit(UNKNOWN)).willReturn(Optional.empty());
+
+        MvcResult res = mockMvc.perform(post(TMSConstants.ROOT_ENTITIES + "/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Arrays.asList(known, unknown))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andReturn();
+
+        String[] pKeys = objectMapper.readValue(res.getResponse().getContentAsString(), String[].class);
+        mockMvc.perform(get(TMSConstants.ROOT_ENTITIES + "/" + pKeys[0]))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("state", is(TransportOrderState.STARTED.toString())))
+        ;
+        mockMvc.perform(get(TMSConstants.ROOT_ENTITIES + "/" + pKeys[1]))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("state", is(TransportOrderState.CREATED.toString())))
+                .andExpect(jsonPath("problem.message", containsString(UNKNOWN)))
+        ;
+    }
 }
@@ -22,11 +22,16 @@
 package org.openwms.tms;
 
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.springframework.restdocs.mockmvc.MockMvcRestDocumentation.document;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Before;
@@ -108,6 +113,22 @@ public abstract class DocumentationBase {
                         .withPort(8888))
                 .addFilters(new CharacterEncodingFilter("UTF-8", true))
                 .build();
+
+        // Stubs of the bulk endpoints, backed by the stubbed single lookups
+        given(commonGateway.getTransportUnits(anyCollectionOf(String.class))).willAnswer(i -> bulk((Collection<String>) i.getArguments()[0], commonGateway::getTransportUnit));
+        given(commonGateway.getLocations(anyCollectionOf(String.class))).willAnswer(i -> bulk((Collection<String>) i.getArguments()[0], commonGateway::getLocation));
+        given(commonGateway.getLocationGroups(anyCollectionOf(String.class))).willAnswer(i -> bulk((Collection<String>) i.getArguments()[0], commonGateway::getLocationGroup));
+    }
+
+    private static <T> Map<String, T> bulk(Collection<String> keys, Function<String, Optional<T>> lookup) {
+        Map<String, T> result = new HashMap<>();
+        for (String key : keys) {
+            Optional<T> found = lookup.apply(key);
+            if (found != null && found.isPresent()) {
+                result.put(key, found.get());
+            }
+        }
+        return result;
     }
 
     protected CreateTransportOrderVO createTO() {
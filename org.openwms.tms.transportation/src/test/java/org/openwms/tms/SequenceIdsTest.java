@@ -0,0 +1,73 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * A SequenceIdsTest boots with {@code owms.tms.bulk.sequence-ids} turned on and expects sequence based ids instead of IDENTITY.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@TestPropertySource(properties = "owms.tms.bulk.sequence-ids=true")
+public class SequenceIdsTest {
+
+    @Autowired
+    private EntityManagerFactory emf;
+    @Autowired
+    private TransportOrderRepository repository;
+
+    @Configuration
+    @EntityScan(basePackageClasses = TransportOrder.class)
+    @EnableJpaRepositories(basePackageClasses = TransportOrderRepository.class)
+    static class TestConfig {
+    }
+
+    public final @Test void testSequenceBasedGeneratorIsUsed() {
+        IdentifierGenerator generator = emf.unwrap(SessionFactoryImplementor.class).getEntityPersister(TransportOrder.class.getName()).getIdentifierGenerator();
+        assertTrue("Expected a sequence based generator but was " + generator.getClass().getName(), generator instanceof SequenceStyleGenerator);
+    }
+
+    public final @Test void testIdsAreAssignedBeforeFlush() {
+        TransportOrder transportOrder = repository.save(new TransportOrder("TU1").setTargetLocation("ERR_/0000/0000/0000/0000"));
+        assertNotNull(transportOrder.getPk());
+    }
+}
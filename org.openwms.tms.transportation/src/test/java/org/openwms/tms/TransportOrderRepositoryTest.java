@@ -0,0 +1,122 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * A TransportOrderRepositoryTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+public class TransportOrderRepositoryTest {
+
+    private static final String LOC1 = "ERR_/0000/0000/0000/0001";
+    private static final String LOC2 = "ERR_/0000/0000/0000/0002";
+    private static final String LG1 = "LG1";
+    @Autowired
+    private TransportOrderRepository repository;
+
+    @Configuration
+    @EntityScan(basePackageClasses = TransportOrder.class)
+    @EnableJpaRepositories(basePackageClasses = TransportOrderRepository.class)
+    static class TestConfig {
+    }
+
+    @Before
+    public void setUp() {
+        save(new TransportOrder("TU1").setTargetLocation(LOC1), TransportOrderState.CREATED);
+        save(new TransportOrder("TU2").setTargetLocation(LOC1), TransportOrderState.INITIALIZED);
+        save(new TransportOrder("TU3").setTargetLocation(LOC1), TransportOrderState.INITIALIZED);
+        save(new TransportOrder("TU4").setTargetLocation(LOC1), TransportOrderState.STARTED);
+        save(new TransportOrder("TU5").setTargetLocation(LOC1), TransportOrderState.FINISHED);
+        save(new TransportOrder("TU6").setTargetLocation(LOC2), TransportOrderState.INITIALIZED);
+        save(new TransportOrder("TU7").setTargetLocationGroup(LG1), TransportOrderState.INITIALIZED);
+        save(new TransportOrder("TU8").setTargetLocationGroup(LG1), TransportOrderState.STARTED);
+        save(new TransportOrder("TU9").setTargetLocationGroup(LG1), TransportOrderState.STARTED);
+        repository.flush();
+    }
+
+    private void save(TransportOrder transportOrder, TransportOrderState state) {
+        ReflectionTestUtils.setField(transportOrder, "state", state);
+        repository.save(transportOrder);
+    }
+
+    public final @Test void testCountToLocationPerState() {
+        assertEquals(1, repository.numberOfTransportOrdersToLocation(LOC1, TransportOrderState.CREATED));
+        assertEquals(2, repository.numberOfTransportOrdersToLocation(LOC1, TransportOrderState.INITIALIZED));
+        assertEquals(1, repository.numberOfTransportOrdersToLocation(LOC1, TransportOrderState.STARTED));
+        assertEquals(0, repository.numberOfTransportOrdersToLocation(LOC1, TransportOrderState.CANCELED));
+        assertEquals(1, repository.numberOfTransportOrdersToLocation(LOC2, TransportOrderState.INITIALIZED));
+    }
+
+    public final @Test void testCountToLocationInSeveralStates() {
+        assertEquals(3, repository.numberOfTransportOrdersToLocation(LOC1, TransportOrderState.INITIALIZED, TransportOrderState.STARTED));
+        assertEquals(5, repository.numberOfTransportOrdersToLocation(LOC1, TransportOrderState.values()));
+        assertEquals(0, repository.numberOfTransportOrdersToLocation("UNKN/0000/0000/0000/0000", TransportOrderState.values()));
+    }
+
+    public final @Test void testCountToLocationGroupPerState() {
+        assertEquals(1, repository.numberOfTransportOrdersToLocationGroup(LG1, TransportOrderState.INITIALIZED));
+        assertEquals(2, repository.numberOfTransportOrdersToLocationGroup(LG1, TransportOrderState.STARTED));
+        assertEquals(3, repository.numberOfTransportOrdersToLocationGroup(LG1, TransportOrderState.values()));
+        assertEquals(0, repository.numberOfTransportOrdersToLocationGroup(LG1, TransportOrderState.CREATED));
+    }
+
+    public final @Test void testGroupedCountsMatchSingleCounts() {
+        Map<TransportOrderState, Long> toLoc1 = new EnumMap<>(TransportOrderState.class);
+        for (Object[] row : repository.countByTargetLocationAndState()) {
+            if (LOC1.equals(row[0])) {
+                toLoc1.put((TransportOrderState) row[1], (Long) row[2]);
+            }
+        }
+        for (TransportOrderState state : TransportOrderState.values()) {
+            assertEquals(state.name(), repository.numberOfTransportOrdersToLocation(LOC1, state), toLoc1.getOrDefault(state, 0L).intValue());
+        }
+        Map<TransportOrderState, Long> toLg1 = new EnumMap<>(TransportOrderState.class);
+        for (Object[] row : repository.countByTargetLocationGroupAndState()) {
+            if (LG1.equals(row[0])) {
+                toLg1.put((TransportOrderState) row[1], (Long) row[2]);
+            }
+        }
+        for (TransportOrderState state : TransportOrderState.values()) {
+            assertEquals(state.name(), repository.numberOfTransportOrdersToLocationGroup(LG1, state), toLg1.getOrDefault(state, 0L).intValue());
+        }
+    }
+}
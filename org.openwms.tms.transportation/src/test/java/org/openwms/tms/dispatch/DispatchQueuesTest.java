@@ -0,0 +1,224 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.dispatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openwms.tms.PriorityLevel;
+import org.openwms.tms.TransportOrder;
+import org.openwms.tms.TransportOrderRepository;
+import org.openwms.tms.TransportOrderState;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * A DispatchQueuesTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+public class DispatchQueuesTest {
+
+    private static final String TARGET = "TARGET";
+    private TransportOrderRepository repository;
+    private DispatchQueues testee;
+
+    @Before
+    public void setUp() {
+        repository = mock(TransportOrderRepository.class);
+        testee = new DispatchQueues();
+        ReflectionTestUtils.setField(testee, "repository", repository);
+        ReflectionTestUtils.setField(testee, "transactionManager", mock(PlatformTransactionManager.class));
+    }
+
+    @After
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.unbindResourceIfPossible(testee);
+    }
+
+    private static void complete(int status) {
+        TransactionSynchronizationManager.getSynchronizations().forEach(s -> {
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                s.afterCommit();
+            }
+            s.afterCompletion(status);
+        });
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    /* What another transaction sees. */
+    private Optional<Long> nextForTargetElsewhere() throws InterruptedException {
+        AtomicReference<Optional<Long>> result = new AtomicReference<>();
+        Thread thread = new Thread(() -> result.set(testee.nextForTarget(TARGET)));
+        thread.start();
+        thread.join();
+        return result.get();
+    }
+
+    private static TransportOrder to(long pk, String transportUnitBK, PriorityLevel priority) {
+        TransportOrder to = mock(TransportOrder.class);
+        given(to.getPk()).willReturn(pk);
+        given(to.getTransportUnitBK()).willReturn(transportUnitBK);
+        given(to.getPriority()).willReturn(priority);
+        given(to.getTargetLocationGroup()).willReturn(TARGET);
+        return to;
+    }
+
+    private TransportOrder initialized(long pk, String transportUnitBK, PriorityLevel priority) {
+        TransportOrder to = to(pk, transportUnitBK, priority);
+        testee.onStateChange(to, TransportOrderState.CREATED, TransportOrderState.INITIALIZED);
+        return to;
+    }
+
+    public final @Test void testOrderByPriorityThenPk() {
+        initialized(3, "TU3", PriorityLevel.NORMAL);
+        initialized(2, "TU2", PriorityLevel.NORMAL);
+        initialized(4, "TU4", PriorityLevel.HIGHEST);
+        assertEquals(Optional.of(4L), testee.nextForTarget(TARGET));
+    }
+
+    public final @Test void testStartedTransportUnitIsParked() {
+        TransportOrder first = initialized(1, "TU1", PriorityLevel.HIGHEST);
+        initialized(2, "TU1", PriorityLevel.NORMAL);
+        initialized(3, "TU2", PriorityLevel.LOWEST);
+
+        testee.onStateChange(first, TransportOrderState.INITIALIZED, TransportOrderState.STARTED);
+        assertEquals("TU1 is started, so its queued order must wait", Optional.of(3L), testee.nextForTarget(TARGET));
+        assertFalse(testee.nextForTransportUnit("TU1").isPresent());
+
+        testee.onStateChange(first, TransportOrderState.STARTED, TransportOrderState.FINISHED);
+        assertEquals(Optional.of(2L), testee.nextForTarget(TARGET));
+        assertEquals(Optional.of(2L), testee.nextForTransportUnit("TU1"));
+    }
+
+    public final @Test void testOrderWithoutTransportUnit() {
+        initialized(1, null, PriorityLevel.NORMAL);
+        assertEquals(Optional.of(1L), testee.nextForTarget(TARGET));
+    }
+
+    public final @Test void testReprioritize() {
+        initialized(1, "TU1", PriorityLevel.NORMAL);
+        initialized(2, "TU2", PriorityLevel.NORMAL);
+        testee.reprioritize(to(2, "TU2", PriorityLevel.HIGHEST));
+        assertEquals(Optional.of(2L), testee.nextForTarget(TARGET));
+    }
+
+    public final @Test void testRecheckRemovesStaleEntry() {
+        initialized(1, "TU1", PriorityLevel.HIGHEST);
+        initialized(2, "TU2", PriorityLevel.NORMAL);
+        testee.recheck(1L);
+        assertEquals(Optional.of(2L), testee.nextForTarget(TARGET));
+        assertFalse(testee.nextForTransportUnit("TU1").isPresent());
+    }
+
+    public final @Test void testRecheckAfterTheTransactionKeepsAnEntryFoundThen() {
+        TransportOrder first = initialized(1, "TU1", PriorityLevel.HIGHEST);
+        given(first.getState()).willReturn(TransportOrderState.INITIALIZED);
+        TransactionSynchronizationManager.initSynchronization();
+        testee.recheck(1L);
+        given(repository.findOne(1L)).willReturn(first);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(Optional.of(1L), testee.nextForTarget(TARGET));
+    }
+
+    public final @Test void testChangesAreAppliedAfterCommit() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        initialized(1, "TU1", PriorityLevel.NORMAL);
+        assertEquals("The own transaction sees the change", Optional.of(1L), testee.nextForTarget(TARGET));
+        assertEquals(Optional.of(1L), testee.nextForTransportUnit("TU1"));
+        assertFalse("Not visible before commit", nextForTargetElsewhere().isPresent());
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(Optional.of(1L), nextForTargetElsewhere());
+    }
+
+    public final @Test void testStartWithinTheTransaction() throws Exception {
+        TransportOrder first = initialized(1, "TU1", PriorityLevel.HIGHEST);
+        initialized(2, "TU1", PriorityLevel.NORMAL);
+        initialized(3, "TU2", PriorityLevel.LOWEST);
+        TransactionSynchronizationManager.initSynchronization();
+        testee.onStateChange(first, TransportOrderState.INITIALIZED, TransportOrderState.STARTED);
+        assertEquals(Optional.of(3L), testee.nextForTarget(TARGET));
+        assertFalse(testee.nextForTransportUnit("TU1").isPresent());
+        assertEquals(Optional.of(1L), nextForTargetElsewhere());
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(Optional.of(3L), nextForTargetElsewhere());
+        TransactionSynchronizationManager.initSynchronization();
+        testee.onStateChange(first, TransportOrderState.STARTED, TransportOrderState.FINISHED);
+        assertEquals("Unparked within the transaction", Optional.of(2L), testee.nextForTarget(TARGET));
+        assertEquals(Optional.of(2L), testee.nextForTransportUnit("TU1"));
+    }
+
+    public final @Test void testRollbackDiscardsChanges() throws Exception {
+        initialized(1, "TU1", PriorityLevel.NORMAL);
+        TransactionSynchronizationManager.initSynchronization();
+        initialized(2, "TU2", PriorityLevel.HIGHEST);
+        testee.reprioritize(to(1, "TU1", PriorityLevel.HIGHEST));
+        assertEquals(Optional.of(1L), testee.nextForTarget(TARGET));
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertEquals(Optional.of(1L), testee.nextForTarget(TARGET));
+        initialized(3, "TU3", PriorityLevel.HIGH);
+        assertEquals("TransportOrder 1 still has its former priority", Optional.of(3L), testee.nextForTarget(TARGET));
+    }
+
+    public final @Test void testReconcileParksStartedTransportUnits() {
+        given(repository.findByState(TransportOrderState.STARTED)).willReturn(Collections.singletonList(to(1, "TU1", PriorityLevel.NORMAL)));
+        given(repository.findByState(TransportOrderState.INITIALIZED)).willReturn(Arrays.asList(
+                to(2, "TU1", PriorityLevel.HIGHEST), to(3, "TU2", PriorityLevel.NORMAL)));
+        testee.reconcile();
+        assertEquals(Optional.of(3L), testee.nextForTarget(TARGET));
+        assertFalse(testee.nextForTransportUnit("TU1").isPresent());
+    }
+
+    public final @Test void testReconcileReplaysChangesCommittedWhileLoading() {
+        TransportOrder stale = to(1, "TU1", PriorityLevel.HIGHEST);
+        given(repository.findByState(TransportOrderState.STARTED)).willReturn(Collections.emptyList());
+        willAnswer(i -> {
+            // Committed after the database was read
+            testee.onStateChange(stale, TransportOrderState.INITIALIZED, TransportOrderState.FINISHED);
+            initialized(2, "TU2", PriorityLevel.NORMAL);
+            return Collections.singletonList(stale);
+        }).given(repository).findByState(TransportOrderState.INITIALIZED);
+        testee.reconcile();
+        assertEquals(Optional.of(2L), testee.nextForTarget(TARGET));
+        assertFalse(testee.nextForTransportUnit("TU1").isPresent());
+    }
+}
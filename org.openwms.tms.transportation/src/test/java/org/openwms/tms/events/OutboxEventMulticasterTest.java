@@ -0,0 +1,127 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.openwms.tms.TransportServiceBulkEvent;
+import org.openwms.tms.TransportServiceEvent;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * A OutboxEventMulticasterTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+public class OutboxEventMulticasterTest {
+
+    private final List<ApplicationEvent> received = new ArrayList<>();
+    private OutboxEventRepository repository;
+    private OutboxEventMulticaster testee;
+
+    @Before
+    public void setUp() {
+        repository = mock(OutboxEventRepository.class);
+        BeanFactory beanFactory = mock(BeanFactory.class);
+        given(beanFactory.getBean(OutboxEventRepository.class)).willReturn(repository);
+        testee = new OutboxEventMulticaster();
+        testee.setBeanFactory(beanFactory);
+        testee.addApplicationListener(received::add);
+    }
+
+    @After
+    public void tearDown() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    private static TransportServiceBulkEvent bulkEvent() {
+        Map<Long, String> transportUnits = new LinkedHashMap<>();
+        transportUnits.put(1L, "TU1");
+        transportUnits.put(2L, "TU2");
+        return new TransportServiceBulkEvent(TransportServiceEvent.TYPE.TRANSPORT_FINISHED, transportUnits);
+    }
+
+    public final @Test void testEventIsStoredWithinTransaction() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        testee.multicastEvent(new TransportServiceEvent(1L, TransportServiceEvent.TYPE.STARTED, "TU1"));
+        verify(repository).save(any(OutboxEvent.class));
+        assertTrue(received.isEmpty());
+    }
+
+    public final @Test void testBulkEventIsStoredOnce() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransportServiceBulkEvent event = bulkEvent();
+        testee.multicastEvent(event);
+
+        ArgumentCaptor<OutboxEvent> stored = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(repository).save(stored.capture());
+        assertEquals(new LinkedHashSet<>(Arrays.asList("TU1", "TU2")), stored.getValue().getOrderingKeys());
+        TransportServiceBulkEvent restored = (TransportServiceBulkEvent) stored.getValue().toEvent();
+        assertEquals(TransportServiceEvent.TYPE.TRANSPORT_FINISHED, restored.getType());
+        assertEquals("In the original order", new ArrayList<>(event.getTransportUnits().entrySet()), new ArrayList<>(restored.getTransportUnits().entrySet()));
+        assertTrue("Listeners are called when delivered", received.isEmpty());
+    }
+
+    public final @Test void testEmptyBulkEventIsNotStored() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        testee.multicastEvent(new TransportServiceBulkEvent(TransportServiceEvent.TYPE.TRANSPORT_CREATED, new LinkedHashMap<>()));
+        verify(repository, never()).save(any(OutboxEvent.class));
+        assertTrue(received.isEmpty());
+    }
+
+    public final @Test void testSingleEventIsRestored() {
+        OutboxEvent stored = new OutboxEvent(new TransportServiceEvent(1L, TransportServiceEvent.TYPE.STARTED, "TU1"));
+        TransportServiceEvent restored = (TransportServiceEvent) stored.toEvent();
+        assertEquals(1L, restored.getSource());
+        assertEquals("TU1", restored.getTransportUnitBK());
+        assertEquals(Collections.singleton("TU1"), stored.getOrderingKeys());
+    }
+
+    public final @Test void testBulkEventWithoutTransactionIsMulticast() {
+        TransportServiceBulkEvent event = bulkEvent();
+        testee.multicastEvent(event);
+        verify(repository, never()).save(any(OutboxEvent.class));
+        assertEquals(1, received.size());
+        assertTrue(received.get(0) == event);
+    }
+}
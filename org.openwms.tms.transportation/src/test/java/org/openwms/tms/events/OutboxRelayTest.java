@@ -0,0 +1,321 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openwms.tms.TransportServiceBulkEvent;
+import org.openwms.tms.TransportServiceEvent;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * A OutboxRelayTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+public class OutboxRelayTest {
+
+    private OutboxEventRepository repository;
+    private OutboxEventMulticaster multicaster;
+    private OutboxRelay testee;
+
+    @Before
+    public void setUp() {
+        repository = mock(OutboxEventRepository.class);
+        multicaster = mock(OutboxEventMulticaster.class);
+        testee = new OutboxRelay();
+        ReflectionTestUtils.setField(testee, "repository", repository);
+        ReflectionTestUtils.setField(testee, "multicaster", multicaster);
+        ReflectionTestUtils.setField(testee, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(testee, "batchSize", 100);
+        ReflectionTestUtils.setField(testee, "maxAttempts", 5);
+        testee.init();
+    }
+
+    private OutboxRelay relay(OutboxEventRepository repository, int maxAttempts) {
+        OutboxRelay relay = new OutboxRelay();
+        ReflectionTestUtils.setField(relay, "repository", repository);
+        ReflectionTestUtils.setField(relay, "multicaster", multicaster);
+        ReflectionTestUtils.setField(relay, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(relay, "batchSize", 100);
+        ReflectionTestUtils.setField(relay, "maxAttempts", maxAttempts);
+        relay.init();
+        return relay;
+    }
+
+    private OutboxEvent pending(long pk, String transportUnitBK, boolean lockable) {
+        OutboxEvent event = mock(OutboxEvent.class);
+        given(event.getPk()).willReturn(pk);
+        given(event.getOrderingKeys()).willReturn(Collections.singleton(transportUnitBK));
+        given(event.toEvent()).willReturn(new TransportServiceEvent(pk, TransportServiceEvent.TYPE.STARTED, transportUnitBK));
+        given(repository.findAndLock(pk)).willReturn(lockable ? Optional.of(event) : Optional.empty());
+        return event;
+    }
+
+    public final @Test void testDeliverAndRemove() {
+        OutboxEvent first = pending(1, "TU1", true);
+        OutboxEvent second = pending(2, "TU2", true);
+        given(repository.findPending(anyInt(), any(Pageable.class))).willReturn(Arrays.asList(first, second));
+
+        ApplicationEvent event = first.toEvent();
+
+        testee.relay();
+
+        verify(multicaster).deliver(event);
+        verify(repository).delete(first);
+        verify(repository).delete(second);
+        assertEquals(2, testee.getDelivered());
+    }
+
+    public final @Test void testFailureHoldsBackLaterEventsOfTheTransportUnit() {
+        OutboxEvent failing = pending(1, "TU1", true);
+        OutboxEvent later = pending(2, "TU1", true);
+        OutboxEvent other = pending(3, "TU2", true);
+        given(repository.findPending(anyInt(), any(Pageable.class))).willReturn(Arrays.asList(failing, later, other));
+        ApplicationEvent event = failing.toEvent();
+        willThrow(new IllegalStateException("listener failed")).given(multicaster).deliver(event);
+
+        testee.relay();
+
+        verify(repository).incrementAttempts(1L);
+        verify(repository, never()).delete(failing);
+        verify(repository, never()).findAndLock(2L);
+        verify(repository).delete(other);
+        assertEquals(1, testee.getFailed());
+        assertEquals(1, testee.getDelivered());
+    }
+
+    public final @Test void testBulkEventIsDeliveredOnce() {
+        Map<Long, String> transportUnits = new LinkedHashMap<>();
+        transportUnits.put(10L, "TU1");
+        transportUnits.put(11L, "TU2");
+        TransportServiceBulkEvent bulk = new TransportServiceBulkEvent(TransportServiceEvent.TYPE.INITIALIZED, transportUnits);
+        OutboxEvent event = mock(OutboxEvent.class);
+        given(event.getPk()).willReturn(1L);
+        given(event.getOrderingKeys()).willReturn(new LinkedHashSet<>(transportUnits.values()));
+        given(event.toEvent()).willReturn(bulk);
+        given(repository.findAndLock(1L)).willReturn(Optional.of(event));
+        given(repository.findPending(anyInt(), any(Pageable.class))).willReturn(Collections.singletonList(event));
+
+        testee.relay();
+
+        verify(multicaster).deliver(bulk);
+        verify(repository).delete(event);
+        assertEquals(1, testee.getDelivered());
+    }
+
+    public final @Test void testFailedEventHoldsBackBulkEventAndAllItsTransportUnits() {
+        OutboxEvent failing = pending(1, "TU1", true);
+        OutboxEvent bulk = pending(2, "TU1", true);
+        given(bulk.getOrderingKeys()).willReturn(new LinkedHashSet<>(Arrays.asList("TU1", "TU2")));
+        OutboxEvent later = pending(3, "TU2", true);
+        OutboxEvent other = pending(4, "TU3", true);
+        given(repository.findPending(anyInt(), any(Pageable.class))).willReturn(Arrays.asList(failing, bulk, later, other));
+        willThrow(new IllegalStateException("listener failed")).given(multicaster).deliver(failing.toEvent());
+
+        testee.relay();
+
+        verify(repository, never()).findAndLock(2L);
+        verify(repository, never()).findAndLock(3L);
+        verify(repository).delete(other);
+        assertEquals(1, testee.getDelivered());
+    }
+
+    public final @Test void testEventLockedByAnotherNodeHoldsBackLaterEvents() {
+        OutboxEvent locked = pending(1, "TU1", false);
+        OutboxEvent later = pending(2, "TU1", true);
+        given(repository.findPending(anyInt(), any(Pageable.class))).willReturn(Arrays.asList(locked, later));
+
+        testee.relay();
+
+        verify(repository, never()).findAndLock(2L);
+        verify(repository, never()).delete(later);
+        assertEquals(0, testee.getDelivered());
+        assertEquals(0, testee.getFailed());
+    }
+
+    public final @Test void testFailedEventIsRedeliveredUntilMaxAttempts() {
+        Outbox outbox = new Outbox();
+        outbox.add(1, "TU1");
+        outbox.add(2, "TU1");
+        OutboxRelay relay = relay(outbox.repository, 3);
+        List<Long> delivered = new ArrayList<>();
+        willAnswer(invocation -> {
+            TransportServiceEvent event = (TransportServiceEvent) invocation.getArguments()[0];
+            if (event.getSource().equals(1L)) {
+                throw new IllegalStateException("listener failed");
+            }
+            delivered.add((Long) event.getSource());
+            return null;
+        }).given(multicaster).deliver(any(TransportServiceEvent.class));
+
+        for (int i = 0; i < 3; i++) {
+            relay.relay();
+            assertEquals("The later event of the TransportUnit waits", Collections.emptyList(), delivered);
+            assertEquals(i + 1, outbox.attempts.get(1L).intValue());
+        }
+        relay.relay();
+        relay.relay();
+
+        assertEquals(3, relay.getFailed());
+        assertEquals("Not delivered anymore after max-attempts, the later event follows", Collections.singletonList(2L), delivered);
+        assertTrue("Kept for manual inspection", outbox.events.containsKey(1L));
+    }
+
+    public final @Test void testFailedEventIsDeliveredOnRetry() {
+        Outbox outbox = new Outbox();
+        outbox.add(1, "TU1");
+        OutboxRelay relay = relay(outbox.repository, 3);
+        willThrow(new IllegalStateException("listener failed")).willAnswer(invocation -> null).given(multicaster).deliver(any(TransportServiceEvent.class));
+
+        relay.relay();
+        relay.relay();
+
+        assertEquals(1, relay.getFailed());
+        assertEquals(1, relay.getDelivered());
+        assertTrue(outbox.events.isEmpty());
+    }
+
+    public final @Test void testTwoRelaysClaimEachEventOnce() throws Exception {
+        Outbox outbox = new Outbox();
+        outbox.add(1, "TU1");
+        outbox.add(2, "TU1");
+        outbox.add(3, "TU2");
+        OutboxRelay first = relay(outbox.repository, 5);
+        OutboxRelay second = relay(outbox.repository, 5);
+        CountDownLatch delivering = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Object> delivered = Collections.synchronizedList(new ArrayList<>());
+        willAnswer(invocation -> {
+            TransportServiceEvent event = (TransportServiceEvent) invocation.getArguments()[0];
+            if (event.getSource().equals(1L)) {
+                delivering.countDown();
+                release.await(10, TimeUnit.SECONDS);
+            }
+            delivered.add(event.getSource());
+            return null;
+        }).given(multicaster).deliver(any(TransportServiceEvent.class));
+
+        CompletableFuture<Void> blocked = CompletableFuture.runAsync(first::relay);
+        assertTrue(delivering.await(10, TimeUnit.SECONDS));
+
+        // Event 1 is claimed by the first relay, so the second one skips it and all later events of TU1
+        second.relay();
+        assertEquals(Collections.singletonList(3L), delivered);
+
+        release.countDown();
+        blocked.get(10, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList(3L, 1L, 2L), delivered);
+        assertEquals(2, first.getDelivered());
+        assertEquals(1, second.getDelivered());
+        assertTrue(outbox.events.isEmpty());
+    }
+
+    /**
+     * An in-memory outbox table. A claimed row is skipped by all other threads until it is deleted or its attempts are incremented,
+     * like a row lock with {@code SKIP LOCKED}, that is not supported by the embedded database.
+     */
+    private static class Outbox {
+
+        private final Map<Long, OutboxEvent> events = Collections.synchronizedMap(new TreeMap<>());
+        private final Map<Long, Integer> attempts = new HashMap<>();
+        private final Map<Long, Thread> claims = new HashMap<>();
+        private final OutboxEventRepository repository = mock(OutboxEventRepository.class);
+
+        Outbox() {
+            given(repository.findPending(anyInt(), any(Pageable.class))).willAnswer(invocation -> {
+                int maxAttempts = (Integer) invocation.getArguments()[0];
+                synchronized (this) {
+                    return events.values().stream().filter(e -> attempts.get(e.getPk()) < maxAttempts).collect(Collectors.toList());
+                }
+            });
+            given(repository.findAndLock(anyLong())).willAnswer(invocation -> {
+                Long pk = (Long) invocation.getArguments()[0];
+                synchronized (this) {
+                    Thread owner = claims.get(pk);
+                    if (!events.containsKey(pk) || (owner != null && owner != Thread.currentThread())) {
+                        return Optional.empty();
+                    }
+                    claims.put(pk, Thread.currentThread());
+                    return Optional.of(events.get(pk));
+                }
+            });
+            given(repository.incrementAttempts(anyLong())).willAnswer(invocation -> {
+                Long pk = (Long) invocation.getArguments()[0];
+                synchronized (this) {
+                    attempts.merge(pk, 1, Integer::sum);
+                    claims.remove(pk);
+                }
+                return 1;
+            });
+            willAnswer(invocation -> {
+                OutboxEvent event = (OutboxEvent) invocation.getArguments()[0];
+                synchronized (this) {
+                    events.remove(event.getPk());
+                    claims.remove(event.getPk());
+                }
+                return null;
+            }).given(repository).delete(any(OutboxEvent.class));
+        }
+
+        void add(long pk, String transportUnitBK) {
+            OutboxEvent event = mock(OutboxEvent.class);
+            given(event.getPk()).willReturn(pk);
+            given(event.getOrderingKeys()).willReturn(Collections.singleton(transportUnitBK));
+            given(event.getAttempts()).willAnswer(invocation -> attempts.get(pk));
+            given(event.toEvent()).willAnswer(invocation -> new TransportServiceEvent(pk, TransportServiceEvent.TYPE.STARTED, transportUnitBK));
+            attempts.put(pk, 0);
+            events.put(pk, event);
+        }
+    }
+}
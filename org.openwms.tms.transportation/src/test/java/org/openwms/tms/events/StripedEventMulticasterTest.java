@@ -0,0 +1,263 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.ameba.exception.ServiceLayerException;
+import org.junit.After;
+import org.junit.Test;
+import org.openwms.tms.TransportServiceBulkEvent;
+import org.openwms.tms.TransportServiceEvent;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * A StripedEventMulticasterTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+public class StripedEventMulticasterTest {
+
+    private final List<Object> processed = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch blocked = new CountDownLatch(1);
+    private StripedEventMulticaster testee;
+
+    private void createTestee(int stripes, int queueCapacity, long offerTimeout, boolean blocking) {
+        testee = new StripedEventMulticaster(stripes, queueCapacity, offerTimeout);
+        BeanFactory beanFactory = mock(BeanFactory.class);
+        given(beanFactory.getBean(PlatformTransactionManager.class)).willReturn(mock(PlatformTransactionManager.class));
+        testee.setBeanFactory(beanFactory);
+        testee.addApplicationListener((ApplicationEvent event) -> {
+            if (blocking) {
+                blocked.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            processed.add(event.getSource());
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        release.countDown();
+        testee.destroy();
+    }
+
+    private static TransportServiceEvent event(long pk, String transportUnitBK) {
+        return new TransportServiceEvent(pk, TransportServiceEvent.TYPE.STARTED, transportUnitBK);
+    }
+
+    private void awaitProcessed(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (processed.size() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    public final @Test void testOrderPerTransportUnit() throws Exception {
+        createTestee(4, 10, 5000, false);
+        List<Long> expected = new ArrayList<>();
+        for (long i = 0; i < 500; i++) {
+            testee.multicastEvent(event(i, "TU"));
+            expected.add(i);
+        }
+        awaitProcessed(500);
+        assertEquals(expected, processed);
+        assertEquals(500, testee.getSubmitted());
+        assertEquals(0, testee.getRejected());
+    }
+
+    public final @Test void testFullQueueBlocksThePublisher() throws Exception {
+        createTestee(1, 1, 5000, true);
+        testee.multicastEvent(event(1, "TU"));
+        blocked.await(10, TimeUnit.SECONDS);
+        testee.multicastEvent(event(2, "TU"));
+
+        CompletableFuture<Void> publisher = CompletableFuture.runAsync(() -> testee.multicastEvent(event(3, "TU")));
+        Thread.sleep(100);
+        assertTrue("Publisher must wait for capacity", !publisher.isDone());
+        assertTrue("No event may be processed on the publishing thread", processed.isEmpty());
+
+        release.countDown();
+        publisher.get(10, TimeUnit.SECONDS);
+        awaitProcessed(3);
+        assertEquals(Arrays.asList(1L, 2L, 3L), processed);
+        assertEquals(0, testee.getRejected());
+    }
+
+    public final @Test void testFullQueueRejectsAfterTimeout() throws Exception {
+        createTestee(1, 1, 100, true);
+        testee.multicastEvent(event(1, "TU"));
+        blocked.await(10, TimeUnit.SECONDS);
+        testee.multicastEvent(event(2, "TU"));
+        try {
+            testee.multicastEvent(event(3, "TU"));
+            fail("Expected to reject the event when the queue stays full");
+        } catch (ServiceLayerException sle) {
+            // expected
+        }
+        assertEquals(1, testee.getRejected());
+
+        release.countDown();
+        awaitProcessed(2);
+        Thread.sleep(100);
+        assertEquals(Arrays.asList(1L, 2L), processed);
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach(s -> s.afterCompletion(status));
+    }
+
+    public final @Test void testFullQueueRejectsBeforeCommit() throws Exception {
+        createTestee(1, 1, 100, true);
+        testee.multicastEvent(event(1, "TU"));
+        blocked.await(10, TimeUnit.SECONDS);
+        TransactionSynchronizationManager.initSynchronization();
+        testee.multicastEvent(event(2, "TU"));
+        try {
+            testee.multicastEvent(event(3, "TU"));
+            fail("Expected to reject the event while the transaction is still active");
+        } catch (ServiceLayerException sle) {
+            // expected
+        }
+        assertEquals(1, testee.getRejected());
+        assertEquals("Only the accepted event waits for the commit", 1, TransactionSynchronizationManager.getSynchronizations().size());
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        release.countDown();
+        awaitProcessed(2);
+        assertEquals(Arrays.asList(1L, 2L), processed);
+    }
+
+    public final @Test void testRollbackGivesTheSlotBack() throws Exception {
+        createTestee(1, 1, 100, true);
+        testee.multicastEvent(event(1, "TU"));
+        blocked.await(10, TimeUnit.SECONDS);
+        TransactionSynchronizationManager.initSynchronization();
+        testee.multicastEvent(event(2, "TU"));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        testee.multicastEvent(event(3, "TU"));
+        release.countDown();
+        awaitProcessed(2);
+        Thread.sleep(100);
+        assertEquals(Arrays.asList(1L, 3L), processed);
+        assertEquals(0, testee.getRejected());
+    }
+
+    public final @Test void testNoExceptionAfterCommit() throws Exception {
+        createTestee(1, 1, 100, false);
+        TransactionSynchronizationManager.initSynchronization();
+        testee.multicastEvent(event(1, "TU"));
+        testee.destroy();
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(1, testee.getRejected());
+        assertEquals(0, testee.getSubmitted());
+        assertTrue(processed.isEmpty());
+    }
+
+    private static TransportServiceBulkEvent bulkEvent() {
+        Map<Long, String> transportUnits = new LinkedHashMap<>();
+        transportUnits.put(1L, "TU1");
+        transportUnits.put(2L, "TU2");
+        transportUnits.put(3L, "TU1");
+        return new TransportServiceBulkEvent(TransportServiceEvent.TYPE.TRANSPORT_CANCELED, transportUnits);
+    }
+
+    public final @Test void testBulkEventWithinOneStripeIsDispatchedOnce() throws Exception {
+        createTestee(1, 10, 5000, false);
+        testee.multicastEvent(bulkEvent());
+        awaitProcessed(1);
+        Thread.sleep(100);
+        assertEquals("The bulk event as it is", Collections.singletonList(Arrays.asList(1L, 2L, 3L)), processed);
+        assertEquals(1, testee.getSubmitted());
+    }
+
+    @SuppressWarnings("unchecked")
+    public final @Test void testBulkEventIsSplitPerStripe() throws Exception {
+        createTestee(64, 10, 5000, false);
+        testee.multicastEvent(bulkEvent());
+        awaitProcessed((int) testee.getSubmitted());
+        Thread.sleep(100);
+        List<Long> all = new ArrayList<>();
+        processed.forEach(source -> all.addAll((List<Long>) source));
+        all.sort(null);
+        assertEquals("Bulk events only, each TransportOrder once", Arrays.asList(1L, 2L, 3L), all);
+        assertTrue("Events of TU1 stay together and keep their order",
+                processed.stream().anyMatch(source -> ((List<Long>) source).indexOf(1L) >= 0 && ((List<Long>) source).indexOf(1L) < ((List<Long>) source).indexOf(3L)));
+        assertEquals(processed.size(), testee.getSubmitted());
+    }
+
+    public final @Test void testBulkEventRejectedAsAWhole() throws Exception {
+        createTestee(1, 1, 100, true);
+        testee.multicastEvent(event(1, "TU"));
+        blocked.await(10, TimeUnit.SECONDS);
+        TransactionSynchronizationManager.initSynchronization();
+        testee.multicastEvent(event(2, "TU"));
+        try {
+            testee.multicastEvent(bulkEvent());
+            fail("Expected to reject the bulk event while the transaction is still active");
+        } catch (ServiceLayerException sle) {
+            // expected
+        }
+        assertEquals(1, testee.getRejected());
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        testee.multicastEvent(bulkEvent());
+        release.countDown();
+        awaitProcessed(2);
+        Thread.sleep(100);
+        assertEquals(Arrays.asList(1L, Arrays.asList(1L, 2L, 3L)), processed);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openwms.common.Target;
+import org.openwms.tms.TargetHandler;
+import org.openwms.tms.TargetResolver;
+import org.openwms.tms.TransportOrderState;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * A TransportationServiceImplTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+public class TransportationServiceImplTest {
+
+    private static final String TARGET = "TARGET";
+    private TargetHandler<Target> locationHandler;
+    private TargetHandler<Target> locationGroupHandler;
+    private Target location;
+    private Target locationGroup;
+    private TransportationServiceImpl testee;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        location = mock(Target.class);
+        locationGroup = mock(Target.class);
+        locationHandler = mock(TargetHandler.class);
+        locationGroupHandler = mock(TargetHandler.class);
+        testee = new TransportationServiceImpl();
+        ReflectionTestUtils.setField(testee, "targetResolvers", Arrays.asList(
+                resolver(location, locationHandler), resolver(locationGroup, locationGroupHandler), resolver(null, mock(TargetHandler.class))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TargetResolver<Target> resolver(Target target, TargetHandler<Target> handler) {
+        TargetResolver<Target> resolver = mock(TargetResolver.class);
+        given(resolver.resolve(TARGET)).willReturn(Optional.ofNullable(target));
+        given(resolver.getHandler()).willReturn(handler);
+        return resolver;
+    }
+
+    public final @Test void testCountsOfAllResolvedTargetsAreSummedUp() {
+        given(locationHandler.getNoTOToTarget(location, TransportOrderState.INITIALIZED)).willReturn(2);
+        given(locationGroupHandler.getNoTOToTarget(locationGroup, TransportOrderState.INITIALIZED)).willReturn(3);
+
+        assertEquals(5, testee.getNoTransportOrdersToTarget(TARGET, TransportOrderState.INITIALIZED.name()));
+    }
+
+    public final @Test void testAllStatesAreCountedWithoutStates() {
+        given(locationHandler.getNoTOToTarget(location, TransportOrderState.values())).willReturn(4);
+        given(locationGroupHandler.getNoTOToTarget(locationGroup, TransportOrderState.values())).willReturn(1);
+
+        assertEquals(5, testee.getNoTransportOrdersToTarget(TARGET));
+        verify(locationHandler).getNoTOToTarget(location, TransportOrderState.values());
+    }
+}
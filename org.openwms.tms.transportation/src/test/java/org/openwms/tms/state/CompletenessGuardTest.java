@@ -0,0 +1,72 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.state;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.openwms.tms.StateChangeException;
+import org.openwms.tms.TransportOrder;
+import org.openwms.tms.TransportOrderState;
+
+/**
+ * A CompletenessGuardTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+public class CompletenessGuardTest {
+
+    private static final String LOC = "ERR_/0000/0000/0000/0000";
+    private final CompletenessGuard testee = new CompletenessGuard();
+
+    private void assertRejected(TransportOrder transportOrder) {
+        try {
+            testee.check(transportOrder, TransportOrderState.INITIALIZED);
+            fail("Expected to reject the incomplete TransportOrder");
+        } catch (StateChangeException sce) {
+            // expected
+        }
+    }
+
+    public final @Test void testSupportsLeavingCreatedOnly() {
+        for (TransportOrderState from : TransportOrderState.values()) {
+            for (TransportOrderState to : TransportOrderState.values()) {
+                assertEquals(from + " -> " + to, from == TransportOrderState.CREATED, testee.supports(from, to));
+            }
+        }
+    }
+
+    public final @Test void testComplete() {
+        testee.check(new TransportOrder("TU1").setTargetLocation(LOC), TransportOrderState.INITIALIZED);
+        testee.check(new TransportOrder("TU1").setTargetLocationGroup("LG1"), TransportOrderState.INITIALIZED);
+    }
+
+    public final @Test void testMissingTransportUnit() {
+        assertRejected(new TransportOrder(null).setTargetLocation(LOC));
+        assertRejected(new TransportOrder("").setTargetLocation(LOC));
+    }
+
+    public final @Test void testMissingTarget() {
+        assertRejected(new TransportOrder("TU1"));
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.state;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.openwms.common.CommonGateway;
+import org.openwms.common.Location;
+import org.openwms.common.TransportUnit;
+import org.openwms.tms.Message;
+import org.openwms.tms.StartedConcurrentlyException;
+import org.openwms.tms.TransportOrder;
+import org.openwms.tms.TransportOrderRepository;
+import org.openwms.tms.TransportOrderState;
+import org.openwms.tms.TransportServiceBulkEvent;
+import org.openwms.tms.TransportServiceEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * A InitializerTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+public class InitializerTest {
+
+    private TransportOrderRepository repository;
+    private CommonGateway commonGateway;
+    private ApplicationContext ctx;
+    private Initializer testee;
+
+    @Before
+    public void setUp() {
+        repository = mock(TransportOrderRepository.class);
+        commonGateway = mock(CommonGateway.class);
+        ctx = mock(ApplicationContext.class);
+        testee = new Initializer();
+        ReflectionTestUtils.setField(testee, "repository", repository);
+        ReflectionTestUtils.setField(testee, "commonGateway", commonGateway);
+        ReflectionTestUtils.setField(testee, "ctx", ctx);
+    }
+
+    private static TransportOrder created(long pk, String transportUnitBK) {
+        TransportOrder transportOrder = mock(TransportOrder.class);
+        given(transportOrder.getPk()).willReturn(pk);
+        given(transportOrder.getTransportUnitBK()).willReturn(transportUnitBK);
+        given(transportOrder.getState()).willReturn(TransportOrderState.CREATED);
+        return transportOrder;
+    }
+
+    private static TransportUnit transportUnit(String barcode) {
+        return new TransportUnit(barcode, new Location("ERR_/0000/0000/0000/0000"), null);
+    }
+
+    private static TransportServiceBulkEvent created(TransportOrder... transportOrders) {
+        Map<Long, String> transportUnits = new LinkedHashMap<>();
+        Arrays.stream(transportOrders).forEach(to -> transportUnits.put(to.getPk(), to.getTransportUnitBK()));
+        return new TransportServiceBulkEvent(TransportServiceEvent.TYPE.TRANSPORT_CREATED, transportUnits);
+    }
+
+    public final @Test void testTransportUnitsAreRequestedOnce() {
+        TransportOrder first = created(1, "TU1");
+        TransportOrder second = created(2, "TU1");
+        TransportOrder third = created(3, "TU2");
+        given(repository.findByTransportUnitBKsAndState(anyCollectionOf(String.class), eq(TransportOrderState.CREATED)))
+                .willReturn(Arrays.asList(first, second, third));
+        Map<String, TransportUnit> transportUnits = new HashMap<>();
+        transportUnits.put("TU1", transportUnit("TU1"));
+        transportUnits.put("TU2", transportUnit("TU2"));
+        given(commonGateway.getTransportUnits(anyCollectionOf(String.class))).willReturn(transportUnits);
+
+        testee.onBulkEvent(created(first, second, third));
+
+        verify(commonGateway, times(1)).getTransportUnits(new LinkedHashSet<>(Arrays.asList("TU1", "TU2")));
+        verify(commonGateway, never()).getTransportUnit(anyString());
+        verify(first).changeState(TransportOrderState.INITIALIZED);
+        verify(second).changeState(TransportOrderState.INITIALIZED);
+        verify(third).changeState(TransportOrderState.INITIALIZED);
+        ArgumentCaptor<TransportServiceBulkEvent> published = ArgumentCaptor.forClass(TransportServiceBulkEvent.class);
+        verify(ctx).publishEvent(published.capture());
+        assertEquals(TransportServiceEvent.TYPE.INITIALIZED, published.getValue().getType());
+        assertEquals(Arrays.asList(1L, 2L, 3L), new ArrayList<>(published.getValue().getTransportUnits().keySet()));
+    }
+
+    public final @Test void testUnknownTransportUnitLeavesOrderCreated() {
+        TransportOrder known = created(1, "TU1");
+        TransportOrder unknown = created(2, "TU2");
+        given(repository.findByTransportUnitBKsAndState(anyCollectionOf(String.class), eq(TransportOrderState.CREATED)))
+                .willReturn(Arrays.asList(known, unknown));
+        given(commonGateway.getTransportUnits(anyCollectionOf(String.class))).willReturn(Collections.singletonMap("TU1", transportUnit("TU1")));
+
+        testee.onBulkEvent(created(known, unknown));
+
+        verify(commonGateway, times(1)).getTransportUnits(anyCollectionOf(String.class));
+        verify(unknown, never()).changeState(any(TransportOrderState.class));
+        verify(unknown).setProblem(any(Message.class));
+        ArgumentCaptor<TransportServiceBulkEvent> published = ArgumentCaptor.forClass(TransportServiceBulkEvent.class);
+        verify(ctx).publishEvent(published.capture());
+        assertEquals(Collections.singleton(1L), published.getValue().getTransportUnits().keySet());
+    }
+
+    @SuppressWarnings("unchecked")
+    public final @Test void testNothingToInitialize() {
+        given(repository.findByTransportUnitBKsAndState(anyCollectionOf(String.class), eq(TransportOrderState.CREATED))).willReturn(Collections.emptyList());
+
+        testee.onBulkEvent(new TransportServiceBulkEvent(TransportServiceEvent.TYPE.TRANSPORT_CREATED, Collections.singletonMap(1L, "TU1")));
+
+        verify(commonGateway, never()).getTransportUnits(any(Collection.class));
+        verify(ctx, never()).publishEvent(any(TransportServiceBulkEvent.class));
+    }
+
+    public final @Test void testConcurrentStartKeepsTheOrderInitialized() {
+        TransportOrder transportOrder = created(1, "TU1");
+        given(repository.findOne(1L)).willReturn(transportOrder);
+        given(repository.findByTransportUnitBKAndStates("TU1", TransportOrderState.CREATED)).willReturn(Collections.singletonList(transportOrder));
+        given(commonGateway.getTransportUnit("TU1")).willReturn(Optional.of(transportUnit("TU1")));
+        willThrow(new StartedConcurrentlyException("Started on another node")).given(ctx).publishEvent(any(TransportServiceEvent.class));
+
+        testee.onApplicationEvent(new TransportServiceEvent(1L, TransportServiceEvent.TYPE.TRANSPORT_CREATED, "TU1"));
+
+        verify(transportOrder).changeState(TransportOrderState.INITIALIZED);
+        verify(ctx).publishEvent(any(TransportServiceEvent.class));
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.state;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.ameba.i18n.Translator;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.openwms.tms.StartedConcurrentlyException;
+import org.openwms.tms.StateChangeException;
+import org.openwms.tms.TMSMessageCodes;
+import org.openwms.tms.TransportOrder;
+import org.openwms.tms.TransportOrderRepository;
+import org.openwms.tms.TransportOrderState;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * A OneStartedPerTransportUnitGuardTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+public class OneStartedPerTransportUnitGuardTest {
+
+    private TransportOrderRepository repository;
+    private TransportUnitLocks locks;
+    private StartedTransportUnitClaim claim;
+    private OneStartedPerTransportUnitGuard testee;
+    private TransportOrder transportOrder;
+
+    @Before
+    public void setUp() {
+        repository = mock(TransportOrderRepository.class);
+        locks = mock(TransportUnitLocks.class);
+        claim = mock(StartedTransportUnitClaim.class);
+        testee = new OneStartedPerTransportUnitGuard();
+        ReflectionTestUtils.setField(testee, "repo", repository);
+        ReflectionTestUtils.setField(testee, "locks", locks);
+        ReflectionTestUtils.setField(testee, "translator", mock(Translator.class));
+        ReflectionTestUtils.setField(testee, "claim", claim);
+        transportOrder = mock(TransportOrder.class);
+        given(transportOrder.getPk()).willReturn(1L);
+        given(transportOrder.getTransportUnitBK()).willReturn("TU1");
+    }
+
+    private void assertAlreadyStarted(Runnable check) {
+        try {
+            check.run();
+            fail("Expected to reject a second started TransportOrder");
+        } catch (StateChangeException sce) {
+            assertEquals(TMSMessageCodes.START_TO_NOT_ALLOWED_ALREADY_STARTED_ONE, sce.getMsgKey());
+        }
+    }
+
+    public final @Test void testSupportsStartingOnly() {
+        for (TransportOrderState from : TransportOrderState.values()) {
+            for (TransportOrderState to : TransportOrderState.values()) {
+                assertEquals(from + " -> " + to, from != TransportOrderState.STARTED && to == TransportOrderState.STARTED, testee.supports(from, to));
+            }
+        }
+    }
+
+    public final @Test void testLocksChecksAndClaims() {
+        given(repository.numberOfTransportOrders("TU1", TransportOrderState.STARTED)).willReturn(0);
+
+        testee.check(transportOrder, TransportOrderState.STARTED);
+
+        InOrder inOrder = inOrder(locks, repository, claim);
+        inOrder.verify(locks).lock("TU1");
+        inOrder.verify(repository).numberOfTransportOrders("TU1", TransportOrderState.STARTED);
+        inOrder.verify(claim).claim(transportOrder);
+    }
+
+    public final @Test void testRejectsWhenAnotherOneIsStarted() {
+        given(repository.numberOfTransportOrders("TU1", TransportOrderState.STARTED)).willReturn(1);
+
+        assertAlreadyStarted(() -> testee.check(transportOrder, TransportOrderState.STARTED));
+        verify(claim, never()).claim(any(TransportOrder.class));
+    }
+
+    public final @Test void testConcurrentStartIsPassedOn() {
+        willThrow(new StartedConcurrentlyException("Started on another node")).given(claim).claim(transportOrder);
+        try {
+            testee.check(transportOrder, TransportOrderState.STARTED);
+            fail("Expected the concurrent start to be passed on");
+        } catch (StartedConcurrentlyException sce) {
+            // expected
+        }
+    }
+
+    public final @Test void testUnsavedTransportOrderIsNotClaimed() {
+        given(transportOrder.getPk()).willReturn(null);
+
+        testee.check(transportOrder, TransportOrderState.STARTED);
+
+        verify(claim, never()).claim(any(TransportOrder.class));
+    }
+
+    public final @Test void testChecksAgainstTheGivenSet() {
+        Set<String> started = new HashSet<>();
+
+        testee.check(transportOrder, TransportOrderState.STARTED, started);
+        assertAlreadyStarted(() -> testee.check(transportOrder, TransportOrderState.STARTED, started));
+
+        verify(locks, times(2)).lock("TU1");
+        verifyZeroInteractions(repository, claim);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.state;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import javax.persistence.EntityManager;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openwms.tms.StartedConcurrentlyException;
+import org.openwms.tms.TransportOrder;
+import org.openwms.tms.TransportOrderRepository;
+import org.openwms.tms.TransportOrderState;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * A StartedTransportUnitClaimTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+public class StartedTransportUnitClaimTest {
+
+    @Autowired
+    private StartedTransportUnitClaim testee;
+    @Autowired
+    private TransportOrderRepository repository;
+    @Autowired
+    private EntityManager em;
+
+    @Configuration
+    @EntityScan(basePackageClasses = TransportOrder.class)
+    @EnableJpaRepositories(basePackageClasses = TransportOrderRepository.class)
+    @Import(StartedTransportUnitClaim.class)
+    static class TestConfig {
+    }
+
+    @After
+    public void tearDown() {
+        if (!TestTransaction.isActive()) {
+            TestTransaction.start();
+            repository.deleteAll();
+            TestTransaction.flagForCommit();
+            TestTransaction.end();
+        }
+    }
+
+    private TransportOrder save(String transportUnitBK, TransportOrderState state) {
+        TransportOrder transportOrder = new TransportOrder(transportUnitBK).setTargetLocation("ERR_/0000/0000/0000/0000");
+        ReflectionTestUtils.setField(transportOrder, "state", state);
+        if (state == TransportOrderState.STARTED) {
+            ReflectionTestUtils.setField(transportOrder, "startedTransportUnitBK", transportUnitBK);
+        }
+        return repository.save(transportOrder);
+    }
+
+    private Object startedTransportUnit(TransportOrder transportOrder) {
+        return em.createNativeQuery("select C_STARTED_TU from TMS_TRANSPORT_ORDER where C_PK = ?1")
+                .setParameter(1, transportOrder.getPk())
+                .getSingleResult();
+    }
+
+    public final @Test void testClaimSetsTheGuard() {
+        TransportOrder transportOrder = save("TU1", TransportOrderState.INITIALIZED);
+
+        testee.claim(transportOrder);
+
+        assertEquals("TU1", startedTransportUnit(transportOrder));
+    }
+
+    public final @Test void testConcurrentStartLeavesTheTransactionUsable() {
+        save("TU1", TransportOrderState.STARTED);
+        TransportOrder transportOrder = save("TU1", TransportOrderState.INITIALIZED);
+        try {
+            testee.claim(transportOrder);
+            fail("Expected to detect the started TransportOrder of the TransportUnit");
+        } catch (StartedConcurrentlyException sce) {
+            // expected
+        }
+        assertNull(startedTransportUnit(transportOrder));
+
+        // Fails if the transaction has been marked for rollback
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        TestTransaction.start();
+        assertEquals(TransportOrderState.INITIALIZED, repository.findOne(transportOrder.getPk()).getState());
+        TestTransaction.end();
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.state;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.openwms.tms.TransportOrderState.CANCELED;
+import static org.openwms.tms.TransportOrderState.CREATED;
+import static org.openwms.tms.TransportOrderState.FINISHED;
+import static org.openwms.tms.TransportOrderState.INITIALIZED;
+import static org.openwms.tms.TransportOrderState.INTERRUPTED;
+import static org.openwms.tms.TransportOrderState.ONFAILURE;
+import static org.openwms.tms.TransportOrderState.STARTED;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.ameba.i18n.Translator;
+import org.junit.Test;
+import org.openwms.tms.StateChangeException;
+import org.openwms.tms.TMSMessageCodes;
+import org.openwms.tms.TransportOrder;
+import org.openwms.tms.TransportOrderRepository;
+import org.openwms.tms.TransportOrderState;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * A TransitionTableTest compares the {@link TransitionTable} with the rules of the former hard coded {@code StateManagerImpl}.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ */
+public class TransitionTableTest {
+
+    private static final String OK = "OK";
+    private static final String COMPLETED = "COMPLETED";
+    private static final String NOT_MANAGED = "NOT_MANAGED";
+
+    /**
+     * The outcome of the former StateManagerImpl for a complete TransportOrder without any other started TransportOrder.
+     */
+    private static String formerOutcome(TransportOrderState from, TransportOrderState to) {
+        if (from.compareTo(to) > 0) {
+            return TMSMessageCodes.TO_STATE_CHANGE_BACKWARDS_NOT_ALLOWED;
+        }
+        switch (from) {
+            case CREATED:
+                return to != INITIALIZED && to != CANCELED ? TMSMessageCodes.TO_STATE_CHANGE_NOT_READY : OK;
+            case INITIALIZED:
+                return to != STARTED && to != CANCELED && to != ONFAILURE ? TMSMessageCodes.STATE_CHANGE_ERROR_FOR_INITIALIZED_TO : OK;
+            case STARTED:
+                return OK;
+            case FINISHED:
+            case ONFAILURE:
+            case CANCELED:
+                return COMPLETED;
+            default:
+                return NOT_MANAGED;
+        }
+    }
+
+    private static StateManagerImpl stateManager(List<TransitionGuard> guards) {
+        StateManagerImpl stateManager = new StateManagerImpl();
+        ReflectionTestUtils.setField(stateManager, "translator", mock(Translator.class));
+        ReflectionTestUtils.setField(stateManager, "guards", guards);
+        stateManager.init();
+        return stateManager;
+    }
+
+    private static String outcome(StateManagerImpl stateManager, TransportOrderState from, TransportOrderState to) {
+        TransportOrder transportOrder = new TransportOrder("TU1").setTargetLocation("ERR_/0000/0000/0000/0000");
+        ReflectionTestUtils.setField(transportOrder, "state", from);
+        try {
+            stateManager.validate(to, transportOrder);
+            return OK;
+        } catch (StateChangeException sce) {
+            return sce.getMsgKey() == null ? COMPLETED : sce.getMsgKey();
+        } catch (IllegalStateException ise) {
+            return NOT_MANAGED;
+        }
+    }
+
+    public final @Test void testAllowedTransitionsAsBefore() {
+        TransitionTable table = TransitionTable.of(Collections.emptyList());
+        for (TransportOrderState from : TransportOrderState.values()) {
+            assertEquals(from.name(), from != INTERRUPTED, table.isManaged(from));
+            for (TransportOrderState to : TransportOrderState.values()) {
+                if (table.isManaged(from) && from.compareTo(to) <= 0) {
+                    assertEquals(from + " -> " + to, OK.equals(formerOutcome(from, to)), table.isAllowed(from, to));
+                }
+            }
+        }
+    }
+
+    public final @Test void testStateManagerRejectsAsBefore() {
+        TransportOrderRepository repository = mock(TransportOrderRepository.class);
+        OneStartedPerTransportUnitGuard oneStarted = new OneStartedPerTransportUnitGuard();
+        ReflectionTestUtils.setField(oneStarted, "repo", repository);
+        ReflectionTestUtils.setField(oneStarted, "locks", mock(TransportUnitLocks.class));
+        ReflectionTestUtils.setField(oneStarted, "translator", mock(Translator.class));
+        ReflectionTestUtils.setField(oneStarted, "claim", mock(StartedTransportUnitClaim.class));
+        StateManagerImpl stateManager = stateManager(Arrays.asList(new CompletenessGuard(), oneStarted));
+
+        for (TransportOrderState from : TransportOrderState.values()) {
+            for (TransportOrderState to : TransportOrderState.values()) {
+                assertEquals(from + " -> " + to, formerOutcome(from, to), outcome(stateManager, from, to));
+            }
+        }
+    }
+
+    public final @Test void testNoGuardsForDeniedTransitions() {
+        TransitionGuard any = mock(TransitionGuard.class);
+        given(any.supports(any(TransportOrderState.class), any(TransportOrderState.class))).willReturn(true);
+        TransitionTable table = TransitionTable.of(Collections.singletonList(any));
+
+        assertEquals(0, table.guardsFor(CREATED, STARTED).length);
+        assertEquals(0, table.guardsFor(FINISHED, CANCELED).length);
+        assertEquals(0, table.guardsFor(INTERRUPTED, FINISHED).length);
+        assertArrayEquals(new TransitionGuard[]{any}, table.guardsFor(INITIALIZED, STARTED));
+    }
+
+    public final @Test void testGuardsPerTransition() {
+        CompletenessGuard completeness = new CompletenessGuard();
+        OneStartedPerTransportUnitGuard oneStarted = new OneStartedPerTransportUnitGuard();
+        TransitionTable table = TransitionTable.of(Arrays.asList(completeness, oneStarted));
+
+        assertArrayEquals(new TransitionGuard[]{completeness}, table.guardsFor(CREATED, INITIALIZED));
+        assertArrayEquals(new TransitionGuard[]{completeness}, table.guardsFor(CREATED, CANCELED));
+        assertArrayEquals(new TransitionGuard[]{oneStarted}, table.guardsFor(INITIALIZED, STARTED));
+        assertEquals(0, table.guardsFor(INITIALIZED, CANCELED).length);
+        assertEquals(0, table.guardsFor(STARTED, STARTED).length);
+        assertEquals(0, table.guardsFor(STARTED, FINISHED).length);
+    }
+
+    public final @Test void testGuardsAreCheckedInTheGivenOrder() {
+        TransitionGuard first = mock(TransitionGuard.class);
+        TransitionGuard second = mock(TransitionGuard.class);
+        given(first.supports(INITIALIZED, STARTED)).willReturn(true);
+        given(second.supports(INITIALIZED, STARTED)).willReturn(true);
+
+        assertArrayEquals(new TransitionGuard[]{first, second}, TransitionTable.of(Arrays.asList(first, second)).guardsFor(INITIALIZED, STARTED));
+        assertArrayEquals(new TransitionGuard[]{second, first}, TransitionTable.of(Arrays.asList(second, first)).guardsFor(INITIALIZED, STARTED));
+    }
+
+    public final @Test void testCompletenessIsCheckedFirst() {
+        CompletenessGuard completeness = new CompletenessGuard();
+        OneStartedPerTransportUnitGuard oneStarted = new OneStartedPerTransportUnitGuard();
+        List<TransitionGuard> guards = new ArrayList<>(Arrays.asList(oneStarted, completeness));
+
+        // Like Spring sorts the injected list
+        AnnotationAwareOrderComparator.sort(guards);
+
+        assertEquals(Arrays.asList(completeness, oneStarted), guards);
+        assertTrue(completeness.supports(CREATED, INITIALIZED));
+        assertFalse(oneStarted.supports(CREATED, INITIALIZED));
+    }
+}
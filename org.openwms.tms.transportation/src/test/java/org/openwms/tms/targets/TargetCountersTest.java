@@ -0,0 +1,136 @@
+/*
+ * openwms.org, the Open Warehouse Management System.
+ * Copyright (C) 2014 Heiko Scherrer
+ *
+ * This file is part of openwms.org.
+ *
+ * openwms.org is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as 
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * openwms.org is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software. If not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.openwms.tms.targets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openwms.tms.TransportOrder;
+import org.openwms.tms.TransportOrderRepository;
+import org.openwms.tms.TransportOrderState;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * A TargetCountersTest.
+ *
+ * @author <a href="mailto:scherrer@openwms.org">Heiko Scherrer</a>
+ * @since 1.0
+ */
+public class TargetCountersTest {
+
+    private static final String LOC = "LOC";
+    private static final int THREADS = 4;
+    private static final int CHANGES = 1000;
+    private TransportOrderRepository repository;
+    private TargetCounters testee;
+    private TransportOrder transportOrder;
+
+    @Before
+    public void setUp() {
+        repository = mock(TransportOrderRepository.class);
+        given(repository.countByTargetLocationAndState()).willReturn(rows(10));
+        given(repository.countByTargetLocationGroupAndState()).willReturn(Collections.emptyList());
+        testee = new TargetCounters();
+        ReflectionTestUtils.setField(testee, "repository", repository);
+        transportOrder = new TransportOrder("TU").setTargetLocation(LOC);
+    }
+
+    private static List<Object[]> rows(long initialized) {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{LOC, TransportOrderState.INITIALIZED, initialized});
+        return rows;
+    }
+
+    private int initialized() {
+        return testee.toLocation(LOC, TransportOrderState.INITIALIZED).getAsInt();
+    }
+
+    private void initialize() {
+        testee.onStateChange(transportOrder, TransportOrderState.CREATED, TransportOrderState.INITIALIZED);
+    }
+
+    public final @Test void testNoCountsBeforeReconcile() {
+        initialize();
+        assertFalse(testee.toLocation(LOC, TransportOrderState.INITIALIZED).isPresent());
+    }
+
+    public final @Test void testChangesAfterReconcile() {
+        testee.reconcile();
+        initialize();
+        initialize();
+        assertEquals(12, initialized());
+    }
+
+    public final @Test void testReconcileReplacesCounts() {
+        testee.reconcile();
+        initialize();
+        given(repository.countByTargetLocationAndState()).willReturn(rows(3));
+        testee.reconcile();
+        assertEquals(3, initialized());
+    }
+
+    public final @Test void testChangesDuringReconcileAreNotLost() throws Exception {
+        testee.reconcile();
+        CountDownLatch queried = new CountDownLatch(1);
+        CountDownLatch applied = new CountDownLatch(1);
+        given(repository.countByTargetLocationAndState()).willAnswer(invocation -> {
+            queried.countDown();
+            applied.await(10, TimeUnit.SECONDS);
+            return rows(10);
+        });
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS + 1);
+        try {
+            Future<?> reconcile = pool.submit(testee::reconcile);
+            queried.await(10, TimeUnit.SECONDS);
+            List<Future<?>> changes = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                changes.add(pool.submit(() -> {
+                    for (int j = 0; j < CHANGES; j++) {
+                        initialize();
+                    }
+                }));
+            }
+            for (Future<?> change : changes) {
+                change.get(10, TimeUnit.SECONDS);
+            }
+            assertEquals("Live counters see the changes during the reconciliation", 10 + THREADS * CHANGES, initialized());
+            applied.countDown();
+            reconcile.get(10, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals("Changes after the query must survive the swap", 10 + THREADS * CHANGES, initialized());
+    }
+}